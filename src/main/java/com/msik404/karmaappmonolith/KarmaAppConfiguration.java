@@ -1,6 +1,7 @@
 package com.msik404.karmaappmonolith;
 
 import com.msik404.karmaappmonolith.user.UserDetailsServiceImpl;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -12,16 +13,23 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 @Configuration
 public class KarmaAppConfiguration {
 
+    /**
+     * Every increment of strength doubles hashing time. Passwords hashed with lower strength are rehashed on their
+     * next successful login, see UserDetailsServiceImpl.
+     */
     @Bean
-    public BCryptPasswordEncoder bCryptPasswordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BCryptPasswordEncoder bCryptPasswordEncoder(@Value("${password.bcrypt.strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 
     @Bean
-    public AuthenticationProvider authenticationProvider(UserDetailsServiceImpl userDetailsService) {
+    public AuthenticationProvider authenticationProvider(
+            UserDetailsServiceImpl userDetailsService,
+            BCryptPasswordEncoder bCryptPasswordEncoder) {
 
-        var authProvider = new DaoAuthenticationProvider(bCryptPasswordEncoder());
+        var authProvider = new DaoAuthenticationProvider(bCryptPasswordEncoder);
         authProvider.setUserDetailsService(userDetailsService);
+        authProvider.setUserDetailsPasswordService(userDetailsService);
         return authProvider;
     }
 
@@ -49,7 +49,7 @@ public class SecurityConfiguration {
                 .exceptionHandling(handler -> handler.authenticationEntryPoint(entryPoint))
 
                 .authorizeHttpRequests((authorize) -> authorize
-                        .requestMatchers("/admin/**").hasAuthority(Role.ADMIN.name())
+                        .requestMatchers("/admin/**", "/actuator/**").hasAuthority(Role.ADMIN.name())
                         .requestMatchers("/mod/**").hasAnyAuthority(Role.ADMIN.name(), Role.MOD.name())
                         .requestMatchers("/user/**").hasAnyAuthority(Role.ADMIN.name(), Role.MOD.name(), Role.USER.name())
                         .requestMatchers(
@@ -3,6 +3,7 @@ package com.msik404.karmaappmonolith.auth;
 import com.msik404.karmaappmonolith.auth.dto.LoginRequest;
 import com.msik404.karmaappmonolith.auth.dto.LoginResponse;
 import com.msik404.karmaappmonolith.auth.dto.RegisterRequest;
+import com.msik404.karmaappmonolith.auth.exception.TooManyRequestsException;
 import com.msik404.karmaappmonolith.docs.KarmaAppEndpointDocs;
 import com.msik404.karmaappmonolith.exception.constraint.exception.DuplicateEmailException;
 import com.msik404.karmaappmonolith.exception.constraint.exception.DuplicateUnexpectedFieldException;
@@ -45,6 +46,14 @@ public class AuthController {
                             mediaType = MediaType.APPLICATION_JSON_VALUE,
                             schema = @Schema(implementation = ProblemDetail.class)
                     )}
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = KarmaAppEndpointDocs.RESP_TOO_MANY_REQ_PASSWORD_HASHING,
+                    content = {@Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )}
             )
     })
     @PostMapping("/register")
@@ -52,7 +61,8 @@ public class AuthController {
 
             @Parameter(description = KarmaAppEndpointDocs.PARAM_DESC_REGISTER_REQUEST)
             @Valid @RequestBody RegisterRequest request
-    ) throws DuplicateEmailException, DuplicateUsernameException, DuplicateUnexpectedFieldException {
+    ) throws DuplicateEmailException, DuplicateUsernameException, DuplicateUnexpectedFieldException,
+            TooManyRequestsException {
 
         authenticationService.register(request);
 
@@ -75,6 +85,14 @@ public class AuthController {
                             mediaType = MediaType.APPLICATION_JSON_VALUE,
                             schema = @Schema(implementation = ProblemDetail.class)
                     )}
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = KarmaAppEndpointDocs.RESP_TOO_MANY_REQ_PASSWORD_HASHING,
+                    content = {@Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )}
             )
     })
     @PostMapping("/login")
@@ -82,7 +100,7 @@ public class AuthController {
 
             @Parameter(description = KarmaAppEndpointDocs.PARAM_DESC_LOGIN_REQUEST)
             @Valid @RequestBody LoginRequest request
-    ) throws AuthenticationException {
+    ) throws AuthenticationException, TooManyRequestsException {
 
         return ResponseEntity.ok(authenticationService.login(request));
     }
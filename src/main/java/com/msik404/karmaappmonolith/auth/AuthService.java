@@ -1,9 +1,14 @@
 package com.msik404.karmaappmonolith.auth;
 
+import java.util.Map;
+
 import com.msik404.karmaappmonolith.auth.dto.LoginRequest;
 import com.msik404.karmaappmonolith.auth.dto.LoginResponse;
 import com.msik404.karmaappmonolith.auth.dto.RegisterRequest;
+import com.msik404.karmaappmonolith.auth.exception.TooManyRequestsException;
 import com.msik404.karmaappmonolith.auth.jwt.JwtService;
+import com.msik404.karmaappmonolith.auth.jwt.TokenRevocationService;
+import com.msik404.karmaappmonolith.auth.password.PasswordHashingExecutor;
 import com.msik404.karmaappmonolith.exception.constraint.ConstraintExceptionsHandler;
 import com.msik404.karmaappmonolith.exception.constraint.exception.DuplicateEmailException;
 import com.msik404.karmaappmonolith.exception.constraint.exception.DuplicateUnexpectedFieldException;
@@ -32,18 +37,24 @@ public class AuthService {
     private final UserService userService;
     private final AuthenticationManager authenticationManager;
     private final JwtService jwtService;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final TokenRevocationService tokenRevocationService;
     private final ConstraintExceptionsHandler constraintExceptionsHandler;
     private final DataIntegrityViolationExceptionErrorMessageExtractionStrategy extractionStrategy;
     private final RoundBraceErrorMassageParseStrategy parseStrategy;
 
     public void register(@NonNull RegisterRequest request)
-            throws DuplicateEmailException, DuplicateUsernameException, DuplicateUnexpectedFieldException {
+            throws DuplicateEmailException, DuplicateUsernameException, DuplicateUnexpectedFieldException,
+            TooManyRequestsException {
+
+        String encodedPassword = passwordHashingExecutor.execute(
+                () -> bCryptPasswordEncoder.encode(request.password()));
 
         try {
             repository.save(new User(
                     request.username(),
                     request.email(),
-                    bCryptPasswordEncoder.encode(request.password()),
+                    encodedPassword,
                     Role.USER,
                     request.firstName(),
                     request.lastName()
@@ -53,14 +64,24 @@ public class AuthService {
         }
     }
 
-    public LoginResponse login(@NonNull LoginRequest request) throws AuthenticationException {
+    public LoginResponse login(@NonNull LoginRequest request) throws AuthenticationException, TooManyRequestsException {
 
-        var authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(request.email(), request.password()));
+        // Epoch is read before user is loaded, so that revocation made while user is being authenticated has a newer
+        // epoch than the token, which is then issued already revoked instead of outliving the change of user state.
+        long tokenVersion = tokenRevocationService.getCurrentEpoch();
+
+        // Password is verified, and rehashed if its cost is outdated, on hashing pool.
+        var authentication = passwordHashingExecutor.execute(() -> authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken(request.email(), request.password())));
 
         var user = (User) authentication.getPrincipal();
 
-        return new LoginResponse(jwtService.generateJwt(user.getId(), null));
+        Map<String, Object> claims = Map.of(
+                JwtService.ROLE_CLAIM, user.getRole().name(),
+                JwtService.VERSION_CLAIM, tokenVersion
+        );
+
+        return new LoginResponse(jwtService.generateJwt(user.getId(), claims));
     }
 
 }
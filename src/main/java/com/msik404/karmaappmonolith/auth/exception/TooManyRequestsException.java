@@ -0,0 +1,22 @@
+package com.msik404.karmaappmonolith.auth.exception;
+
+import com.msik404.karmaappmonolith.exception.AbstractRestException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.lang.NonNull;
+
+public class TooManyRequestsException extends AbstractRestException {
+
+    public static final String ERROR_MESSAGE = "Server is busy processing other logins, try again later.";
+
+    public TooManyRequestsException() {
+        super(ERROR_MESSAGE);
+    }
+
+    @NonNull
+    @Override
+    public ProblemDetail getProblemDetail() {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.TOO_MANY_REQUESTS, getMessage());
+    }
+
+}
@@ -1,9 +1,12 @@
 package com.msik404.karmaappmonolith.auth.jwt;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
 
-import com.msik404.karmaappmonolith.user.User;
-import com.msik404.karmaappmonolith.user.UserService;
+import com.msik404.karmaappmonolith.user.Role;
+import com.msik404.karmaappmonolith.user.cache.UserPrincipalCache;
+import com.msik404.karmaappmonolith.user.dto.UserPrincipalDto;
 import com.msik404.karmaappmonolith.user.exception.UserNotFoundException;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
@@ -13,11 +16,15 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.CredentialsExpiredException;
+import org.springframework.security.authentication.DisabledException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -32,7 +39,40 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private static final String TOKEN_PREFIX = "Bearer ";
 
     private final JwtService jwtService;
-    private final UserService userService;
+    private final UserPrincipalCache userPrincipalCache;
+    private final TokenRevocationService tokenRevocationService;
+
+    // If false, authorities are read from database, through UserPrincipalCache, as it was done before tokens carried
+    // role.
+    @Value("${jwt.stateless:true}")
+    private boolean isStateless = true;
+
+    /**
+     * Authorities are taken from role claim, so that authenticated request does not need any database query. Redis is
+     * asked only if the token might have been revoked, see TokenRevocationService. Tokens without role or version
+     * claim, issued before they were added, fall back to reading user principal.
+     */
+    @NonNull
+    private Collection<? extends GrantedAuthority> getAuthorities(long userId, @NonNull Claims claims)
+            throws UserNotFoundException, CredentialsExpiredException, DisabledException, IllegalArgumentException {
+
+        String role = claims.get(JwtService.ROLE_CLAIM, String.class);
+        Long version = claims.get(JwtService.VERSION_CLAIM, Long.class);
+
+        if (!isStateless || role == null || version == null) {
+            UserPrincipalDto principal = userPrincipalCache.get(userId);
+            if (!principal.isEnabled()) {
+                throw new DisabledException("User is disabled.");
+            }
+            return principal.getAuthorities();
+        }
+
+        if (tokenRevocationService.isRevoked(userId, version)) {
+            throw new CredentialsExpiredException("Token has been revoked, log in again.");
+        }
+
+        return Set.of(new SimpleGrantedAuthority(Role.valueOf(role).name()));
+    }
 
     @Override
     protected void doFilterInternal(
@@ -55,11 +95,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             if (claims.getSubject() != null && SecurityContextHolder.getContext().getAuthentication() == null) {
                 // parse userId Long type represented as string to Long type
                 final long userId = Long.parseLong(claims.getSubject());
-                User user = userService.findById(userId);
                 var authentication = new UsernamePasswordAuthenticationToken(
                         userId,
                         null,
-                        user.getAuthorities()
+                        getAuthorities(userId, claims)
                 );
                 // Adds interesting data like ip address and session id
                 authentication.setDetails(new WebAuthenticationDetails(request));
@@ -0,0 +1,30 @@
+package com.msik404.karmaappmonolith.auth.jwt;
+
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+/**
+ * @param secret      Secret of the key which signs new tokens, should have at least 32 bytes.
+ * @param keyId       Id of the key which signs new tokens, it is placed in kid header.
+ * @param retiredKeys Secrets by key id of keys which no longer sign new tokens, but tokens signed with them are still
+ *                    accepted. Key can be removed once all tokens signed with it have expired.
+ */
+@ConfigurationProperties(prefix = "jwt")
+public record JwtProperties(
+        @NonNull String secret,
+        @NonNull String keyId,
+        @Nullable Map<String, String> retiredKeys) {
+
+    public JwtProperties {
+
+        retiredKeys = retiredKeys == null ? Map.of() : Map.copyOf(retiredKeys);
+
+        if (retiredKeys.containsKey(keyId)) {
+            throw new IllegalArgumentException("Retired keys should not contain current key id: " + keyId);
+        }
+    }
+
+}
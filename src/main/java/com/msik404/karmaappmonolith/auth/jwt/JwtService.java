@@ -1,26 +1,86 @@
 package com.msik404.karmaappmonolith.auth.jwt;
 
+import java.security.Key;
+import java.time.Duration;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
 
+import javax.crypto.SecretKey;
+
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
 import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
 import io.jsonwebtoken.security.Keys;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
+/**
+ * Keys and parser are built once, parser is immutable and thread safe, so it is shared by all requests.
+ * <p>
+ * New tokens are signed with jwt.key-id key. Tokens are verified with the key selected by their kid header, which
+ * allows rotating keys: new key becomes current, previous one is moved to jwt.retired-keys until its tokens expire.
+ * Tokens without kid header, issued before keys had ids, are verified with the current key.
+ */
 @Service
 public class JwtService {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    public static final String ROLE_CLAIM = "role";
+    public static final String VERSION_CLAIM = "ver";
 
     private static final int TIME_TO_EXPIRE = 1000 * 60 * 60 * 1; // one hour
 
+    private final String keyId;
+    private final SecretKey signingKey;
+    private final Map<String, SecretKey> verificationKeys;
+
+    private final JwtParser parser;
+
+    private final class KidKeyLocator extends LocatorAdapter<Key> {
+
+        @Override
+        protected Key locate(JwsHeader header) {
+
+            String kid = header.getKeyId();
+            if (kid == null) {
+                return signingKey;
+            }
+
+            SecretKey key = verificationKeys.get(kid);
+            if (key == null) {
+                throw new JwtException(String.format("Unknown key id: %s", kid));
+            }
+            return key;
+        }
+
+    }
+
+    public JwtService(@NonNull JwtProperties properties) {
+
+        this.keyId = properties.keyId();
+        this.signingKey = Keys.hmacShaKeyFor(properties.secret().getBytes());
+
+        Map<String, SecretKey> keys = new HashMap<>();
+        keys.put(keyId, signingKey);
+        properties.retiredKeys().forEach((retiredKeyId, secret) ->
+                keys.put(retiredKeyId, Keys.hmacShaKeyFor(secret.getBytes())));
+        this.verificationKeys = Map.copyOf(keys);
+
+        this.parser = Jwts.parser()
+                .keyLocator(new KidKeyLocator())
+                .build();
+    }
+
+    @NonNull
+    public static Duration getTimeToExpire() {
+        return Duration.ofMillis(TIME_TO_EXPIRE);
+    }
+
     /**
      * Generates new JWT.
      * Subject is set to user's Long type identifier which will be transformed to string.
@@ -45,10 +105,11 @@ public class JwtService {
         }
 
         return builder
+                .header().keyId(keyId).and()
                 .subject(clientId.toString())
                 .issuedAt(new Date(currentTime))
                 .expiration(new Date(expirationTime))
-                .signWith(Keys.hmacShaKeyFor(secret.getBytes()))
+                .signWith(signingKey)
                 .compact();
     }
 
@@ -56,11 +117,7 @@ public class JwtService {
             @NonNull String jwt
     ) throws JwtException, IllegalArgumentException {
 
-        return Jwts.parser()
-                .verifyWith(Keys.hmacShaKeyFor(secret.getBytes()))
-                .build()
-                .parseSignedClaims(jwt)
-                .getPayload();
+        return parser.parseSignedClaims(jwt).getPayload();
     }
 
 }
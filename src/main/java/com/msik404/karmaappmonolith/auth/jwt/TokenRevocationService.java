@@ -0,0 +1,162 @@
+package com.msik404.karmaappmonolith.auth.jwt;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Revocation of JWTs of a user, for example after change of their role, which is embedded in their tokens.
+ * <p>
+ * Redis holds global revocation epoch, which is bumped with every revocation, and epoch of the last revocation of each
+ * user. Tokens carry epoch from the time of login as their version. Token is revoked if its version is lower than
+ * revocation epoch of its user.
+ * <p>
+ * Global epoch is cached by each instance and refreshed every jwt.revocation.epoch-refresh-interval. Tokens with
+ * version not lower than cached epoch were issued after every known revocation, so they are accepted without asking
+ * redis. Only stale tokens need a lookup of their user, which is rare because revocations are rare. Revocations made
+ * by other instances are therefore noticed with a delay of at most the refresh interval.
+ * <p>
+ * Epoch never goes back. If redis lost the epoch key, it is seeded again with the highest epoch known by the instance,
+ * so that later revocations get epochs higher than versions of tokens issued before the loss.
+ */
+@Service
+public class TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    static final String EPOCH_KEY = "token-revocation:epoch";
+    private static final String USER_KEY_PREFIX = "token-revocation:user:";
+
+    private static final RedisScript<Long> REVOKE_TOKENS_SCRIPT = RedisScript.of(
+            new ClassPathResource("scripts/revoke_tokens.lua"),
+            Long.class
+    );
+
+    private static final RedisScript<Long> SEED_EPOCH_SCRIPT = RedisScript.of(
+            new ClassPathResource("scripts/seed_revocation_epoch.lua"),
+            Long.class
+    );
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final AtomicLong cachedEpoch = new AtomicLong();
+
+    public TokenRevocationService(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    static String getUserKey(long userId) {
+        return USER_KEY_PREFIX + userId;
+    }
+
+    private static long parseEpoch(@Nullable String value) {
+        return value == null ? 0 : Long.parseLong(value);
+    }
+
+    private void updateCachedEpoch(long epoch) {
+        cachedEpoch.accumulateAndGet(epoch, Math::max);
+    }
+
+    /**
+     * Reads current epoch directly from redis, so that tokens issued with it as their version are never stale in
+     * respect to revocations which were already made.
+     *
+     * @return Version which should be placed in a new token.
+     */
+    public long getCurrentEpoch() {
+
+        long epoch = parseEpoch(redisTemplate.opsForValue().get(EPOCH_KEY));
+
+        long knownEpoch = cachedEpoch.get();
+        if (epoch < knownEpoch) {
+            logger.warn("Token revocation epoch went back from {} to {}, it is seeded again.", knownEpoch, epoch);
+
+            Long seededEpoch = redisTemplate.execute(SEED_EPOCH_SCRIPT, List.of(EPOCH_KEY), Long.toString(knownEpoch));
+            epoch = seededEpoch == null ? knownEpoch : seededEpoch;
+        }
+
+        updateCachedEpoch(epoch);
+        return epoch;
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.epoch-refresh-interval:PT1S}")
+    public void refreshCachedEpoch() {
+
+        try {
+            getCurrentEpoch();
+        } catch (DataAccessException ex) {
+            logger.warn("Could not refresh token revocation epoch.", ex);
+        }
+    }
+
+    /**
+     * @param userId       Id of user to whom the token belongs.
+     * @param tokenVersion Version claim of the token.
+     * @return Whether token has been revoked. If revocation state could not be read token is considered revoked.
+     */
+    public boolean isRevoked(long userId, long tokenVersion) {
+
+        if (tokenVersion >= cachedEpoch.get()) {
+            return false;
+        }
+
+        try {
+            long userRevocationEpoch = parseEpoch(redisTemplate.opsForValue().get(getUserKey(userId)));
+            return tokenVersion < userRevocationEpoch;
+        } catch (DataAccessException ex) {
+            logger.warn("Could not read token revocation epoch of user: {}.", userId, ex);
+            return true;
+        }
+    }
+
+    /**
+     * Revokes all tokens of the user issued so far.
+     *
+     * @param userId Id of user whose tokens should be revoked.
+     */
+    public void revokeTokensOfUser(long userId) {
+
+        Long epoch = redisTemplate.execute(
+                REVOKE_TOKENS_SCRIPT,
+                List.of(EPOCH_KEY, getUserKey(userId)),
+                Long.toString(JwtService.getTimeToExpire().toMillis()),
+                Long.toString(cachedEpoch.get())
+        );
+        if (epoch != null) {
+            updateCachedEpoch(epoch);
+        }
+    }
+
+    /**
+     * Revokes tokens after current transaction commits, so that login which happens in between cannot issue token
+     * with state which is about to change. If there is no transaction, tokens are revoked immediately.
+     *
+     * @param userId Id of user whose tokens should be revoked.
+     */
+    public void revokeTokensOfUserAfterCommit(long userId) {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            revokeTokensOfUser(userId);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                revokeTokensOfUser(userId);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.msik404.karmaappmonolith.auth.password;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.msik404.karmaappmonolith.auth.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs BCrypt hashing, which is deliberately CPU heavy, on a bounded pool, so that burst of logins or registrations
+ * can use at most password.hashing.threads processors and the rest stays available for other requests. By default
+ * half of the processors is used.
+ * <p>
+ * At most password.hashing.queue-capacity tasks wait for a free thread. When the queue is full, the task is rejected
+ * right away with TooManyRequestsException (429), instead of letting requests pile up behind it.
+ * <p>
+ * Pool is monitored as executor.* metrics with name=password-hashing tag, rejections are counted by
+ * password.hashing.rejected counter.
+ */
+@Component
+public class PasswordHashingExecutor {
+
+    public static final String EXECUTOR_NAME = "password-hashing";
+    public static final String REJECTED_COUNTER_NAME = "password.hashing.rejected";
+
+    private final ThreadPoolExecutor executor;
+
+    private final Counter rejectedCounter;
+
+    public PasswordHashingExecutor(
+            @Value("${password.hashing.threads:0}") int threads,
+            @Value("${password.hashing.queue-capacity:64}") int queueCapacity,
+            MeterRegistry meterRegistry) {
+
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        var threadCounter = new AtomicInteger();
+
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, EXECUTOR_NAME + "-" + threadCounter.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        new ExecutorServiceMetrics(executor, EXECUTOR_NAME, List.of()).bindTo(meterRegistry);
+
+        this.rejectedCounter = Counter.builder(REJECTED_COUNTER_NAME)
+                .description("Password hashing tasks rejected because hashing queue was full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the task on hashing pool and waits for its result.
+     *
+     * @param task Task which hashes or verifies password.
+     * @return Result of the task.
+     * @throws TooManyRequestsException if hashing queue is full.
+     */
+    public <T> T execute(@NonNull Supplier<T> task) throws TooManyRequestsException {
+
+        Future<T> future;
+        try {
+            future = executor.submit(task::get);
+        } catch (RejectedExecutionException ex) {
+            rejectedCounter.increment();
+            throw new TooManyRequestsException();
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing.", ex);
+        } catch (ExecutionException ex) {
+            // Exceptions are rethrown as they are, so that callers handle them as if the task was run by them.
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (ex.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+}
@@ -107,6 +107,15 @@ public class KarmaAppEndpointDocs {
     public static final String OP_DESC_UNRATE_POST = OP_SUM_UNRATE_POST + USER_ENDPOINT_SUFFIX + IDEMPOTENT_OPERATION_SUFFIX +
             " If post was not rated in the first place, this operation does not do anything.";
 
+    public static final String OP_SUM_RATE_POSTS_IN_BATCH = "Rate, change rating or unrate many posts at once.";
+
+    public static final String OP_DESC_RATE_POSTS_IN_BATCH = OP_SUM_RATE_POSTS_IN_BATCH + USER_ENDPOINT_SUFFIX + """
+             Meant for clients which synchronize votes made offline. All operations are applied in a single transaction,
+            each of them has the same semantics as rate or unrate endpoint. Response contains outcome of each operation in
+            request order: APPLIED, UNCHANGED (requested rating was already in place), SUPERSEDED (later operation in the
+            same request targets the same post) or POST_NOT_FOUND.
+            """;
+
     public static final String OP_SUM_HIDE_POST_BY_USER =
             "Change owned post's visibility from active to hidden.";
 
@@ -200,6 +209,10 @@ public class KarmaAppEndpointDocs {
 
     public static final String PARAM_DESC_IS_POSITIVE = "Indicates whether post rating is positive or negative.";
 
+    public static final String PARAM_DESC_BATCH_RATING_REQUEST = """
+            Json with list of at most 1000 operations, each with post id and action: POSITIVE, NEGATIVE or UNRATE.
+            """;
+
     public static final String PARAM_DESC_USER_UPDATE_REQUEST_WITH_USER_PRIVILEGE = """
             Json with data for performing user update. Each field is optional, only set fields will be used for update.
             This objects contains fields which are safe to be modified with user privilege.
@@ -243,6 +256,10 @@ public class KarmaAppEndpointDocs {
 
     public static final String RESP_INTERNAL_DESC_UNRATE_POST = "Could not unrate post for some reason.";
 
+    public static final String RESP_OK_RATE_POSTS_IN_BATCH = "Returned outcome of each rating operation.";
+
+    public static final String RESP_INTERNAL_DESC_RATE_POSTS_IN_BATCH = "Could not rate posts for some reason.";
+
     public static final String RESP_OK_HIDE_POST = "Post was hidden successfully.";
 
     public static final String RESP_OK_DELETE_POST = "Post was deleted successfully.";
@@ -265,6 +282,10 @@ public class KarmaAppEndpointDocs {
 
     public static final String RESP_OK_REGISTER = "User account was registered successfully.";
 
+    public static final String RESP_TOO_MANY_REQ_PASSWORD_HASHING = """
+            Too many logins or registrations are being processed at the moment. Request should be retried later.
+            """;
+
     public static final String RESP_OK_LOGIN = """
             User logged-in successfully. JWT string is returned. Authorization header should be set with string:
             "Bearer JWT_STRING" for the user to be considered logged-in. JWT is signed with sha256 and is valid for one
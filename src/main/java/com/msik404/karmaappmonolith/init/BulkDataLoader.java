@@ -0,0 +1,359 @@
+package com.msik404.karmaappmonolith.init;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import com.msik404.karmaappmonolith.post.Visibility;
+import com.msik404.karmaappmonolith.user.Role;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads large amounts of dummy users, posts and karma scores with postgres COPY, without going through JPA. Rows are
+ * generated and streamed to the database on the fly, so memory usage does not depend on amount of loaded data.
+ * <p>
+ * Password of each user is its username. BCrypt hashing of passwords is the most expensive part, so passwords are
+ * hashed on a pool of initialize.hashing-threads workers, while already hashed users are being streamed.
+ * <p>
+ * Votes of each post are generated from a random seeded with the post ordinal, so that they can be generated twice:
+ * once to compute posts.karma_score and once to stream karma_scores rows. Both tables are therefore consistent.
+ * <p>
+ * Ids are reserved by moving user_seq and post_seq past loaded rows, so that ids allocated afterwards by Hibernate do
+ * not collide with them. Reservation is not atomic with concurrent inserts, so loader should be run against a database
+ * without other writers. Everything is loaded in a single transaction.
+ */
+@Component
+public class BulkDataLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkDataLoader.class);
+
+    private static final int COPY_BUFFER_SIZE = 1 << 16;
+    private static final int HASHES_IN_FLIGHT_PER_THREAD = 16;
+    private static final long POST_SEED_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final Visibility[] VISIBILITY_OPTIONS = Visibility.class.getEnumConstants();
+
+    private static final String COPY_USERS_SQL =
+            "COPY users (id, first_name, last_name, username, email, password, role) FROM STDIN";
+    private static final String COPY_POSTS_SQL =
+            "COPY posts (id, headline, text, karma_score, visibility, user_id) FROM STDIN";
+    private static final String COPY_KARMA_SCORES_SQL =
+            "COPY karma_scores (user_id, post_id, is_positive) FROM STDIN";
+
+    // Hibernate pooled optimizer hands out ids up to the current sequence value, so sequence is moved by requested
+    // amount past both its value and max id. Returned value is the last reserved id.
+    private static final String RESERVE_IDS_SQL_FORMAT = """
+            SELECT setval('%1$s', GREATEST(s.last_value, (SELECT COALESCE(MAX(t.id), 0) FROM %2$s t)) + ?)
+            FROM %1$s s
+            """;
+
+    private final DataSource dataSource;
+    private final BCryptPasswordEncoder bCryptPasswordEncoder;
+    private final int hashingThreads;
+
+    @FunctionalInterface
+    private interface VoteConsumer {
+
+        void accept(int voterOrdinal, boolean isPositive) throws SQLException;
+
+    }
+
+    public BulkDataLoader(
+            DataSource dataSource,
+            BCryptPasswordEncoder bCryptPasswordEncoder,
+            @Value("${initialize.hashing-threads:0}") int hashingThreads) {
+
+        this.dataSource = dataSource;
+        this.bCryptPasswordEncoder = bCryptPasswordEncoder;
+        this.hashingThreads = hashingThreads > 0 ? hashingThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    // Ids are reserved from user_seq, so usernames based on them are unique also when data is loaded again.
+    @NonNull
+    static String getUsername(long id) {
+        return String.format("username_%d", id);
+    }
+
+    @NonNull
+    private static String getEmail(@NonNull String username) {
+        return String.format("%s@mail.com", username);
+    }
+
+    /**
+     * @param spec Sizes of loaded data.
+     * @return Amounts of inserted rows.
+     * @throws IllegalStateException if loading fails, in which case nothing is inserted.
+     */
+    @NonNull
+    public BulkLoadResult load(@NonNull BulkDataSpec spec) {
+
+        int[] postsPerUser = getPostsPerUser(spec);
+        long postsAmount = 0;
+        for (int userPosts : postsPerUser) {
+            postsAmount += userPosts;
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            boolean wasAutoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+
+                long firstUserId = reserveIds(connection, "user_seq", "users", spec.users());
+                long firstPostId = reserveIds(connection, "post_seq", "posts", postsAmount);
+
+                copyUsers(copyManager, spec, firstUserId);
+                logger.info("Loaded {} users.", spec.users());
+
+                copyPosts(copyManager, spec, postsPerUser, firstUserId, firstPostId);
+                logger.info("Loaded {} posts.", postsAmount);
+
+                long votesAmount = copyKarmaScores(copyManager, spec, postsAmount, firstUserId, firstPostId);
+                logger.info("Loaded {} karma scores.", votesAmount);
+
+                connection.commit();
+                return new BulkLoadResult(spec.users(), postsAmount, votesAmount);
+            } catch (SQLException | RuntimeException ex) {
+                connection.rollback();
+                throw ex;
+            } finally {
+                connection.setAutoCommit(wasAutoCommit);
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Bulk data load failed.", ex);
+        }
+    }
+
+    @NonNull
+    private static int[] getPostsPerUser(@NonNull BulkDataSpec spec) {
+
+        var random = new SplittableRandom(spec.seed());
+        int[] postsPerUser = new int[spec.users()];
+        for (int i = 0; i < postsPerUser.length; i++) {
+            postsPerUser[i] = random.nextInt(spec.minPostsPerUser(), spec.maxPostsPerUser() + 1);
+        }
+        return postsPerUser;
+    }
+
+    /**
+     * @return First of reserved ids.
+     */
+    private static long reserveIds(
+            @NonNull Connection connection,
+            @NonNull String sequenceName,
+            @NonNull String tableName,
+            long amount) throws SQLException {
+
+        String sql = String.format(RESERVE_IDS_SQL_FORMAT, sequenceName, tableName);
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, amount);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1) - amount + 1;
+            }
+        }
+    }
+
+    private void copyUsers(
+            @NonNull CopyManager copyManager,
+            @NonNull BulkDataSpec spec,
+            long firstUserId) throws SQLException {
+
+        ExecutorService executor = Executors.newFixedThreadPool(hashingThreads);
+        try (var writer = new CopyWriter(copyManager.copyIn(COPY_USERS_SQL))) {
+            int maxInFlight = hashingThreads * HASHES_IN_FLIGHT_PER_THREAD;
+            Deque<Future<String>> pendingPasswords = new ArrayDeque<>(maxInFlight);
+
+            long nextUserIdToWrite = firstUserId;
+            for (long userId = firstUserId; userId < firstUserId + spec.users(); userId++) {
+                String username = getUsername(userId);
+                pendingPasswords.add(executor.submit(() -> bCryptPasswordEncoder.encode(username)));
+
+                if (pendingPasswords.size() == maxInFlight) {
+                    writeUser(writer, nextUserIdToWrite++, awaitPassword(pendingPasswords.poll()));
+                }
+            }
+            while (!pendingPasswords.isEmpty()) {
+                writeUser(writer, nextUserIdToWrite++, awaitPassword(pendingPasswords.poll()));
+            }
+
+            writer.finish();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @NonNull
+    private static String awaitPassword(@NonNull Future<String> pendingPassword) {
+
+        try {
+            return pendingPassword.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing passwords.", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Password hashing failed.", ex.getCause());
+        }
+    }
+
+    private static void writeUser(
+            @NonNull CopyWriter writer,
+            long userId,
+            @NonNull String encodedPassword) throws SQLException {
+
+        String username = getUsername(userId);
+        writer.writeRow(userId, username, username, username, getEmail(username), encodedPassword, Role.USER);
+    }
+
+    private static void copyPosts(
+            @NonNull CopyManager copyManager,
+            @NonNull BulkDataSpec spec,
+            @NonNull int[] postsPerUser,
+            long firstUserId,
+            long firstPostId) throws SQLException {
+
+        var visibilityRandom = new SplittableRandom(spec.seed() + 1);
+
+        try (var writer = new CopyWriter(copyManager.copyIn(COPY_POSTS_SQL))) {
+            long postOrdinal = 0;
+            for (int userOrdinal = 0; userOrdinal < postsPerUser.length; userOrdinal++) {
+                long userId = firstUserId + userOrdinal;
+                for (int userPostIdx = 0; userPostIdx < postsPerUser[userOrdinal]; userPostIdx++, postOrdinal++) {
+                    long[] karmaScore = {0};
+                    forEachVote(spec, postOrdinal, (voterOrdinal, isPositive) -> karmaScore[0] += isPositive ? 1 : -1);
+
+                    writer.writeRow(
+                            firstPostId + postOrdinal,
+                            String.format("Example headline: %d of user: %d", userPostIdx, userId),
+                            String.format("Example text: %d of user: %d", userPostIdx, userId),
+                            karmaScore[0],
+                            VISIBILITY_OPTIONS[visibilityRandom.nextInt(VISIBILITY_OPTIONS.length)],
+                            userId
+                    );
+                }
+            }
+            writer.finish();
+        }
+    }
+
+    /**
+     * @return Amount of inserted karma scores.
+     */
+    private static long copyKarmaScores(
+            @NonNull CopyManager copyManager,
+            @NonNull BulkDataSpec spec,
+            long postsAmount,
+            long firstUserId,
+            long firstPostId) throws SQLException {
+
+        try (var writer = new CopyWriter(copyManager.copyIn(COPY_KARMA_SCORES_SQL))) {
+            for (long postOrdinal = 0; postOrdinal < postsAmount; postOrdinal++) {
+                long postId = firstPostId + postOrdinal;
+                forEachVote(spec, postOrdinal, (voterOrdinal, isPositive) ->
+                        writer.writeRow(firstUserId + voterOrdinal, postId, isPositive));
+            }
+            return writer.finish();
+        }
+    }
+
+    /**
+     * Voters of a post are consecutive users starting from random one, so that no user votes twice for the same post.
+     */
+    private static void forEachVote(
+            @NonNull BulkDataSpec spec,
+            long postOrdinal,
+            @NonNull VoteConsumer consumer) throws SQLException {
+
+        if (spec.users() == 0) {
+            return;
+        }
+
+        var random = new SplittableRandom(spec.seed() ^ (postOrdinal * POST_SEED_MULTIPLIER));
+
+        int votes = (int) Math.min(
+                spec.users(),
+                Math.floor(spec.maxVotesPerPost() * Math.pow(random.nextDouble(), spec.voteSkew()))
+        );
+        int firstVoterOrdinal = random.nextInt(spec.users());
+
+        for (int i = 0; i < votes; i++) {
+            consumer.accept((firstVoterOrdinal + i) % spec.users(), random.nextDouble() < spec.positiveVoteRatio());
+        }
+    }
+
+    /**
+     * Buffers rows in postgres COPY text format and sends them in chunks of about COPY_BUFFER_SIZE characters.
+     * Values should not contain tabs, new lines or backslashes, which holds for all generated values.
+     */
+    private static final class CopyWriter implements AutoCloseable {
+
+        private final CopyIn copyIn;
+        private final StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE);
+
+        CopyWriter(@NonNull CopyIn copyIn) {
+            this.copyIn = copyIn;
+        }
+
+        void writeRow(@Nullable Object... values) throws SQLException {
+
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    buffer.append('\t');
+                }
+                buffer.append(values[i] == null ? "\\N" : values[i].toString());
+            }
+            buffer.append('\n');
+
+            if (buffer.length() >= COPY_BUFFER_SIZE) {
+                flush();
+            }
+        }
+
+        private void flush() throws SQLException {
+
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+
+        /**
+         * @return Amount of copied rows.
+         */
+        long finish() throws SQLException {
+
+            if (!buffer.isEmpty()) {
+                flush();
+            }
+            return copyIn.endCopy();
+        }
+
+        @Override
+        public void close() throws SQLException {
+
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+
+    }
+
+}
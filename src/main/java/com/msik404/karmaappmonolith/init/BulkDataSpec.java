@@ -0,0 +1,34 @@
+package com.msik404.karmaappmonolith.init;
+
+/**
+ * Sizes of dummy data loaded by BulkDataLoader. The same spec with the same seed always produces the same data.
+ *
+ * @param users              Amount of users.
+ * @param minPostsPerUser    Minimal amount of posts of each user.
+ * @param maxPostsPerUser    Maximal amount of posts of each user, inclusive.
+ * @param maxVotesPerPost    Maximal amount of votes of each post, never more than amount of users.
+ * @param voteSkew           Each post gets maxVotesPerPost * u^voteSkew votes for uniform u from [0, 1), so the higher
+ *                           the skew the fewer posts with many votes. One means uniform distribution.
+ * @param positiveVoteRatio  Probability of a vote being positive.
+ * @param seed               Seed of all random choices.
+ */
+public record BulkDataSpec(
+        int users,
+        int minPostsPerUser,
+        int maxPostsPerUser,
+        int maxVotesPerPost,
+        double voteSkew,
+        double positiveVoteRatio,
+        long seed) {
+
+    public BulkDataSpec {
+
+        if (users < 0 || minPostsPerUser < 0 || maxPostsPerUser < minPostsPerUser || maxVotesPerPost < 0) {
+            throw new IllegalArgumentException("Amounts should be non negative and min should not exceed max.");
+        }
+        if (voteSkew <= 0 || positiveVoteRatio < 0 || positiveVoteRatio > 1) {
+            throw new IllegalArgumentException("Vote skew should be positive and ratio should be within [0, 1].");
+        }
+    }
+
+}
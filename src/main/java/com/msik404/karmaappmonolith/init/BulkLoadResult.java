@@ -0,0 +1,9 @@
+package com.msik404.karmaappmonolith.init;
+
+/**
+ * @param users Amount of inserted users.
+ * @param posts Amount of inserted posts.
+ * @param votes Amount of inserted karma scores.
+ */
+public record BulkLoadResult(long users, long posts, long votes) {
+}
@@ -0,0 +1,66 @@
+package com.msik404.karmaappmonolith.karma;
+
+import java.util.Map;
+
+import com.msik404.karmaappmonolith.post.exception.InternalServerErrorException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Journal of post karma score deltas used in WRITE_BEHIND mode. Votes are persisted in karma_scores and their deltas
+ * are appended to post_karma_deltas journal within request transaction, only updates of posts.karma_score are delayed.
+ * Journal is applied every karma.flush-interval with a single statement, so that popular posts do not become hot rows
+ * locked by every vote.
+ * <p>
+ * Deltas are durable and shared by all instances, so none are lost on crash and KarmaScoreReconciliationJob can tell
+ * pending deltas apart from the applied ones.
+ */
+@Component
+@RequiredArgsConstructor
+public class KarmaDeltaJournal {
+
+    private final PostKarmaDeltaRepository repository;
+
+    @Value("${karma.write-mode:SYNC}")
+    private KarmaWriteMode karmaWriteMode = KarmaWriteMode.SYNC;
+
+    // In other write modes journal is only flushed until deltas left by a previous mode are applied.
+    private volatile boolean isDrained = false;
+
+    /**
+     * Should be called within the transaction which persists the vote, so that delta of rolled back vote is never
+     * applied.
+     */
+    public void append(long postId, long delta) throws InternalServerErrorException {
+        repository.append(postId, delta);
+    }
+
+    /**
+     * Same as append, but deltas of many posts are appended with a single batch.
+     */
+    public void appendAll(@NonNull Map<Long, Long> deltas) throws InternalServerErrorException {
+        repository.appendAll(deltas);
+    }
+
+    /**
+     * If flush fails, deltas stay in the journal and are applied with the next flush.
+     *
+     * @return Amount of updated posts.
+     */
+    @Scheduled(fixedDelayString = "${karma.flush-interval:PT0.5S}")
+    @Transactional
+    public int flush() {
+
+        if (isDrained && !karmaWriteMode.equals(KarmaWriteMode.WRITE_BEHIND)) {
+            return 0;
+        }
+        int updatedPosts = repository.applyAll();
+        isDrained = updatedPosts == 0;
+        return updatedPosts;
+    }
+
+}
@@ -0,0 +1,10 @@
+package com.msik404.karmaappmonolith.karma;
+
+/**
+ * Result of rating or unrating a post with a single statement.
+ *
+ * @param isPostFound Whether rated post exists.
+ * @param delta       Change of post karma score caused by the vote, zero if requested rating was already in place.
+ */
+public record KarmaScoreChange(boolean isPostFound, long delta) {
+}
@@ -0,0 +1,35 @@
+package com.msik404.karmaappmonolith.karma;
+
+import com.msik404.karmaappmonolith.post.repository.PostRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * posts.karma_score is denormalized sum of votes from karma_scores. This job periodically corrects the score of every
+ * post whose score together with its pending journal deltas and shards does not match its votes. Pending deltas are
+ * subtracted instead of being applied first, so the job does not have to stop writers and no delta is counted twice.
+ */
+@Component
+@RequiredArgsConstructor
+public class KarmaScoreReconciliationJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(KarmaScoreReconciliationJob.class);
+
+    private final PostRepository postRepository;
+
+    @Scheduled(cron = "${karma.reconciliation.cron:0 0 4 * * *}")
+    @Transactional
+    public int reconcile() {
+
+        int correctedPosts = postRepository.recomputeKarmaScores();
+        if (correctedPosts > 0) {
+            logger.info("Karma score of {} posts was corrected by reconciliation.", correctedPosts);
+        }
+        return correctedPosts;
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.msik404.karmaappmonolith.karma;
+
+import java.util.Collection;
+import java.util.Map;
+
+import com.msik404.karmaappmonolith.post.exception.InternalServerErrorException;
+import org.springframework.lang.NonNull;
+
+public interface KarmaScoreRepositoryCustom {
+
+    @NonNull
+    KarmaScoreChange upsertRating(
+            long userId,
+            long postId,
+            boolean isPositive,
+            boolean shouldUpdatePost
+    ) throws InternalServerErrorException;
+
+    long deleteRating(long userId, long postId, boolean shouldUpdatePost) throws InternalServerErrorException;
+
+    @NonNull
+    Map<Long, Boolean> findRatingsOfUser(long userId, @NonNull Collection<Long> postIds)
+            throws InternalServerErrorException;
+
+    @NonNull
+    Map<Long, Long> batchUpdateRatings(
+            long userId,
+            @NonNull Map<Long, Boolean> ratingsToUpsert,
+            @NonNull Collection<Long> postIdsToDelete
+    ) throws InternalServerErrorException;
+
+}
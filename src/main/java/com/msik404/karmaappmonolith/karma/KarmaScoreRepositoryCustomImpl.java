@@ -0,0 +1,227 @@
+package com.msik404.karmaappmonolith.karma;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.msik404.karmaappmonolith.post.exception.InternalServerErrorException;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Repository;
+
+@Repository
+@RequiredArgsConstructor
+public class KarmaScoreRepositoryCustomImpl implements KarmaScoreRepositoryCustom {
+
+    // Row is inserted only if post exists, so that missing post is reported instead of foreign key violation.
+    // On conflict row is updated only if rating flips, so repeated vote does nothing. xmax = 0 holds only for
+    // inserted rows, which tells new vote (delta 1) apart from flipped vote (delta 2).
+    private static final String UPSERT_RATING_SQL = """
+            WITH upserted AS (
+                INSERT INTO karma_scores (user_id, post_id, is_positive)
+                SELECT CAST(?1 AS bigint), p.id, CAST(?3 AS boolean) FROM posts p WHERE p.id = CAST(?2 AS bigint)
+                ON CONFLICT (user_id, post_id) DO UPDATE SET is_positive = EXCLUDED.is_positive
+                WHERE karma_scores.is_positive <> EXCLUDED.is_positive
+                RETURNING (xmax = 0) AS is_inserted, is_positive
+            ), delta AS (
+                SELECT CAST(
+                    (CASE WHEN is_inserted THEN 1 ELSE 2 END) * (CASE WHEN is_positive THEN 1 ELSE -1 END) AS bigint
+                ) AS value
+                FROM upserted
+            ), updated_post AS (
+                UPDATE posts p SET karma_score = p.karma_score + d.value
+                FROM delta d
+                WHERE p.id = CAST(?2 AS bigint) AND CAST(?4 AS boolean)
+                RETURNING p.id
+            )
+            SELECT
+                EXISTS(SELECT 1 FROM posts WHERE id = CAST(?2 AS bigint)) AS is_post_found,
+                COALESCE((SELECT value FROM delta), CAST(0 AS bigint)) AS delta
+            """;
+
+    private static final String DELETE_RATING_SQL = """
+            WITH deleted AS (
+                DELETE FROM karma_scores
+                WHERE user_id = CAST(?1 AS bigint) AND post_id = CAST(?2 AS bigint)
+                RETURNING CAST(CASE WHEN is_positive THEN -1 ELSE 1 END AS bigint) AS value
+            ), updated_post AS (
+                UPDATE posts p SET karma_score = p.karma_score + d.value
+                FROM deleted d
+                WHERE p.id = CAST(?2 AS bigint) AND CAST(?3 AS boolean)
+                RETURNING p.id
+            )
+            SELECT COALESCE((SELECT value FROM deleted), CAST(0 AS bigint))
+            """;
+
+    private static final String FIND_RATINGS_OF_USER_SQL =
+            "SELECT post_id, is_positive FROM karma_scores WHERE user_id = ? AND post_id = ANY(?)";
+
+    // Same as UPSERT_RATING_SQL, but for many posts of one user at once. Only changed ratings are returned, with deltas
+    // computed from the row versions which were actually written, so concurrent ratings of the same posts can not make
+    // them stale. Rows are written in ascending post id order, so that concurrent batches can not deadlock.
+    private static final String BATCH_UPSERT_RATING_SQL = """
+            WITH upserted AS (
+                INSERT INTO karma_scores (user_id, post_id, is_positive)
+                SELECT CAST(? AS bigint), r.post_id, r.is_positive
+                FROM unnest(CAST(? AS bigint[]), CAST(? AS boolean[])) AS r(post_id, is_positive)
+                JOIN posts p ON p.id = r.post_id
+                ORDER BY r.post_id
+                ON CONFLICT (user_id, post_id) DO UPDATE SET is_positive = EXCLUDED.is_positive
+                WHERE karma_scores.is_positive <> EXCLUDED.is_positive
+                RETURNING post_id, (xmax = 0) AS is_inserted, is_positive
+            )
+            SELECT post_id, CAST(
+                (CASE WHEN is_inserted THEN 1 ELSE 2 END) * (CASE WHEN is_positive THEN 1 ELSE -1 END) AS bigint
+            ) AS delta
+            FROM upserted
+            """;
+
+    // Rows are locked in ascending post id order before they are deleted, deltas are computed from deleted rows.
+    private static final String BATCH_DELETE_RATING_SQL = """
+            DELETE FROM karma_scores k
+            USING (
+                SELECT post_id FROM karma_scores
+                WHERE user_id = CAST(? AS bigint) AND post_id = ANY(CAST(? AS bigint[]))
+                ORDER BY post_id
+                FOR UPDATE
+            ) AS locked
+            WHERE k.user_id = CAST(? AS bigint) AND k.post_id = locked.post_id
+            RETURNING k.post_id, CAST(CASE WHEN k.is_positive THEN -1 ELSE 1 END AS bigint) AS delta
+            """;
+
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserts rating or flips existing one, and optionally applies karma score delta to the post, all in one
+     * statement. Concurrent identical votes of the same user can not cause duplicate key violation, the latter one
+     * simply yields zero delta.
+     *
+     * @param userId           Id of user who rates the post.
+     * @param postId           Id of rated post.
+     * @param isPositive       New rating.
+     * @param shouldUpdatePost Whether delta should be added to posts.karma_score within this statement.
+     * @return KarmaScoreChange with zero delta if requested rating was already in place.
+     */
+    @NonNull
+    @Override
+    public KarmaScoreChange upsertRating(
+            long userId,
+            long postId,
+            boolean isPositive,
+            boolean shouldUpdatePost)
+            throws InternalServerErrorException {
+
+        try {
+            var row = (Object[]) entityManager.createNativeQuery(UPSERT_RATING_SQL)
+                    .setParameter(1, userId)
+                    .setParameter(2, postId)
+                    .setParameter(3, isPositive)
+                    .setParameter(4, shouldUpdatePost)
+                    .getSingleResult();
+
+            return new KarmaScoreChange((Boolean) row[0], ((Number) row[1]).longValue());
+        } catch (RuntimeException ex) {
+            throw new InternalServerErrorException("Could not rate post.");
+        }
+    }
+
+    /**
+     * Deletes rating and optionally applies karma score delta to the post, all in one statement.
+     *
+     * @param userId           Id of user who rated the post.
+     * @param postId           Id of rated post.
+     * @param shouldUpdatePost Whether delta should be added to posts.karma_score within this statement.
+     * @return Change of post karma score, zero if there was no rating.
+     */
+    @Override
+    public long deleteRating(long userId, long postId, boolean shouldUpdatePost) throws InternalServerErrorException {
+
+        try {
+            var delta = (Number) entityManager.createNativeQuery(DELETE_RATING_SQL)
+                    .setParameter(1, userId)
+                    .setParameter(2, postId)
+                    .setParameter(3, shouldUpdatePost)
+                    .getSingleResult();
+
+            return delta.longValue();
+        } catch (RuntimeException ex) {
+            throw new InternalServerErrorException("Could not unrate post.");
+        }
+    }
+
+    /**
+     * @param userId  Id of user whose ratings are requested.
+     * @param postIds Ids of posts.
+     * @return Map of post id to isPositive, only for posts rated by the user.
+     */
+    @NonNull
+    @Override
+    public Map<Long, Boolean> findRatingsOfUser(long userId, @NonNull Collection<Long> postIds)
+            throws InternalServerErrorException {
+
+        Map<Long, Boolean> ratings = new HashMap<>(postIds.size());
+        if (postIds.isEmpty()) {
+            return ratings;
+        }
+
+        try {
+            jdbcTemplate.query(
+                    FIND_RATINGS_OF_USER_SQL,
+                    (RowCallbackHandler) resultSet -> ratings.put(resultSet.getLong(1), resultSet.getBoolean(2)),
+                    userId,
+                    postIds.toArray(Long[]::new)
+            );
+        } catch (RuntimeException ex) {
+            throw new InternalServerErrorException("Could not find ratings of posts.");
+        }
+        return ratings;
+    }
+
+    /**
+     * Upserts and deletes ratings of a single user with two statements. Post karma scores are not updated.
+     *
+     * @param userId          Id of user who rates posts.
+     * @param ratingsToUpsert Map of post id to new rating.
+     * @param postIdsToDelete Ids of posts whose ratings are deleted.
+     * @return Map of post id to karma score delta, only for posts whose rating was changed.
+     */
+    @NonNull
+    @Override
+    public Map<Long, Long> batchUpdateRatings(
+            long userId,
+            @NonNull Map<Long, Boolean> ratingsToUpsert,
+            @NonNull Collection<Long> postIdsToDelete)
+            throws InternalServerErrorException {
+
+        Map<Long, Long> deltas = new HashMap<>(ratingsToUpsert.size() + postIdsToDelete.size());
+        RowCallbackHandler deltaCollector = resultSet -> deltas.put(resultSet.getLong(1), resultSet.getLong(2));
+
+        try {
+            if (!ratingsToUpsert.isEmpty()) {
+                Long[] postIds = ratingsToUpsert.keySet().toArray(Long[]::new);
+                Boolean[] ratings = Arrays.stream(postIds).map(ratingsToUpsert::get).toArray(Boolean[]::new);
+
+                jdbcTemplate.query(BATCH_UPSERT_RATING_SQL, deltaCollector, userId, postIds, ratings);
+            }
+
+            if (!postIdsToDelete.isEmpty()) {
+                jdbcTemplate.query(
+                        BATCH_DELETE_RATING_SQL,
+                        deltaCollector,
+                        userId,
+                        postIdsToDelete.toArray(Long[]::new),
+                        userId
+                );
+            }
+        } catch (RuntimeException ex) {
+            throw new InternalServerErrorException("Could not rate posts.");
+        }
+        return deltas;
+    }
+
+}
@@ -1,9 +1,10 @@
 package com.msik404.karmaappmonolith.karma;
 
+import java.util.Collection;
+import java.util.Map;
+
 import com.msik404.karmaappmonolith.karma.exception.KarmaScoreNotFoundException;
-import com.msik404.karmaappmonolith.post.Post;
-import com.msik404.karmaappmonolith.user.User;
-import jakarta.persistence.EntityManager;
+import com.msik404.karmaappmonolith.post.exception.InternalServerErrorException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
@@ -13,21 +14,50 @@ import org.springframework.stereotype.Service;
 public class KarmaScoreService {
 
     private final KarmaScoreRepository repository;
-    private final EntityManager entityManager;
 
     public KarmaScore findById(@NonNull KarmaKey id) throws KarmaScoreNotFoundException {
         return repository.findById(id).orElseThrow(KarmaScoreNotFoundException::new);
     }
 
-    // WARNING THERE MAY BE possible errors when entity with that KarmaKey exists
-    public KarmaScore create(long userId, long postId, boolean isPositive) {
+    /**
+     * Rating is inserted or flipped with a single statement, so concurrent votes of the same user never cause
+     * duplicate key violation.
+     *
+     * @param shouldUpdatePost Whether post karma score should be updated by the same statement.
+     */
+    @NonNull
+    public KarmaScoreChange rate(long userId, long postId, boolean isPositive, boolean shouldUpdatePost)
+            throws InternalServerErrorException {
+
+        return repository.upsertRating(userId, postId, isPositive, shouldUpdatePost);
+    }
+
+    /**
+     * @param shouldUpdatePost Whether post karma score should be updated by the same statement.
+     * @return Change of post karma score, zero if post was not rated by the user.
+     */
+    public long unrate(long userId, long postId, boolean shouldUpdatePost) throws InternalServerErrorException {
+        return repository.deleteRating(userId, postId, shouldUpdatePost);
+    }
+
+    @NonNull
+    public Map<Long, Boolean> findRatingsOfUser(long userId, @NonNull Collection<Long> postIds)
+            throws InternalServerErrorException {
+
+        return repository.findRatingsOfUser(userId, postIds);
+    }
+
+    /**
+     * Post karma scores are not updated, caller is responsible for applying returned deltas of changed ratings.
+     */
+    @NonNull
+    public Map<Long, Long> batchUpdateRatings(
+            long userId,
+            @NonNull Map<Long, Boolean> ratingsToUpsert,
+            @NonNull Collection<Long> postIdsToDelete)
+            throws InternalServerErrorException {
 
-        var karmaScore = new KarmaScore(
-                entityManager.getReference(User.class, userId),
-                entityManager.getReference(Post.class, postId),
-                isPositive
-        );
-        return repository.save(karmaScore);
+        return repository.batchUpdateRatings(userId, ratingsToUpsert, postIdsToDelete);
     }
 
     public void deleteById(@NonNull KarmaKey karmaKey) {
@@ -0,0 +1,10 @@
+package com.msik404.karmaappmonolith.karma;
+
+public enum KarmaWriteMode {
+    // post karma score is updated in the same transaction as the vote
+    SYNC,
+    // vote and its post karma score delta are persisted right away, deltas are applied to posts in batches
+    WRITE_BEHIND,
+    // vote is persisted right away, post karma score delta is added to one of N shard rows of the post
+    SHARDED
+}
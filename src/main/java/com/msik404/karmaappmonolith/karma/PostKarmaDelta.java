@@ -0,0 +1,30 @@
+package com.msik404.karmaappmonolith.karma;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Journal entry of a karma score delta of a post which is not yet applied to posts.karma_score, used in WRITE_BEHIND
+ * mode. Entry is inserted within the vote transaction, so it exists if and only if the vote was committed, and is
+ * removed by the same statement which applies it. Inserts never lock existing rows and there is deliberately no
+ * foreign key to posts, so that votes of a hot post do not queue up on a single row.
+ */
+@Entity
+@Table(name = "post_karma_deltas", indexes = @Index(name = "post_karma_deltas_post_id", columnList = "post_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PostKarmaDelta {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "post_id")
+    private Long postId;
+
+    private Long delta;
+
+}
@@ -0,0 +1,16 @@
+package com.msik404.karmaappmonolith.karma;
+
+import java.util.Map;
+
+import com.msik404.karmaappmonolith.post.exception.InternalServerErrorException;
+import org.springframework.lang.NonNull;
+
+public interface PostKarmaDeltaRepositoryCustom {
+
+    void append(long postId, long delta) throws InternalServerErrorException;
+
+    void appendAll(@NonNull Map<Long, Long> deltas) throws InternalServerErrorException;
+
+    int applyAll() throws InternalServerErrorException;
+
+}
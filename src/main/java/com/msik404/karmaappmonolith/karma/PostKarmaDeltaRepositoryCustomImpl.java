@@ -0,0 +1,82 @@
+package com.msik404.karmaappmonolith.karma;
+
+import java.util.List;
+import java.util.Map;
+
+import com.msik404.karmaappmonolith.post.exception.InternalServerErrorException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Repository;
+
+@Repository
+@RequiredArgsConstructor
+public class PostKarmaDeltaRepositoryCustomImpl implements PostKarmaDeltaRepositoryCustom {
+
+    private static final String APPEND_SQL = "INSERT INTO post_karma_deltas (post_id, delta) VALUES (?, ?)";
+
+    // Entries are drained with DELETE ... RETURNING, so every committed entry is applied exactly once: either it is
+    // visible to this statement and removed by it, or it is left for the next one.
+    private static final String APPLY_ALL_SQL = """
+            WITH drained AS (
+                DELETE FROM post_karma_deltas RETURNING post_id, delta
+            ), summed AS (
+                SELECT post_id, CAST(SUM(delta) AS bigint) AS delta FROM drained GROUP BY post_id
+            )
+            UPDATE posts p SET karma_score = p.karma_score + s.delta
+            FROM summed s
+            WHERE p.id = s.post_id AND s.delta <> 0
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void append(long postId, long delta) throws InternalServerErrorException {
+
+        try {
+            jdbcTemplate.update(APPEND_SQL, postId, delta);
+        } catch (RuntimeException ex) {
+            throw new InternalServerErrorException("Could not add karma score delta of post.");
+        }
+    }
+
+    /**
+     * Appends deltas of many posts with a single JDBC batch.
+     *
+     * @param deltas Map of post id to karma score delta.
+     */
+    @Override
+    public void appendAll(@NonNull Map<Long, Long> deltas) throws InternalServerErrorException {
+
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> args = deltas.entrySet()
+                .stream()
+                .map(entry -> new Object[]{entry.getKey(), entry.getValue()})
+                .toList();
+
+        try {
+            jdbcTemplate.batchUpdate(APPEND_SQL, args);
+        } catch (RuntimeException ex) {
+            throw new InternalServerErrorException("Could not add karma score deltas of posts.");
+        }
+    }
+
+    /**
+     * Applies all journaled deltas to posts.karma_score and removes them.
+     *
+     * @return Amount of updated posts.
+     */
+    @Override
+    public int applyAll() throws InternalServerErrorException {
+
+        try {
+            return jdbcTemplate.update(APPLY_ALL_SQL);
+        } catch (RuntimeException ex) {
+            throw new InternalServerErrorException("Could not apply karma score deltas of posts.");
+        }
+    }
+
+}
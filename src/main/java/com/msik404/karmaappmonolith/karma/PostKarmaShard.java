@@ -0,0 +1,27 @@
+package com.msik404.karmaappmonolith.karma;
+
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Karma score delta of a post which is not yet folded into posts.karma_score. Each post has up to karma.shards.count
+ * slots, so that concurrent voters of the same post lock different rows. There is deliberately no foreign key to
+ * posts, so that writes to shards never touch posts row.
+ */
+@Entity
+@Table(name = "post_karma_shards")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PostKarmaShard {
+
+    @EmbeddedId
+    private PostKarmaShardKey id;
+
+    private Long delta;
+
+}
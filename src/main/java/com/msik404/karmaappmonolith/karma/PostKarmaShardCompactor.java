@@ -0,0 +1,41 @@
+package com.msik404.karmaappmonolith.karma;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Folds post_karma_shards into posts.karma_score every karma.shards.compaction-interval. Feed is paginated on
+ * posts.karma_score with posts_keyset_pagination index, so in SHARDED mode feed order lags behind votes by at most
+ * this interval, while each post row is updated once per interval instead of once per vote.
+ */
+@Component
+@RequiredArgsConstructor
+public class PostKarmaShardCompactor {
+
+    private final PostKarmaShardRepository repository;
+
+    @Value("${karma.write-mode:SYNC}")
+    private KarmaWriteMode karmaWriteMode = KarmaWriteMode.SYNC;
+
+    // In other write modes shards are only compacted until deltas left by a previous mode are folded.
+    private volatile boolean isDrained = false;
+
+    /**
+     * @return Amount of updated posts.
+     */
+    @Scheduled(fixedDelayString = "${karma.shards.compaction-interval:PT1S}")
+    @Transactional
+    public int compact() {
+
+        if (isDrained && !karmaWriteMode.equals(KarmaWriteMode.SHARDED)) {
+            return 0;
+        }
+        int updatedPosts = repository.compact();
+        isDrained = updatedPosts == 0;
+        return updatedPosts;
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.msik404.karmaappmonolith.karma;
+
+import java.io.Serializable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Embeddable
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PostKarmaShardKey implements Serializable {
+
+    @Column(name = "post_id")
+    private Long postId;
+
+    @Column(name = "slot")
+    private Integer slot;
+
+}
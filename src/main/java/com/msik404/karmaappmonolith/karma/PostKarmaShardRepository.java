@@ -0,0 +1,7 @@
+package com.msik404.karmaappmonolith.karma;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface PostKarmaShardRepository
+        extends JpaRepository<PostKarmaShard, PostKarmaShardKey>, PostKarmaShardRepositoryCustom {
+}
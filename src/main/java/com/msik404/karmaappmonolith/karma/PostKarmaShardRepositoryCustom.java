@@ -0,0 +1,11 @@
+package com.msik404.karmaappmonolith.karma;
+
+import com.msik404.karmaappmonolith.post.exception.InternalServerErrorException;
+
+public interface PostKarmaShardRepositoryCustom {
+
+    int addToShard(long postId, int slot, long delta) throws InternalServerErrorException;
+
+    int compact() throws InternalServerErrorException;
+
+}
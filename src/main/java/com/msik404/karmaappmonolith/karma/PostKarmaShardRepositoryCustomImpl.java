@@ -0,0 +1,63 @@
+package com.msik404.karmaappmonolith.karma;
+
+import com.msik404.karmaappmonolith.post.exception.InternalServerErrorException;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+@Repository
+@RequiredArgsConstructor
+public class PostKarmaShardRepositoryCustomImpl implements PostKarmaShardRepositoryCustom {
+
+    private static final String ADD_TO_SHARD_SQL = """
+            INSERT INTO post_karma_shards (post_id, slot, delta)
+            VALUES (CAST(?1 AS bigint), CAST(?2 AS integer), CAST(?3 AS bigint))
+            ON CONFLICT (post_id, slot) DO UPDATE SET delta = post_karma_shards.delta + EXCLUDED.delta
+            """;
+
+    // Shards are drained with DELETE ... RETURNING, so delta added concurrently to a shard is either returned by this
+    // statement (if its row was locked by the writer, DELETE waits and sees the new value) or lands in a new row which
+    // is folded by the next compaction.
+    private static final String COMPACT_SQL = """
+            WITH drained AS (
+                DELETE FROM post_karma_shards RETURNING post_id, delta
+            ), summed AS (
+                SELECT post_id, CAST(SUM(delta) AS bigint) AS delta FROM drained GROUP BY post_id
+            )
+            UPDATE posts p SET karma_score = p.karma_score + s.delta
+            FROM summed s
+            WHERE p.id = s.post_id AND s.delta <> 0
+            """;
+
+    private final EntityManager entityManager;
+
+    @Override
+    public int addToShard(long postId, int slot, long delta) throws InternalServerErrorException {
+
+        try {
+            return entityManager.createNativeQuery(ADD_TO_SHARD_SQL)
+                    .setParameter(1, postId)
+                    .setParameter(2, slot)
+                    .setParameter(3, delta)
+                    .executeUpdate();
+        } catch (RuntimeException ex) {
+            throw new InternalServerErrorException("Could not add karma score to post shard.");
+        }
+    }
+
+    /**
+     * Folds all shards into posts.karma_score and removes them.
+     *
+     * @return Amount of updated posts.
+     */
+    @Override
+    public int compact() throws InternalServerErrorException {
+
+        try {
+            return entityManager.createNativeQuery(COMPACT_SQL).executeUpdate();
+        } catch (RuntimeException ex) {
+            throw new InternalServerErrorException("Could not compact post karma shards.");
+        }
+    }
+
+}
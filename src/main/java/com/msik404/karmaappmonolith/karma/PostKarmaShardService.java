@@ -0,0 +1,31 @@
+package com.msik404.karmaappmonolith.karma;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.msik404.karmaappmonolith.post.exception.InternalServerErrorException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+@Service
+public class PostKarmaShardService {
+
+    private final PostKarmaShardRepository repository;
+    private final int shardCount;
+
+    public PostKarmaShardService(
+            PostKarmaShardRepository repository,
+            @Value("${karma.shards.count:16}") int shardCount) {
+
+        this.repository = repository;
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * Delta is added to a random shard of the post, so that concurrent voters of a hot post rarely wait for the same
+     * row lock. Should be called within the transaction which persists the vote.
+     */
+    public void addToRandomShard(long postId, long delta) throws InternalServerErrorException {
+        repository.addToShard(postId, ThreadLocalRandom.current().nextInt(shardCount), delta);
+    }
+
+}
@@ -0,0 +1,215 @@
+package com.msik404.karmaappmonolith.karma.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Ratings of each user kept in redis hash of that user, in which field is post id and value is 1 for positive rating,
+ * -1 for negative rating and 0 for post which is not rated by the user. Every present field is up to date, absent
+ * fields are loaded from database when they are requested for the first time.
+ * <p>
+ * Ratings changed by the user are removed from the hash after their transaction commits, instead of being written, so
+ * the outcome does not depend on the order in which concurrent transactions reach redis. Each removal also increments
+ * version field of the hash, and ratings loaded from database are written only if the version did not change since it
+ * was read before loading. Therefore value read from database before a concurrent rating change cannot be cached, not
+ * even after the hash expired in between.
+ * <p>
+ * Hash expires cache.user-ratings.ttl after it was created, whichever path creates it, so ratings of users who are not
+ * active anymore do not stay in redis. If redis cannot be used, ratings are read from database.
+ */
+@Service
+public class UserRatingsRedisCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserRatingsRedisCache.class);
+
+    private static final String USER_RATINGS_KEY_PREFIX = "user-ratings:";
+
+    private static final String POSITIVE = "1";
+    private static final String NEGATIVE = "-1";
+    private static final String NOT_RATED = "0";
+
+    private static final String VERSION_FIELD = "version";
+
+    private static final RedisScript<Long> WRITE_RATINGS_SCRIPT = RedisScript.of(
+            new ClassPathResource("scripts/write_user_ratings.lua"),
+            Long.class
+    );
+
+    private static final RedisScript<Long> EVICT_RATINGS_SCRIPT = RedisScript.of(
+            new ClassPathResource("scripts/evict_user_ratings.lua"),
+            Long.class
+    );
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final Duration ttl;
+
+    public UserRatingsRedisCache(
+            StringRedisTemplate redisTemplate,
+            @Value("${cache.user-ratings.ttl:PT30M}") Duration ttl) {
+
+        this.redisTemplate = redisTemplate;
+        this.ttl = ttl;
+    }
+
+    @NonNull
+    static String getUserRatingsKey(long userId) {
+        return USER_RATINGS_KEY_PREFIX + userId;
+    }
+
+    @NonNull
+    private static String encodeRating(@Nullable Boolean isPositive) {
+
+        if (isPositive == null) {
+            return NOT_RATED;
+        }
+        return isPositive ? POSITIVE : NEGATIVE;
+    }
+
+    private void writeRatings(long userId, @NonNull Map<Long, String> encodedRatings, @Nullable String version) {
+
+        List<String> args = new ArrayList<>(3 + encodedRatings.size() * 2);
+        args.add(Long.toString(ttl.toMillis()));
+        args.add(VERSION_FIELD);
+        args.add(version == null ? "" : version);
+        encodedRatings.forEach((postId, rating) -> {
+            args.add(postId.toString());
+            args.add(rating);
+        });
+
+        redisTemplate.execute(WRITE_RATINGS_SCRIPT, List.of(getUserRatingsKey(userId)), args.toArray());
+    }
+
+    /**
+     * @param userId  Id of user whose ratings are requested.
+     * @param postIds Ids of posts, for which ratings are requested.
+     * @param loader  Reads ratings of the user for given post ids from database, it is called only for posts whose
+     *                ratings are not cached.
+     * @return Map with post id as key and isPositive as value, posts not rated by the user are absent.
+     */
+    @NonNull
+    public Map<Long, Boolean> findRatingsOfUser(
+            long userId,
+            @NonNull List<Long> postIds,
+            @NonNull Function<Collection<Long>, Map<Long, Boolean>> loader) {
+
+        if (postIds.isEmpty()) {
+            return Map.of();
+        }
+
+        List<Object> cachedValues;
+        try {
+            List<Object> fields = new ArrayList<>(postIds.size() + 1);
+            postIds.forEach(postId -> fields.add(postId.toString()));
+            fields.add(VERSION_FIELD);
+
+            cachedValues = redisTemplate.opsForHash().multiGet(getUserRatingsKey(userId), fields);
+        } catch (DataAccessException ex) {
+            logger.warn("Could not read cached ratings of user: {}.", userId, ex);
+            return loader.apply(postIds);
+        }
+
+        String version = (String) cachedValues.get(postIds.size());
+
+        Map<Long, Boolean> ratings = new HashMap<>(postIds.size());
+        List<Long> missingPostIds = new ArrayList<>();
+        for (int i = 0; i < postIds.size(); i++) {
+            Object value = cachedValues.get(i);
+            if (value == null) {
+                missingPostIds.add(postIds.get(i));
+            } else if (!NOT_RATED.equals(value)) {
+                ratings.put(postIds.get(i), POSITIVE.equals(value));
+            }
+        }
+
+        if (missingPostIds.isEmpty()) {
+            return ratings;
+        }
+
+        Map<Long, Boolean> loadedRatings = loader.apply(missingPostIds);
+        ratings.putAll(loadedRatings);
+
+        Map<Long, String> encodedRatings = new HashMap<>(missingPostIds.size());
+        for (Long postId : missingPostIds) {
+            encodedRatings.put(postId, encodeRating(loadedRatings.get(postId)));
+        }
+        try {
+            writeRatings(userId, encodedRatings, version);
+        } catch (DataAccessException ex) {
+            logger.warn("Could not cache ratings of user: {}.", userId, ex);
+        }
+
+        return ratings;
+    }
+
+    /**
+     * Removes cached ratings of the user for given posts, so that they are loaded from database again. If they could
+     * not be removed, whole hash of the user is removed.
+     *
+     * @param userId  Id of user who has changed ratings of the posts.
+     * @param postIds Ids of posts, whose ratings were changed.
+     */
+    public void evictRatings(long userId, @NonNull Collection<Long> postIds) {
+
+        if (postIds.isEmpty()) {
+            return;
+        }
+
+        List<String> args = new ArrayList<>(2 + postIds.size());
+        args.add(Long.toString(ttl.toMillis()));
+        args.add(VERSION_FIELD);
+        postIds.forEach(postId -> args.add(postId.toString()));
+
+        try {
+            redisTemplate.execute(EVICT_RATINGS_SCRIPT, List.of(getUserRatingsKey(userId)), args.toArray());
+        } catch (DataAccessException ex) {
+            logger.warn("Could not evict cached ratings of user: {}, removing them.", userId, ex);
+            try {
+                redisTemplate.delete(getUserRatingsKey(userId));
+            } catch (DataAccessException deleteEx) {
+                logger.error("Could not remove cached ratings of user: {}.", userId, deleteEx);
+            }
+        }
+    }
+
+    /**
+     * Evicts cached ratings after current transaction commits, so that ratings read from database afterwards include
+     * the change. If there is no transaction, ratings are evicted immediately.
+     *
+     * @param userId  Id of user who has changed ratings of the posts.
+     * @param postIds Ids of posts, whose ratings were changed.
+     */
+    public void evictRatingsAfterCommit(long userId, @NonNull Collection<Long> postIds) {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evictRatings(userId, postIds);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evictRatings(userId, postIds);
+            }
+        });
+    }
+
+}
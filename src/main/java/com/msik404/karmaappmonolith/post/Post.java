@@ -14,17 +14,26 @@ import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 
 @Entity
-// I chose this index because of required sorting in this method of pagination.
-// I am not sure if this index is perfect, because karmaScore will often change and also visibility is not indexed
-// and is used in where clause
-@Table(name = "posts", indexes = @Index(name = "posts_keyset_pagination", columnList = "karmaScore DESC, id"))
+// I chose these indexes because of required sorting in this method of pagination.
+// posts_keyset_pagination serves feeds of any visibilities, ACTIVE feed has its own partial index posts_active_keyset,
+// which can not be declared here, see schema.sql. posts_user_keyset serves feeds of posts of a single user.
+@Table(name = "posts", indexes = {
+        @Index(name = "posts_keyset_pagination", columnList = "karmaScore DESC, id"),
+        @Index(name = "posts_user_keyset", columnList = "user_id, karmaScore DESC, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Post implements ComparablePost {
 
+    // Has to match increment of the sequence, which was created with 50 as Hibernate default.
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Same sequence which Hibernate generated implicitly, with ids allocated in pools of ID_ALLOCATION_SIZE,
+    // so that only one sequence call is made per ID_ALLOCATION_SIZE inserted rows.
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "post_seq")
+    @SequenceGenerator(name = "post_seq", sequenceName = "post_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     private String headline;
@@ -33,6 +42,7 @@ public class Post implements ComparablePost {
 
     // This will be updated in transaction with KarmaScore, so that these values will be kept in sync.
     // Doing so we won't have to scan KarmaScore table each time we need to get the score of a post.
+    // In WRITE_BEHIND and SHARDED karma write modes it is updated in batches, see KarmaWriteMode.
     private Long karmaScore;
 
     @Enumerated(EnumType.STRING)
@@ -8,7 +8,9 @@ import com.msik404.karmaappmonolith.auth.exception.InsufficientRoleException;
 import com.msik404.karmaappmonolith.docs.KarmaAppEndpointDocs;
 import com.msik404.karmaappmonolith.docs.SwaggerConfiguration;
 import com.msik404.karmaappmonolith.position.ScrollPosition;
+import com.msik404.karmaappmonolith.post.dto.BatchRatingRequest;
 import com.msik404.karmaappmonolith.post.dto.PostCreationRequest;
+import com.msik404.karmaappmonolith.post.dto.PostRatingOperationResult;
 import com.msik404.karmaappmonolith.post.dto.PostRatingResponse;
 import com.msik404.karmaappmonolith.post.dto.PostResponse;
 import com.msik404.karmaappmonolith.post.exception.*;
@@ -553,6 +555,39 @@ public class PostController {
         return ResponseEntity.ok(null);
     }
 
+    @Operation(
+            summary = KarmaAppEndpointDocs.OP_SUM_RATE_POSTS_IN_BATCH,
+            description = KarmaAppEndpointDocs.OP_DESC_RATE_POSTS_IN_BATCH
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = KarmaAppEndpointDocs.RESP_OK_RATE_POSTS_IN_BATCH,
+                    content = {@Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = PostRatingOperationResult.class)
+                    )}
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = KarmaAppEndpointDocs.RESP_INTERNAL_DESC_RATE_POSTS_IN_BATCH,
+                    content = {@Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )}
+            ),
+    })
+    @SecurityRequirement(name = SwaggerConfiguration.AUTH)
+    @PostMapping("user/posts/ratings/batch")
+    public List<PostRatingOperationResult> rateInBatch(
+
+            @Parameter(description = KarmaAppEndpointDocs.PARAM_DESC_BATCH_RATING_REQUEST)
+            @Valid @RequestBody BatchRatingRequest request
+    ) throws InternalServerErrorException {
+
+        return postService.rateInBatch(request.operations());
+    }
+
     @Operation(
             summary = KarmaAppEndpointDocs.OP_SUM_UNRATE_POST,
             description = KarmaAppEndpointDocs.OP_DESC_UNRATE_POST
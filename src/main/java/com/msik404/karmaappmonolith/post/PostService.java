@@ -2,19 +2,26 @@ package com.msik404.karmaappmonolith.post;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalDouble;
+import java.util.Set;
 
 import javax.imageio.ImageIO;
 
 import com.msik404.karmaappmonolith.auth.exception.InsufficientRoleException;
-import com.msik404.karmaappmonolith.karma.KarmaKey;
-import com.msik404.karmaappmonolith.karma.KarmaScoreRepository;
+import com.msik404.karmaappmonolith.karma.KarmaDeltaJournal;
+import com.msik404.karmaappmonolith.karma.KarmaScoreChange;
 import com.msik404.karmaappmonolith.karma.KarmaScoreService;
-import com.msik404.karmaappmonolith.karma.exception.KarmaScoreNotFoundException;
+import com.msik404.karmaappmonolith.karma.KarmaWriteMode;
+import com.msik404.karmaappmonolith.karma.PostKarmaShardService;
+import com.msik404.karmaappmonolith.karma.cache.UserRatingsRedisCache;
 import com.msik404.karmaappmonolith.position.ScrollPosition;
+import com.msik404.karmaappmonolith.post.cache.PostFeedNearCache;
 import com.msik404.karmaappmonolith.post.cache.PostRedisCache;
 import com.msik404.karmaappmonolith.post.cache.PostRedisCacheHandlerService;
 import com.msik404.karmaappmonolith.post.dto.*;
@@ -23,6 +30,7 @@ import com.msik404.karmaappmonolith.post.repository.PostRepository;
 import com.msik404.karmaappmonolith.user.Role;
 import com.msik404.karmaappmonolith.user.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 import org.springframework.security.core.GrantedAuthority;
@@ -38,10 +46,16 @@ public class PostService {
 
     private final PostRepository repository;
     private final UserRepository userRepository;
-    private final KarmaScoreRepository karmaScoreRepository;
     private final KarmaScoreService karmaScoreService;
+    private final UserRatingsRedisCache userRatingsCache;
     private final PostRedisCache cache;
     private final PostRedisCacheHandlerService cacheHandler;
+    private final PostFeedNearCache nearCache;
+    private final KarmaDeltaJournal karmaDeltaJournal;
+    private final PostKarmaShardService karmaShardService;
+
+    @Value("${karma.write-mode:SYNC}")
+    private KarmaWriteMode karmaWriteMode = KarmaWriteMode.SYNC;
 
     @Transactional(readOnly = true)
     @NonNull
@@ -93,6 +107,41 @@ public class PostService {
         return results;
     }
 
+    /**
+     * Page of ACTIVE feed is usually served from the cache, so instead of joining posts with karma scores of the
+     * client, ratings of posts on the page are taken from cached ratings of the client. Only ratings which are not
+     * cached yet are read from database.
+     */
+    @NonNull
+    private List<PostRatingResponse> findRatingsOfFeedPage(
+            int size,
+            @NonNull List<Visibility> visibilities,
+            @Nullable ScrollPosition position,
+            long clientId)
+            throws InternalServerErrorException {
+
+        List<PostDto> page;
+        if (position == null) {
+            page = cacheHandler.findTopNHandler(size, visibilities);
+        } else {
+            page = cacheHandler.findNextNHandler(size, visibilities, position);
+        }
+
+        List<Long> postIds = page.stream()
+                .map(PostDto::getId)
+                .toList();
+
+        Map<Long, Boolean> ratings = userRatingsCache.findRatingsOfUser(
+                clientId,
+                postIds,
+                missingPostIds -> karmaScoreService.findRatingsOfUser(clientId, missingPostIds)
+        );
+
+        return postIds.stream()
+                .map(postId -> new PostRatingResponse(postId, ratings.get(postId)))
+                .toList();
+    }
+
     @Transactional(readOnly = true)
     @NonNull
     public List<PostRatingResponse> findPaginatedPostRatings(
@@ -105,6 +154,10 @@ public class PostService {
         var authentication = SecurityContextHolder.getContext().getAuthentication();
         var clientId = (long) authentication.getPrincipal();
 
+        if (creatorUsername == null && PostRedisCacheHandlerService.isOnlyActive(visibilities)) {
+            return findRatingsOfFeedPage(size, visibilities, position, clientId);
+        }
+
         List<PostRatingResponse> results;
 
         if (creatorUsername == null) {
@@ -179,10 +232,14 @@ public class PostService {
     }
 
     /**
-     * This method might perform one or three queries in transaction, possible results:
-     * 1) create new KarmaScore and modify Post entity karma score value, three queries
-     * 2) modify KarmaScore isPositive field and modify Post entity karma score value, three queries
-     * 3) throw exception if required action result is already the current state, single query
+     * Rating is persisted with a single statement, which inserts new KarmaScore or flips isPositive field of existing
+     * one and modifies Post entity karma score value. If requested rating is already in place nothing is changed.
+     * <p>
+     * In WRITE_BEHIND karma write mode Post entity karma score value is not modified in this transaction, its delta is
+     * appended to the KarmaDeltaJournal and applied in batch. In SHARDED karma write mode delta is added to
+     * a random shard of the post and folded into Post entity karma score value by PostKarmaShardCompactor.
+     * <p>
+     * Cached ratings of the client are updated after commit in every karma write mode.
      *
      * @param postId              Long id of post whose score will be changed
      * @param isNewRatingPositive boolean value indicating whether to change to positive or negative
@@ -194,61 +251,153 @@ public class PostService {
         var authentication = SecurityContextHolder.getContext().getAuthentication();
         var userId = (long) authentication.getPrincipal();
 
-        long delta = isNewRatingPositive ? 1L : -1L;
-        try {
-            var karmaScore = karmaScoreService.findById(new KarmaKey(userId, postId));
-            boolean isOldRatingPositive = karmaScore.isPositive();
-            if (isOldRatingPositive == isNewRatingPositive) {
-                return; // Requested visibility is already in place.
-            }
-            karmaScore.setPositive(isNewRatingPositive);
-            delta = isOldRatingPositive ? -2L : 2L;
-        } catch (KarmaScoreNotFoundException ex) {
-            karmaScoreService.create(userId, postId, isNewRatingPositive);
-        }
+        boolean shouldUpdatePost = karmaWriteMode.equals(KarmaWriteMode.SYNC);
 
-        int rowsAffected = repository.addKarmaScoreToPost(postId, delta);
-        if (rowsAffected == 0) {
+        KarmaScoreChange change = karmaScoreService.rate(userId, postId, isNewRatingPositive, shouldUpdatePost);
+        if (!change.isPostFound()) {
             throw new PostNotFoundException();
         }
-
-        OptionalDouble optionalNewKarmaScore = cache.updateKarmaScoreIfPresent(postId, (double) delta);
-        if (optionalNewKarmaScore.isEmpty()) { // this means that this post is not cached
-            cacheHandler.loadPostDataToCacheIfPossible(postId);
+        if (change.delta() == 0) {
+            return; // Requested rating is already in place.
         }
+
+        userRatingsCache.evictRatingsAfterCommit(userId, List.of(postId));
+        onKarmaScoreChanged(postId, change.delta());
     }
 
     /**
+     * Rating is deleted and Post entity karma score value is modified with a single statement. If post was not rated
+     * by the client nothing is changed.
+     *
      * @param postId Long id of post
-     * @throws KarmaScoreNotFoundException This exception is thrown when KarmaScore entity is not found
      */
     @Transactional
     @NonNull
-    public void unrate(long postId) throws InternalServerErrorException, PostNotFoundException {
+    public void unrate(long postId) throws InternalServerErrorException {
 
         var authentication = SecurityContextHolder.getContext().getAuthentication();
         var userId = (long) authentication.getPrincipal();
 
-        var karmaKey = new KarmaKey(userId, postId);
+        boolean shouldUpdatePost = karmaWriteMode.equals(KarmaWriteMode.SYNC);
 
-        var optionalKarmaScore = karmaScoreRepository.findById(karmaKey);
-        if (optionalKarmaScore.isEmpty()) { // If rating was not found, return, because requested state is persisted.
+        long delta = karmaScoreService.unrate(userId, postId, shouldUpdatePost);
+        if (delta == 0) { // If rating was not found, return, because requested state is persisted.
             return;
         }
 
-        long delta = optionalKarmaScore.get().isPositive() ? -1L : 1L;
+        userRatingsCache.evictRatingsAfterCommit(userId, List.of(postId));
+        onKarmaScoreChanged(postId, delta);
+    }
 
-        int rowsAffected = repository.addKarmaScoreToPost(postId, delta);
-        if (rowsAffected == 0) {
-            throw new PostNotFoundException();
+    /**
+     * Applies many rating operations of the client in a single transaction. Ratings are written with two statements,
+     * which return karma score deltas of the ratings they actually changed, so that a concurrent rating of the same
+     * post by the same client can not make deltas stale. Post karma scores are updated according to karma write mode
+     * and cached scores are updated with a single redis script call. Cached ratings of the client are updated with
+     * another one after commit. If the same post appears more than once, only the last operation is applied.
+     * <p>
+     * Posts which are not cached are loaded to cache only if their score has increased, because only those could
+     * become high enough to be cached. They are loaded with a single query and admitted with a single redis pipeline.
+     *
+     * @param operations Rating operations in client order.
+     * @return Outcome of each operation, in the same order.
+     */
+    @Transactional
+    @NonNull
+    public List<PostRatingOperationResult> rateInBatch(@NonNull List<PostRatingOperation> operations)
+            throws InternalServerErrorException {
+
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        var userId = (long) authentication.getPrincipal();
+
+        Map<Long, Integer> lastOperationIndexes = new HashMap<>(operations.size());
+        for (int i = 0; i < operations.size(); i++) {
+            lastOperationIndexes.put(operations.get(i).postId(), i);
+        }
+
+        Set<Long> existingPostIds = repository.findExistingIds(lastOperationIndexes.keySet());
+
+        Map<Long, Boolean> ratingsToUpsert = new HashMap<>();
+        List<Long> postIdsToDelete = new ArrayList<>();
+
+        for (Map.Entry<Long, Integer> entry : lastOperationIndexes.entrySet()) {
+            long postId = entry.getKey();
+            if (!existingPostIds.contains(postId)) {
+                continue;
+            }
+            RatingAction action = operations.get(entry.getValue()).action();
+            if (action.equals(RatingAction.UNRATE)) {
+                postIdsToDelete.add(postId);
+            } else {
+                ratingsToUpsert.put(postId, action.equals(RatingAction.POSITIVE));
+            }
+        }
+
+        Map<Long, Long> deltas = karmaScoreService.batchUpdateRatings(userId, ratingsToUpsert, postIdsToDelete);
+
+        List<PostRatingOperationResult> results = new ArrayList<>(operations.size());
+        for (int i = 0; i < operations.size(); i++) {
+
+            long postId = operations.get(i).postId();
+
+            RatingOperationStatus status;
+            if (lastOperationIndexes.get(postId) != i) {
+                status = RatingOperationStatus.SUPERSEDED;
+            } else if (!existingPostIds.contains(postId)) {
+                status = RatingOperationStatus.POST_NOT_FOUND;
+            } else if (!deltas.containsKey(postId)) {
+                status = RatingOperationStatus.UNCHANGED;
+            } else {
+                status = RatingOperationStatus.APPLIED;
+            }
+            results.add(new PostRatingOperationResult(postId, status));
+        }
+
+        if (deltas.isEmpty()) {
+            return results;
+        }
+
+        userRatingsCache.evictRatingsAfterCommit(userId, deltas.keySet());
+
+        switch (karmaWriteMode) {
+            case SYNC -> repository.addKarmaScoresToPosts(deltas);
+            case WRITE_BEHIND -> karmaDeltaJournal.appendAll(deltas);
+            case SHARDED -> deltas.forEach(karmaShardService::addToRandomShard);
+        }
+
+        Map<Long, Double> newCachedScores = cache.updateKarmaScoresIfPresent(deltas);
+        List<Long> postIdsToLoad = deltas.entrySet()
+                .stream()
+                .filter(entry -> entry.getValue() > 0 && !newCachedScores.containsKey(entry.getKey()))
+                .map(Map.Entry::getKey)
+                .sorted()
+                .toList();
+        if (!postIdsToLoad.isEmpty()) {
+            cacheHandler.loadPostsDataToCacheIfPossible(postIdsToLoad);
         }
+        nearCache.invalidateAll();
 
-        karmaScoreService.deleteById(karmaKey);
+        return results;
+    }
+
+    /**
+     * In SYNC karma write mode delta was already applied by the rating statement, in WRITE_BEHIND mode it is appended
+     * to the journal and in SHARDED mode it is added to a random shard of the post, both within this transaction.
+     */
+    private void onKarmaScoreChanged(long postId, long delta) {
+
+        switch (karmaWriteMode) {
+            case WRITE_BEHIND -> karmaDeltaJournal.append(postId, delta);
+            case SHARDED -> karmaShardService.addToRandomShard(postId, delta);
+            case SYNC -> {
+            }
+        }
 
         OptionalDouble optionalNewKarmaScore = cache.updateKarmaScoreIfPresent(postId, (double) delta);
         if (optionalNewKarmaScore.isEmpty()) { // this means that this post is not cached
             cacheHandler.loadPostDataToCacheIfPossible(postId);
         }
+        nearCache.invalidateAll();
     }
 
     @Transactional(readOnly = true)
@@ -292,6 +441,7 @@ public class PostService {
         } else {
             cache.deletePostFromCache(postId);
         }
+        nearCache.invalidateAll();
     }
 
     @Transactional
@@ -324,6 +474,7 @@ public class PostService {
                     } else {
                         cache.deletePostFromCache(postId);
                     }
+                    nearCache.invalidateAll();
                 },
                 () -> {
                     throw new PostNotFoundOrClientIsNotOwnerException();
@@ -0,0 +1,7 @@
+package com.msik404.karmaappmonolith.post;
+
+public enum RatingAction {
+    POSITIVE,
+    NEGATIVE,
+    UNRATE
+}
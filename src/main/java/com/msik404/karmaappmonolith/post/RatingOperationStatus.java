@@ -0,0 +1,11 @@
+package com.msik404.karmaappmonolith.post;
+
+public enum RatingOperationStatus {
+    // rating was changed and post karma score was updated
+    APPLIED,
+    // requested rating was already in place
+    UNCHANGED,
+    // later operation in the same batch targets the same post, only the last one is applied
+    SUPERSEDED,
+    POST_NOT_FOUND
+}
@@ -0,0 +1,8 @@
+package com.msik404.karmaappmonolith.post.cache;
+
+public enum CacheRebuildMode {
+    // posts are written to temporary keys, which then atomically replace live keys
+    SWAP,
+    // posts are merged into live keys, afterwards posts which were not merged are removed
+    INCREMENTAL
+}
@@ -0,0 +1,81 @@
+package com.msik404.karmaappmonolith.post.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.msik404.karmaappmonolith.position.ScrollPosition;
+import com.msik404.karmaappmonolith.post.dto.PostDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-process cache placed in front of PostRedisCache for feed pages with only active posts. First pages of the feed
+ * barely change from second to second, so they are kept on heap for a short TTL, which allows serving them without any
+ * network round trip. Entries are invalidated on every post state change made by this instance, other instances rely
+ * on TTL.
+ * <p>
+ * Hit, miss and eviction counters are exposed as cache.* metrics with cache=post-feed-near-cache tag.
+ */
+@Component
+public class PostFeedNearCache {
+
+    public static final String CACHE_NAME = "post-feed-near-cache";
+
+    private record FeedPageKey(int size, @Nullable ScrollPosition position) {
+    }
+
+    private final Cache<FeedPageKey, List<PostDto>> cache;
+
+    public PostFeedNearCache(
+            @Value("${cache.near.ttl:PT2S}") Duration ttl,
+            @Value("${cache.near.max-size:1000}") long maxSize,
+            MeterRegistry meterRegistry) {
+
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * @param size     Requested amount of posts.
+     * @param position ScrollPosition of lastly returned post, null for the first page.
+     * @return Optional of cached page, Optional empty if page is not cached or has expired.
+     */
+    @NonNull
+    public Optional<List<PostDto>> find(int size, @Nullable ScrollPosition position) {
+        return Optional.ofNullable(cache.getIfPresent(new FeedPageKey(size, position)));
+    }
+
+    /**
+     * Returned lists are shared between requests, so they should not be modified by the caller.
+     *
+     * @param size     Requested amount of posts.
+     * @param position ScrollPosition of lastly returned post, null for the first page.
+     * @param posts    Page of posts to be cached.
+     */
+    public void put(int size, @Nullable ScrollPosition position, @NonNull List<PostDto> posts) {
+        cache.put(new FeedPageKey(size, position), List.copyOf(posts));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @NonNull
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+}
@@ -1,21 +1,27 @@
 package com.msik404.karmaappmonolith.post.cache;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.*;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.msik404.karmaappmonolith.position.ScrollPosition;
+import com.msik404.karmaappmonolith.post.cache.codec.PostDtoCodec;
 import com.msik404.karmaappmonolith.post.dto.PostDto;
+import com.msik404.karmaappmonolith.post.dto.PostWithImageDataDto;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.connection.DefaultStringTuple;
 import org.springframework.data.redis.connection.RedisStringCommands;
-import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.ReturnType;
 import org.springframework.data.redis.connection.StringRedisConnection;
-import org.springframework.data.redis.core.HashOperations;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
@@ -24,73 +30,308 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class PostRedisCache {
 
-    private static final String KARMA_SCORE_ZSET_KEY = "karma-score-zset";
-    private static final String POST_HASH_KEY = "posts-hash";
-    private static final String POST_PREFIX = "post";
+    // Scripts derive image keys of evicted posts from ZSet members as image key prefix + member + image key suffix, so
+    // these keys can not be passed in KEYS. All keys used by scripts share this hash tag, image key prefix included, so
+    // that they are placed in the same slot of redis cluster.
+    private static final String KEY_HASH_TAG = "{post-cache}";
 
-    private static final Duration TIMEOUT = Duration.ofSeconds(3600);
+    // Keys are versioned, because layout of members changed, and members of both layouts must not be mixed.
+    static final String KARMA_SCORE_ZSET_KEY = KEY_HASH_TAG + "karma-score-zset:v2";
+    static final String POST_HASH_KEY = KEY_HASH_TAG + "posts-hash:v2";
+    private static final String IMAGE_KEY_PREFIX = KEY_HASH_TAG + "post:";
+    private static final String IMAGE_KEY_SUFFIX = ":image";
+    private static final String REFRESH_LOCK_KEY = "karma-score-zset:refresh-lock";
 
-    // Maximum amount of initial posts that can have same karmaScore.
-    private static final int MAX_INITIAL_SCORE_DUPLICATES = 100;
+    private static final Duration TIMEOUT = Duration.ofSeconds(3600);
 
     private static final int MAX_CACHED_POSTS = 10_000;
 
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> FIND_NEXT_N_SCRIPT = RedisScript.of(
+            new ClassPathResource("scripts/find_next_n_posts.lua"),
+            List.class
+    );
+
+    private static final RedisScript<Long> SWAP_KEYS_SCRIPT = RedisScript.of(
+            new ClassPathResource("scripts/swap_cache_keys.lua"),
+            Long.class
+    );
+
+    private static final RedisScript<Long> MERGE_CHUNK_SCRIPT = RedisScript.of(
+            new ClassPathResource("scripts/merge_cache_chunk.lua"),
+            Long.class
+    );
+
+    private static final RedisScript<Long> COMMIT_INCREMENTAL_SCRIPT = RedisScript.of(
+            new ClassPathResource("scripts/commit_incremental_rebuild.lua"),
+            Long.class
+    );
+
+    private static final RedisScript<Long> RELEASE_LOCK_SCRIPT = RedisScript.of(
+            new ClassPathResource("scripts/release_lock.lua"),
+            Long.class
+    );
+
+    private static final RedisScript<Long> INSERT_POST_SCRIPT = RedisScript.of(
+            new ClassPathResource("scripts/insert_post.lua"),
+            Long.class
+    );
+
+    private static final RedisScript<Long> ADMIT_POST_SCRIPT = RedisScript.of(
+            new ClassPathResource("scripts/admit_post.lua"),
+            Long.class
+    );
+
+    private static final RedisScript<String> INCREMENT_SCORE_IF_PRESENT_SCRIPT = RedisScript.of(
+            new ClassPathResource("scripts/increment_score_if_present.lua"),
+            String.class
+    );
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> INCREMENT_SCORES_IF_PRESENT_SCRIPT = RedisScript.of(
+            new ClassPathResource("scripts/increment_scores_if_present.lua"),
+            List.class
+    );
+
+    private static final RedisScript<Long> TRIM_SCRIPT = RedisScript.of(
+            new ClassPathResource("scripts/trim_cache.lua"),
+            Long.class
+    );
+
+    // Amount of posts merged into live keys by a single script call, so that redis is not blocked for too long.
+    private static final int MERGE_CHUNK_SIZE = 1_000;
+
     public static int getMaxCachedPosts() {
         return MAX_CACHED_POSTS;
     }
 
     @NonNull
-    private static String getPostKey(long postId) {
-        return String.format("%s:%d", POST_PREFIX, postId);
+    public static Duration getTimeout() {
+        return TIMEOUT;
+    }
+
+    /**
+     * Post key is used as both ZSet member and hash field. It is zero-padded complement of postId, so that reverse
+     * lexicographical order of keys is ascending order of ids. Thanks to that, ZSet reverse range order is exactly
+     * (karmaScore DESC, id ASC), which is the same order as the one used by database key set pagination.
+     *
+     * @param postId Id of post.
+     * @return Post key of fixed length.
+     */
+    @NonNull
+    static String getPostKey(long postId) {
+        return String.format("%019d", Long.MAX_VALUE - postId);
     }
 
+    /**
+     * Image key is derived from post key, so that images of evicted posts can be deleted by scripts which only know
+     * ZSet members.
+     *
+     * @param postId Id of post.
+     * @return Key under which image of the post is cached.
+     */
     @NonNull
-    private static String getPostImageKey(long postId) {
-        return getPostKey(postId) + ":image";
+    static String getPostImageKey(long postId) {
+        return IMAGE_KEY_PREFIX + getPostKey(postId) + IMAGE_KEY_SUFFIX;
     }
 
-    private final ObjectMapper objectMapper;
+    private final PostDtoCodec codec;
 
     private final StringRedisTemplate redisTemplate;
 
+    @Value("${cache.rebuild-mode:SWAP}")
+    private CacheRebuildMode rebuildMode;
+
+    /**
+     * Rebuild of the cache which can be fed with posts in chunks. Posts should be added in the final cache order, but
+     * it is not required. Rebuild takes effect only after commit, until then readers see previous state of the cache.
+     * <p>
+     * In SWAP mode posts are written to temporary keys, which then atomically replace live keys with RENAME. In
+     * INCREMENTAL mode posts are merged into live keys and each merged member is recorded in temporary seen ZSet, on
+     * commit members which were not merged are removed. Temporary keys expire after TIMEOUT, so rebuild which was
+     * never committed does not leak memory.
+     */
+    public class Rebuild {
+
+        private final CacheRebuildMode mode;
+        private final String tempZSetKey;
+        private final String tempHashKey;
+        private boolean isAnyPostAdded = false;
+
+        private Rebuild(@NonNull CacheRebuildMode mode) {
+
+            this.mode = mode;
+
+            String token = UUID.randomUUID().toString();
+            this.tempZSetKey = String.format("%s:rebuild:%s", KARMA_SCORE_ZSET_KEY, token);
+            this.tempHashKey = String.format("%s:rebuild:%s", POST_HASH_KEY, token);
+        }
+
+        /**
+         * @param posts Chunk of posts which should be placed in a cache.
+         */
+        public void addChunk(@NonNull Collection<PostDto> posts) {
+
+            if (posts.isEmpty()) {
+                return;
+            }
+
+            switch (mode) {
+                case SWAP -> addChunkToTempKeys(posts);
+                case INCREMENTAL -> mergeChunkIntoLiveKeys(posts);
+            }
+
+            isAnyPostAdded = true;
+        }
+
+        private void addChunkToTempKeys(@NonNull Collection<PostDto> posts) {
+
+            Set<StringRedisConnection.StringTuple> tuplesToAdd = new HashSet<>(posts.size());
+            Map<byte[], byte[]> valuesMap = new HashMap<>(posts.size());
+            for (PostDto post : posts) {
+                String postKey = getPostKey(post.getId());
+                tuplesToAdd.add(new DefaultStringTuple(postKey, (double) post.getKarmaScore()));
+                valuesMap.put(postKey.getBytes(), codec.encode(post));
+            }
+
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+
+                StringRedisConnection stringRedisConn = (StringRedisConnection) connection;
+
+                stringRedisConn.zAdd(tempZSetKey, tuplesToAdd);
+                stringRedisConn.expire(tempZSetKey, TIMEOUT.getSeconds());
+
+                connection.hashCommands().hMSet(tempHashKey.getBytes(), valuesMap);
+                stringRedisConn.expire(tempHashKey, TIMEOUT.getSeconds());
+
+                return null;
+            });
+        }
+
+        private void mergeChunkIntoLiveKeys(@NonNull Collection<PostDto> posts) {
+
+            List<String> keys = List.of(KARMA_SCORE_ZSET_KEY, POST_HASH_KEY, tempZSetKey);
+            byte[] timeout = String.valueOf(TIMEOUT.getSeconds()).getBytes();
+
+            Iterator<PostDto> iterator = posts.iterator();
+            while (iterator.hasNext()) {
+
+                List<byte[]> args = new ArrayList<>(1 + 3 * MERGE_CHUNK_SIZE);
+                args.add(timeout);
+                for (int i = 0; i < MERGE_CHUNK_SIZE && iterator.hasNext(); i++) {
+                    PostDto post = iterator.next();
+                    args.add(getPostKey(post.getId()).getBytes());
+                    args.add(String.valueOf(post.getKarmaScore()).getBytes());
+                    args.add(codec.encode(post));
+                }
+
+                redisTemplate.execute(
+                        MERGE_CHUNK_SCRIPT,
+                        RedisSerializer.byteArray(),
+                        new GenericToStringSerializer<>(Long.class),
+                        keys,
+                        args.toArray()
+                );
+            }
+        }
+
+        /**
+         * @return true if rebuild took effect, false if no posts were added or temporary keys have expired.
+         */
+        public boolean commit() {
+
+            if (!isAnyPostAdded) {
+                return false;
+            }
+
+            String timeout = String.valueOf(TIMEOUT.getSeconds());
+
+            return switch (mode) {
+                case SWAP -> Long.valueOf(1).equals(redisTemplate.execute(
+                        SWAP_KEYS_SCRIPT,
+                        List.of(KARMA_SCORE_ZSET_KEY, POST_HASH_KEY, tempZSetKey, tempHashKey),
+                        timeout
+                ));
+                case INCREMENTAL -> {
+                    Long removed = redisTemplate.execute(
+                            COMMIT_INCREMENTAL_SCRIPT,
+                            List.of(KARMA_SCORE_ZSET_KEY, POST_HASH_KEY, tempZSetKey),
+                            timeout
+                    );
+                    yield removed != null && removed >= 0;
+                }
+            };
+        }
+
+    }
+
+    /**
+     * @return Rebuild in mode configured with cache.rebuild-mode property, which has to be committed to take effect.
+     */
+    @NonNull
+    public Rebuild beginRebuild() {
+        return beginRebuild(rebuildMode);
+    }
+
+    /**
+     * @param mode Mode in which cache should be rebuilt.
+     * @return Rebuild which has to be committed to take effect.
+     */
+    @NonNull
+    public Rebuild beginRebuild(@NonNull CacheRebuildMode mode) {
+        return new Rebuild(mode);
+    }
+
     /**
      * Method caches posts in redis. It uses ZSet with key: KARMA_SCORE_ZSET_KEY for keeping the order of post
      * for data retrieval. Posts as stored in Hash with key: POST_HASH_KEY in a form of string key, value pairs,
-     * values are serialized as json strings. Values are first computed to a format compatible with redis pipeline
-     * API, and then pipelined for maximum performance.
+     * values are encoded with PostDtoCodec. Previous content of the cache is replaced without a window in which the
+     * cache is empty, mode of the rebuild is configured with cache.rebuild-mode property.
      *
      * @param posts Collection of posts which should be placed in a cache.
      */
     public void reinitializeCache(@NonNull Collection<PostDto> posts) {
+        reinitializeCache(posts, rebuildMode);
+    }
 
-        assert !posts.isEmpty();
-
-        Set<StringRedisConnection.StringTuple> tuplesToAdd = new HashSet<>(posts.size());
-        for (PostDto post : posts) {
-            var tuple = new DefaultStringTuple(getPostKey(post.getId()), (double) post.getKarmaScore());
-            tuplesToAdd.add(tuple);
-        }
-
-        Map<String, String> valuesMap = new HashMap<>(posts.size());
-        for (PostDto post : posts) {
-            valuesMap.put(getPostKey(post.getId()), serialize(post));
-        }
+    /**
+     * @param posts Collection of posts which should be placed in a cache.
+     * @param mode  Mode in which cache should be rebuilt.
+     */
+    public void reinitializeCache(@NonNull Collection<PostDto> posts, @NonNull CacheRebuildMode mode) {
 
-        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+        assert !posts.isEmpty();
 
-            StringRedisConnection stringRedisConn = (StringRedisConnection) connection;
+        Rebuild rebuild = beginRebuild(mode);
+        rebuild.addChunk(posts);
+        rebuild.commit();
+    }
 
-            stringRedisConn.del(KARMA_SCORE_ZSET_KEY);
-            stringRedisConn.del(POST_HASH_KEY);
+    /**
+     * Lock is used so that only one node at a time refreshes the cache. Lock is leased, so that it gets released even
+     * if the holder dies during refresh.
+     *
+     * @param lease Time after which lock expires.
+     * @return Optional of token which is required to release the lock, Optional empty if lock is held by someone else.
+     */
+    @NonNull
+    public Optional<String> tryAcquireRefreshLock(@NonNull Duration lease) {
 
-            stringRedisConn.zAdd(KARMA_SCORE_ZSET_KEY, tuplesToAdd);
-            stringRedisConn.expire(KARMA_SCORE_ZSET_KEY, TIMEOUT.getSeconds());
+        String token = UUID.randomUUID().toString();
+        Boolean isAcquired = redisTemplate.opsForValue().setIfAbsent(REFRESH_LOCK_KEY, token, lease);
 
-            stringRedisConn.hMSet(POST_HASH_KEY, valuesMap);
-            stringRedisConn.expire(POST_HASH_KEY, TIMEOUT.getSeconds());
+        if (!Boolean.TRUE.equals(isAcquired)) {
+            return Optional.empty();
+        }
+        return Optional.of(token);
+    }
 
-            return null;
-        });
+    /**
+     * @param token Token returned when lock was acquired.
+     * @return true if lock was released, false if lock has expired in the meantime.
+     */
+    public boolean releaseRefreshLock(@NonNull String token) {
+        return Long.valueOf(1).equals(redisTemplate.execute(RELEASE_LOCK_SCRIPT, List.of(REFRESH_LOCK_KEY), token));
     }
 
     /**
@@ -139,119 +380,67 @@ public class PostRedisCache {
         return Optional.ofNullable((byte[]) results);
     }
 
+    @SuppressWarnings({"unchecked", "rawtypes"})
     @NonNull
-    private List<PostDto> findCachedByZSet(
-            @NonNull Collection<ZSetOperations.TypedTuple<String>> postIdKeySetWithScores) {
-
-        int size = postIdKeySetWithScores.size();
+    private Optional<List<PostDto>> findNextNCachedByScript(int size, @NonNull String positionKey, long positionScore) {
+
+        // Each element of multi bulk reply is deserialized separately, so raw byte array serializer is used to keep
+        // encoded posts untouched.
+        List<byte[]> reply = (List<byte[]>) redisTemplate.execute(
+                FIND_NEXT_N_SCRIPT,
+                RedisSerializer.string(),
+                (RedisSerializer) RedisSerializer.byteArray(),
+                List.of(KARMA_SCORE_ZSET_KEY, POST_HASH_KEY),
+                String.valueOf(size),
+                positionKey,
+                String.valueOf(positionScore)
+        );
 
-        List<String> postIdKeyList = new ArrayList<>(size);
-        List<Double> postScoreList = new ArrayList<>(size);
-        for (ZSetOperations.TypedTuple<String> tuple : postIdKeySetWithScores) {
-            postIdKeyList.add(Objects.requireNonNull(tuple.getValue()));
-            postScoreList.add(tuple.getScore());
+        if (reply == null || reply.size() != 2 * size) {
+            return Optional.empty();
         }
 
-        HashOperations<String, String, String> hashOps = redisTemplate.opsForHash();
-        List<String> serializedResults = hashOps.multiGet(POST_HASH_KEY, postIdKeyList);
-
         List<PostDto> results = new ArrayList<>(size);
-        for (int i = 0; i < size; i++) {
-            PostDto postDto = deserialize(serializedResults.get(i));
-            postDto.setKarmaScore(postScoreList.get(i).longValue());
+        for (int i = 0; i < reply.size(); i += 2) {
+            long karmaScore = (long) Double.parseDouble(new String(reply.get(i), StandardCharsets.US_ASCII));
+            PostDto postDto = codec.decode(reply.get(i + 1));
+            postDto.setKarmaScore(karmaScore);
             results.add(postDto);
         }
 
-        return results;
+        return Optional.of(results);
     }
 
     /**
      * @param size Requested amount of posts.
      * @return Optional of List of PostDto objects, this list has exactly size elements, Optional empty if not enough
-     * posts are in cache. If two scores of posts are the same, the one with higher lexicographical order is first.
+     * posts are in cache. If two scores of posts are the same, the one with lower id is first.
      */
     @NonNull
     public Optional<List<PostDto>> findTopNCached(int size) {
-
-        // this set is LinkedHashSet so iteration order is preserved.
-        Set<ZSetOperations.TypedTuple<String>> postIdKeySetWithScores = redisTemplate.opsForZSet()
-                .reverseRangeWithScores(KARMA_SCORE_ZSET_KEY, 0, size - 1);
-
-        // opsForZSet().reverseRangeWithScores() cannot be null because it only if used can in transaction|pipeline.
-        if (postIdKeySetWithScores.size() != size) {
-            return Optional.empty();
-        }
-        return Optional.of(findCachedByZSet(postIdKeySetWithScores));
+        return findNextNCachedByScript(size, "", 0);
     }
 
     /**
+     * Start of the page is located inside redis: rank of the first member after position is found with ZCOUNT and
+     * binary search within the band of members with position karmaScore. Then next size members are sliced from the
+     * ZSet and their contents are read from the hash, all in a single script call. Post at position does not have to
+     * be cached and any amount of posts can share the same karmaScore.
+     *
      * @param size     Requested amount of posts.
      * @param position ScrollPosition of lastly returned post.
      * @return Optional of List of PostDto objects, this list has exactly size elements, Optional empty if not enough
-     * posts are in cache. If two scores of posts are the same, the one with higher lexicographical order is first.
+     * posts are in cache. If two scores of posts are the same, the one with lower id is first.
      */
     @NonNull
     public Optional<List<PostDto>> findNextNCached(int size, @NonNull ScrollPosition position) {
-
-        int count = size + MAX_INITIAL_SCORE_DUPLICATES;
-
-        // this set is LinkedHashSet so iteration order is preserved.
-        Set<ZSetOperations.TypedTuple<String>> postIdKeySetWithScores = redisTemplate.opsForZSet()
-                .reverseRangeByScoreWithScores(
-                        KARMA_SCORE_ZSET_KEY,
-                        Double.NEGATIVE_INFINITY,
-                        position.karmaScore(),
-                        0,
-                        count
-                );
-
-        // size + 1 is the most optimistic case. That is there is no initial duplicate and size tuples are left to
-        // be collected. If size is less than size + 1, certainly all requested posts won't be able to be collected.
-        if (postIdKeySetWithScores.size() < size + 1) {
-            return Optional.empty();
-        }
-
-        // In this code we want to mimic key set pagination on (karmaScore, postId), that means that posts with higher
-        // karmaScore are first and if two posts have the same karmaScore, post with higher lexicographical postId will
-        // be first (postId are unique). Sadly reverseRangeByScoreWithScores does not guarantee that, because it fetches
-        // count amount of tuples lower or equal to given input score. To solve this issue we have to specify count
-        // variable high enough so that we can iterate over all initial tuples with score equal to given input score,
-        // until we find tuple with required postId. After finding this tuple we should be able to collect the
-        // remaining size amount of tuples. To achieve this goal, I define constant called MAX_INITIAL_SCORE_DUPLICATES.
-        // If not enough tuples are collected, Optional empty is returned which means that cache could not be used.
-
-        List<ZSetOperations.TypedTuple<String>> results = new ArrayList<>(size);
-        String targetKey = getPostKey(position.postId());
-        int collected = 0;
-        int skipped = 0;
-        boolean found = false;
-
-        // opsForZSet().reverseRangeByScoreWithScores() cannot be null because it only if used can in transaction|pipeline.
-        for (ZSetOperations.TypedTuple<String> tuple : postIdKeySetWithScores) {
-            if (!found) {
-                if (tuple.getValue().equals(targetKey)) {
-                    found = true;
-                }
-                skipped++;
-                if (count - skipped < size) { // this means that not enough posts left to be collected.
-                    return Optional.empty();
-                }
-            } else {
-                results.add(tuple);
-                collected++;
-                if (collected == size) {
-                    break;
-                }
-            }
-        }
-
-        if (results.size() != size) {
-            return Optional.empty();
-        }
-        return Optional.of(findCachedByZSet(results));
+        return findNextNCachedByScript(size, getPostKey(position.postId()), position.karmaScore());
     }
 
     /**
+     * Score is incremented only if post is cached, check and increment are done in a single script call. If post
+     * is present in ZSet but its body is missing in the hash, it is removed from ZSet instead.
+     *
      * @param postId Id of post whose score is being updated.
      * @param delta  score delta to be added to cached value.
      * @return Optional of new score if post was cached, Optional empty if post wasn't cached.
@@ -259,17 +448,76 @@ public class PostRedisCache {
     @NonNull
     public OptionalDouble updateKarmaScoreIfPresent(long postId, double delta) {
 
-        ZSetOperations<String, String> zSetOps = redisTemplate.opsForZSet();
-        String postIdKey = getPostKey(postId);
+        String newScore = redisTemplate.execute(
+                INCREMENT_SCORE_IF_PRESENT_SCRIPT,
+                List.of(KARMA_SCORE_ZSET_KEY, POST_HASH_KEY),
+                getPostKey(postId),
+                String.valueOf(delta)
+        );
 
-        // If postIdKey does not exist return Optional empty.
-        if (zSetOps.score(KARMA_SCORE_ZSET_KEY, postIdKey) == null) {
+        if (newScore == null) {
             return OptionalDouble.empty();
         }
+        return OptionalDouble.of(Double.parseDouble(newScore));
+    }
+
+    /**
+     * Increments karma scores of all cached posts among the given ones in a single script call.
+     *
+     * @param deltas Map of post id to karma score delta.
+     * @return Map of post id to new karma score, only for posts which are cached.
+     */
+    @NonNull
+    public Map<Long, Double> updateKarmaScoresIfPresent(@NonNull Map<Long, Long> deltas) {
+
+        if (deltas.isEmpty()) {
+            return Map.of();
+        }
+
+        List<Long> postIds = new ArrayList<>(deltas.keySet());
+        List<String> args = new ArrayList<>(2 * postIds.size());
+        for (long postId : postIds) {
+            args.add(getPostKey(postId));
+            args.add(String.valueOf(deltas.get(postId)));
+        }
+
+        List<?> newScores = redisTemplate.execute(
+                INCREMENT_SCORES_IF_PRESENT_SCRIPT,
+                List.of(KARMA_SCORE_ZSET_KEY, POST_HASH_KEY),
+                args.toArray()
+        );
+
+        if (newScores == null) {
+            return Map.of();
+        }
+
+        Map<Long, Double> results = new HashMap<>(newScores.size());
+        for (int i = 0; i < newScores.size(); i++) {
+            Object newScore = newScores.get(i);
+            if (newScore != null) {
+                results.put(postIds.get(i), Double.parseDouble(newScore.toString()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Removes the lowest ranked posts along with their images, so that exactly MAX_CACHED_POSTS are left. Inserts
+     * already keep the cache bounded, this is safety net for rebuilds and manual changes.
+     *
+     * @return Amount of removed posts.
+     */
+    public long trimToMaxCachedPosts() {
+
+        Long removed = redisTemplate.execute(
+                TRIM_SCRIPT,
+                List.of(KARMA_SCORE_ZSET_KEY, POST_HASH_KEY),
+                String.valueOf(MAX_CACHED_POSTS),
+                IMAGE_KEY_PREFIX,
+                IMAGE_KEY_SUFFIX
+        );
 
-        // opsForZset().incrementScore() cannot be null because it only can if used in transaction|pipeline.
-        Double newScore = zSetOps.incrementScore(KARMA_SCORE_ZSET_KEY, postIdKey, delta);
-        return OptionalDouble.of(newScore);
+        return removed == null ? 0 : removed;
     }
 
     /**
@@ -323,68 +571,109 @@ public class PostRedisCache {
         return lowestScore < karmaScore;
     }
 
+    @NonNull
+    private static List<String> getInsertingScriptKeys(long postId) {
+        return List.of(KARMA_SCORE_ZSET_KEY, POST_HASH_KEY, getPostImageKey(postId));
+    }
+
+    @NonNull
+    private List<byte[]> getInsertingScriptArgs(@NonNull PostDto post, @Nullable byte[] imageData) {
+
+        List<byte[]> args = new ArrayList<>(8);
+        args.add(getPostKey(post.getId()).getBytes());
+        args.add(String.valueOf(post.getKarmaScore()).getBytes());
+        args.add(codec.encode(post));
+        args.add(String.valueOf(MAX_CACHED_POSTS).getBytes());
+        args.add(String.valueOf(TIMEOUT.getSeconds()).getBytes());
+        args.add(IMAGE_KEY_PREFIX.getBytes());
+        args.add(IMAGE_KEY_SUFFIX.getBytes());
+        if (imageData != null) {
+            args.add(imageData);
+        }
+        return args;
+    }
+
+    private boolean executeInsertingScript(
+            @NonNull RedisScript<Long> script,
+            @NonNull PostDto post,
+            @Nullable byte[] imageData) {
+
+        Long result = redisTemplate.execute(
+                script,
+                RedisSerializer.byteArray(),
+                new GenericToStringSerializer<>(Long.class),
+                getInsertingScriptKeys(post.getId()),
+                getInsertingScriptArgs(post, imageData).toArray()
+        );
+
+        return Long.valueOf(1).equals(result);
+    }
+
     /**
+     * Post is inserted and the lowest ranked posts are evicted (from ZSet, hash and their image keys) in a single
+     * script call, so that no more than MAX_CACHED_POSTS are ever cached.
+     *
      * @param post      post contents to be cached.
      * @param imageData optional image data to be cached.
-     * @return true if post was cached.
+     * @return true if post was cached and was not evicted right away.
      */
     public boolean insertPost(@NonNull PostDto post, @Nullable byte[] imageData) {
+        return executeInsertingScript(INSERT_POST_SCRIPT, post, imageData);
+    }
 
-        String serializedPost = serialize(post);
-
-        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+    /**
+     * Atomic version of checking getZSetSize() and isKarmaScoreGreaterThanLowestScoreInZSet() followed by
+     * insertPost(). Post is admitted if less than MAX_CACHED_POSTS are cached or its karmaScore is higher than
+     * the lowest cached one. Check, insert and eviction of the lowest ranked post are done in a single script call,
+     * so that concurrent admissions are correct.
+     * <p>
+     * Nothing is admitted into a cold cache, it is filled by PostRedisCacheRefresher, which is requested by the first
+     * feed read which finds the cache empty.
+     *
+     * @param post      post contents to be cached.
+     * @param imageData optional image data to be cached.
+     * @return true if post was admitted and cached.
+     */
+    public boolean admitPost(@NonNull PostDto post, @Nullable byte[] imageData) {
+        return executeInsertingScript(ADMIT_POST_SCRIPT, post, imageData);
+    }
 
-            byte[] postKeyBytes = getPostKey(post.getId()).getBytes();
+    /**
+     * Same as admitPost() for many posts, script calls are sent in a single pipeline. Each post is admitted
+     * atomically, but posts are not admitted all at once.
+     *
+     * @param posts posts with optional image data to be cached.
+     * @return Amount of admitted posts.
+     */
+    public long admitPosts(@NonNull Collection<PostWithImageDataDto> posts) {
 
-            connection.zSetCommands().zAdd(
-                    KARMA_SCORE_ZSET_KEY.getBytes(),
-                    (double) post.getKarmaScore(),
-                    postKeyBytes,
-                    RedisZSetCommands.ZAddArgs.empty()
-            );
+        if (posts.isEmpty()) {
+            return 0;
+        }
 
-            connection.hashCommands().hSet(
-                    POST_HASH_KEY.getBytes(),
-                    postKeyBytes,
-                    serializedPost.getBytes()
-            );
+        // Script is evaluated by its body, because pipelined EVALSHA can not fall back to EVAL when script is not
+        // loaded yet.
+        byte[] script = ADMIT_POST_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8);
 
-            if (imageData != null) {
-                connection.stringCommands().set(
-                        getPostImageKey(post.getId()).getBytes(),
-                        imageData,
-                        Expiration.from(TIMEOUT),
-                        RedisStringCommands.SetOption.ifAbsent()
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (PostWithImageDataDto post : posts) {
+                List<String> keys = getInsertingScriptKeys(post.postDto().getId());
+
+                List<byte[]> keysAndArgs = new ArrayList<>(keys.size() + 8);
+                keys.forEach(key -> keysAndArgs.add(key.getBytes()));
+                keysAndArgs.addAll(getInsertingScriptArgs(post.postDto(), post.imageData()));
+
+                connection.scriptingCommands().eval(
+                        script,
+                        ReturnType.INTEGER,
+                        keys.size(),
+                        keysAndArgs.toArray(byte[][]::new)
                 );
             }
-
             return null;
         });
 
-        if (imageData == null) {
-            return results.size() == 2 && (Boolean) results.get(0) && (Boolean) results.get(1);
-        }
-        return results.size() == 3 && (Boolean) results.get(0) && (Boolean) results.get(1) && (Boolean) results.get(2);
-    }
-
-    @NonNull
-    private String serialize(@NonNull PostDto post) {
-
-        try {
-            return objectMapper.writeValueAsString(post);
-        } catch (Exception e) {
-            throw new RuntimeException("Error serializing PostJoinedDto to JSON", e);
-        }
-    }
-
-    @NonNull
-    private PostDto deserialize(@NonNull String json) {
-
-        try {
-            return objectMapper.readValue(json, PostDto.class);
-        } catch (Exception e) {
-            throw new RuntimeException("Error deserializing JSON to PostJoinedDto", e);
-        }
+        return results.stream().filter(result -> Long.valueOf(1).equals(result)).count();
     }
 
 }
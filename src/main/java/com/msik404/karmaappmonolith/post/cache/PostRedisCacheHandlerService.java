@@ -1,13 +1,11 @@
 package com.msik404.karmaappmonolith.post.cache;
 
-import java.util.Collections;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import com.msik404.karmaappmonolith.position.ScrollPosition;
 import com.msik404.karmaappmonolith.post.Visibility;
-import com.msik404.karmaappmonolith.post.comparator.BasicComparablePost;
-import com.msik404.karmaappmonolith.post.comparator.PostComparator;
 import com.msik404.karmaappmonolith.post.dto.PostDto;
 import com.msik404.karmaappmonolith.post.dto.PostWithImageDataDto;
 import com.msik404.karmaappmonolith.post.exception.PostNotFoundException;
@@ -22,27 +20,17 @@ import org.springframework.transaction.annotation.Transactional;
 public class PostRedisCacheHandlerService {
 
     private final PostRedisCache cache;
+    private final PostFeedNearCache nearCache;
+    private final PostRedisCacheRefresher refresher;
     private final PostRepository repository;
 
-    private static boolean isOnlyActive(@NonNull List<Visibility> visibilities) {
+    /**
+     * @return Whether feed with these visibilities is served from the cache.
+     */
+    public static boolean isOnlyActive(@NonNull List<Visibility> visibilities) {
         return visibilities.size() == 1 && visibilities.contains(Visibility.ACTIVE);
     }
 
-    @NonNull
-    public List<PostDto> updateCache() {
-
-        final List<PostDto> newValuesForCache = repository.findTopNPosts(
-                PostRedisCache.getMaxCachedPosts(),
-                List.of(Visibility.ACTIVE)
-        );
-
-        if (!newValuesForCache.isEmpty()) {
-            cache.reinitializeCache(newValuesForCache);
-        }
-
-        return newValuesForCache;
-    }
-
     @Transactional(readOnly = true)
     @NonNull
     public List<PostDto> findTopNHandler(int size, @NonNull List<Visibility> visibilities) {
@@ -50,14 +38,19 @@ public class PostRedisCacheHandlerService {
         List<PostDto> results;
 
         if (isOnlyActive(visibilities)) {
+            Optional<List<PostDto>> optionalNearCachedPosts = nearCache.find(size, null);
+            if (optionalNearCachedPosts.isPresent()) {
+                return optionalNearCachedPosts.get();
+            }
+            // Cache is refreshed in the background, so that request latency never includes a full cache rebuild.
             if (cache.isEmpty()) {
-                List<PostDto> newValuesForCache = updateCache();
-                int endBound = Math.min(size, newValuesForCache.size());
-                results = newValuesForCache.subList(0, endBound);
+                refresher.requestRefresh();
+                results = repository.findTopNPosts(size, visibilities);
             } else {
                 results = cache.findTopNCached(size)
                         .orElseGet(() -> repository.findTopNPosts(size, visibilities));
             }
+            nearCache.put(size, null, results);
         } else {
             results = repository.findTopNPosts(size, visibilities);
         }
@@ -65,22 +58,6 @@ public class PostRedisCacheHandlerService {
         return results;
     }
 
-    private int findNextSmallerThan(@NonNull List<PostDto> topPosts, @NonNull ScrollPosition position) {
-
-        int value = Collections.binarySearch(
-                topPosts,
-                new BasicComparablePost(position.postId(), position.karmaScore()),
-                new PostComparator().reversed()
-        );
-
-        // returns topPosts.size() if post with karmaScore is last or insertion point would be last
-        if (value < 0) {
-            // get insertion point
-            return -value - 1;
-        }
-        return value + 1;
-    }
-
     @Transactional(readOnly = true)
     @NonNull
     public List<PostDto> findNextNHandler(
@@ -91,16 +68,18 @@ public class PostRedisCacheHandlerService {
         List<PostDto> results;
 
         if (isOnlyActive(visibilities)) {
+            Optional<List<PostDto>> optionalNearCachedPosts = nearCache.find(size, position);
+            if (optionalNearCachedPosts.isPresent()) {
+                return optionalNearCachedPosts.get();
+            }
             if (cache.isEmpty()) {
-                List<PostDto> newValuesForCache = updateCache();
-                int firstSmallerElementIdx = findNextSmallerThan(newValuesForCache, position);
-
-                int endBound = Math.min(firstSmallerElementIdx + size, newValuesForCache.size());
-                results = newValuesForCache.subList(firstSmallerElementIdx, endBound);
+                refresher.requestRefresh();
+                results = repository.findNextNPosts(size, visibilities, position);
             } else {
                 results = cache.findNextNCached(size, position)
                         .orElseGet(() -> repository.findNextNPosts(size, visibilities, position));
             }
+            nearCache.put(size, position, results);
         } else {
             results = repository.findNextNPosts(size, visibilities, position);
         }
@@ -108,30 +87,16 @@ public class PostRedisCacheHandlerService {
         return results;
     }
 
-    /*
-     * Post will be cached if less than CACHED_POSTS_AMOUNT posts are cached or input post score is higher than
-     * the lowest cached post score. Because of this functionality there may be more cached posts than specified
-     * amount allows, but I doubt that this would be problematic, because cache gets refreshed every PostRedisCache.TIMEOUT.
+    /**
+     * Post will be cached if less than MAX_CACHED_POSTS posts are cached or input post score is higher than
+     * the lowest cached post score, in which case the lowest ranked post is evicted. Check and insert are done
+     * atomically in a single redis call.
      *
      * @param post Input post with image data to be cached.
      * @return true if cached else false.
      */
-    @Transactional(readOnly = true)
     public boolean loadToCacheIfPossible(@NonNull PostWithImageDataDto post) {
-
-        long cacheSize = cache.getZSetSize();
-
-        if (cacheSize >= PostRedisCache.getMaxCachedPosts()) {
-
-            boolean isAccepted = cache.isKarmaScoreGreaterThanLowestScoreInZSet(
-                    post.postDto().getKarmaScore());
-
-            if (!isAccepted) {
-                return false;
-            }
-        }
-
-        return cache.insertPost(post.postDto(), post.imageData());
+        return cache.admitPost(post.postDto(), post.imageData());
     }
 
     /**
@@ -149,4 +114,20 @@ public class PostRedisCacheHandlerService {
         return loadToCacheIfPossible(optionalPost.get());
     }
 
-}
\ No newline at end of file
+    /**
+     * Posts are loaded with a single query and admitted with a single redis pipeline. Nothing is loaded into a cold
+     * cache, because no post would be admitted.
+     *
+     * @param postIds Ids of posts with image data if found to be cached.
+     * @return Amount of cached posts.
+     */
+    @Transactional(readOnly = true)
+    public long loadPostsDataToCacheIfPossible(@NonNull Collection<Long> postIds) {
+
+        if (postIds.isEmpty() || cache.isEmpty()) {
+            return 0;
+        }
+        return cache.admitPosts(repository.findPostDtosWithImageDataByIds(postIds));
+    }
+
+}
@@ -0,0 +1,216 @@
+package com.msik404.karmaappmonolith.post.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import com.msik404.karmaappmonolith.post.Visibility;
+import com.msik404.karmaappmonolith.post.dto.PostDto;
+import com.msik404.karmaappmonolith.post.repository.PostRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Background maintainer of PostRedisCache. Cache is refreshed every cache.refresh.interval, which should be shorter
+ * than PostRedisCache TIMEOUT, so that it never expires, and is trimmed to MAX_CACHED_POSTS every cache.trim.interval.
+ * Readers which find the cache empty only request an asynchronous refresh, so that request latency never includes
+ * a full cache rebuild.
+ * <p>
+ * Refresh is single-flight. Within one instance concurrent refreshes are coalesced into a single future, across
+ * instances only the holder of redis refresh lock refreshes the cache. Refreshes which did not start the refresh wait
+ * for it for at most cache.refresh.wait, refreshes which could not acquire the lock do not wait at all.
+ * <p>
+ * Posts are streamed from database and added to the cache in chunks of cache.refresh.chunk-size, each one pipelined to
+ * redis as soon as it is read, so memory used by refresh is bounded by the chunk size and not by the cache size.
+ * <p>
+ * Duration of each refresh is recorded by post.cache.refresh timer.
+ */
+@Service
+public class PostRedisCacheRefresher {
+
+    public static final String REFRESH_TIMER_NAME = "post.cache.refresh";
+
+    private final PostRedisCache cache;
+    private final PostRepository repository;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final Duration lockLease;
+    private final Duration wait;
+    private final int chunkSize;
+
+    private final Timer refreshTimer;
+
+    private final AtomicReference<CompletableFuture<OptionalLong>> inFlightRefresh =
+            new AtomicReference<>();
+
+    // Single worker with no queue, refresh requested while another one is running or queued is simply dropped.
+    private final ThreadPoolExecutor refreshExecutor = new ThreadPoolExecutor(
+            1, 1,
+            0L, TimeUnit.MILLISECONDS,
+            new SynchronousQueue<>(),
+            runnable -> new Thread(runnable, "post-cache-refresher"),
+            new ThreadPoolExecutor.DiscardPolicy()
+    );
+
+    public PostRedisCacheRefresher(
+            PostRedisCache cache,
+            PostRepository repository,
+            PlatformTransactionManager transactionManager,
+            @Value("${cache.refresh.lock-lease:PT30S}") Duration lockLease,
+            @Value("${cache.refresh.wait:PT2S}") Duration wait,
+            @Value("${cache.refresh.chunk-size:500}") int chunkSize,
+            MeterRegistry meterRegistry) {
+
+        this.cache = cache;
+        this.repository = repository;
+
+        // Postgresql driver fetches rows in batches only within a transaction.
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+
+        this.lockLease = lockLease;
+        this.wait = wait;
+        this.chunkSize = chunkSize;
+
+        this.refreshTimer = Timer.builder(REFRESH_TIMER_NAME)
+                .description("Duration of loading top posts from database into redis cache")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${cache.refresh.interval:PT50M}")
+    public void refreshPeriodically() {
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${cache.trim.interval:PT1M}")
+    public void trimPeriodically() {
+        cache.trimToMaxCachedPosts();
+    }
+
+    /**
+     * Requests refresh to be done in the background, returns immediately. Request is ignored if refresh is already
+     * running on this instance.
+     */
+    public void requestRefresh() {
+
+        if (inFlightRefresh.get() != null) {
+            return;
+        }
+        refreshExecutor.execute(this::refresh);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * @return OptionalLong of amount of posts which were placed in a cache, OptionalLong empty if refresh was done by
+     * someone else, did not finish in time or failed.
+     */
+    @NonNull
+    public OptionalLong refresh() {
+
+        var refresh = new CompletableFuture<OptionalLong>();
+        CompletableFuture<OptionalLong> inFlight = inFlightRefresh.compareAndExchange(null, refresh);
+
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+
+        try {
+            refresh.complete(refreshIfLockIsAcquired());
+        } catch (RuntimeException ex) {
+            refresh.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlightRefresh.compareAndSet(refresh, null);
+        }
+
+        return refresh.join();
+    }
+
+    @NonNull
+    private OptionalLong await(@NonNull CompletableFuture<OptionalLong> inFlight) {
+
+        try {
+            return inFlight.get(wait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return OptionalLong.empty();
+        } catch (ExecutionException | TimeoutException ex) {
+            return OptionalLong.empty();
+        }
+    }
+
+    @NonNull
+    private OptionalLong refreshIfLockIsAcquired() {
+
+        Optional<String> optionalLockToken = cache.tryAcquireRefreshLock(lockLease);
+        if (optionalLockToken.isEmpty()) {
+            return OptionalLong.empty();
+        }
+
+        try {
+            Long loadedPosts = refreshTimer.record(
+                    () -> readOnlyTransactionTemplate.execute(status -> loadTopPostsToCache()));
+            return loadedPosts == null ? OptionalLong.empty() : OptionalLong.of(loadedPosts);
+        } finally {
+            cache.releaseRefreshLock(optionalLockToken.get());
+        }
+    }
+
+    /**
+     * @return Amount of posts placed in a cache. If there were no posts, previous state of the cache is kept.
+     */
+    private long loadTopPostsToCache() {
+
+        PostRedisCache.Rebuild rebuild = cache.beginRebuild();
+        long loadedPosts = 0;
+
+        try (Stream<PostDto> posts = repository.streamTopNPosts(
+                PostRedisCache.getMaxCachedPosts(),
+                List.of(Visibility.ACTIVE),
+                chunkSize)) {
+
+            Iterator<PostDto> iterator = posts.iterator();
+            while (iterator.hasNext()) {
+
+                // New list for each chunk, so that previous one can be collected as soon as it is sent to redis.
+                List<PostDto> chunk = new ArrayList<>(chunkSize);
+                while (chunk.size() < chunkSize && iterator.hasNext()) {
+                    chunk.add(iterator.next());
+                }
+
+                rebuild.addChunk(chunk);
+                loadedPosts += chunk.size();
+            }
+        }
+
+        if (loadedPosts > 0) {
+            rebuild.commit();
+        }
+
+        return loadedPosts;
+    }
+
+}
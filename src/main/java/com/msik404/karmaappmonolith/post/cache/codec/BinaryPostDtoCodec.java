@@ -0,0 +1,229 @@
+package com.msik404.karmaappmonolith.post.cache.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.msik404.karmaappmonolith.post.Visibility;
+import com.msik404.karmaappmonolith.post.dto.PostDto;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+/**
+ * Compact binary codec for PostDto.
+ * <p>
+ * Layout of version 1:
+ * <pre>
+ * [version: 1 byte][presence mask: 1 byte][present fields in declaration order]
+ * </pre>
+ * Presence mask has one bit per PostDto field, null fields are simply not written. Long fields are written as zigzag
+ * varints, so small ids and scores take one or two bytes. Strings are written as varint byte length followed by UTF-8
+ * bytes. Visibility is written as its ordinal. Any change to this layout (including reordering Visibility constants)
+ * requires bumping FORMAT_VERSION and keeping a decoder for the previous one, because old values might still be
+ * present in redis until the cache gets rebuilt.
+ */
+public class BinaryPostDtoCodec implements PostDtoCodec {
+
+    public static final byte FORMAT_VERSION = 1;
+
+    private static final Visibility[] VISIBILITIES = Visibility.values();
+
+    private static final int ID_BIT = 1;
+    private static final int USER_ID_BIT = 1 << 1;
+    private static final int USERNAME_BIT = 1 << 2;
+    private static final int HEADLINE_BIT = 1 << 3;
+    private static final int TEXT_BIT = 1 << 4;
+    private static final int KARMA_SCORE_BIT = 1 << 5;
+    private static final int VISIBILITY_BIT = 1 << 6;
+
+    /**
+     * @param data encoded value.
+     * @return true if data starts with version byte known by this codec.
+     */
+    public static boolean isBinaryEncoded(@NonNull byte[] data) {
+        return data.length >= 2 && data[0] == FORMAT_VERSION;
+    }
+
+    @NonNull
+    @Override
+    public byte[] encode(@NonNull PostDto post) throws PostDtoCodecException {
+
+        byte[] username = toBytes(post.getUsername());
+        byte[] headline = toBytes(post.getHeadline());
+        byte[] text = toBytes(post.getText());
+
+        int mask = 0;
+        mask |= post.getId() != null ? ID_BIT : 0;
+        mask |= post.getUserId() != null ? USER_ID_BIT : 0;
+        mask |= username != null ? USERNAME_BIT : 0;
+        mask |= headline != null ? HEADLINE_BIT : 0;
+        mask |= text != null ? TEXT_BIT : 0;
+        mask |= post.getKarmaScore() != null ? KARMA_SCORE_BIT : 0;
+        mask |= post.getVisibility() != null ? VISIBILITY_BIT : 0;
+
+        // Upper bound: 2 header bytes, at most 10 bytes per varint and 5 bytes per string length.
+        int capacity = 2 + 4 * 10 + 3 * 5 + length(username) + length(headline) + length(text);
+        var writer = new Writer(capacity);
+
+        writer.writeByte(FORMAT_VERSION);
+        writer.writeByte(mask);
+
+        if (post.getId() != null) {
+            writer.writeVarLong(post.getId());
+        }
+        if (post.getUserId() != null) {
+            writer.writeVarLong(post.getUserId());
+        }
+        if (username != null) {
+            writer.writeBytes(username);
+        }
+        if (headline != null) {
+            writer.writeBytes(headline);
+        }
+        if (text != null) {
+            writer.writeBytes(text);
+        }
+        if (post.getKarmaScore() != null) {
+            writer.writeVarLong(post.getKarmaScore());
+        }
+        if (post.getVisibility() != null) {
+            writer.writeVarLong(post.getVisibility().ordinal());
+        }
+
+        return writer.toByteArray();
+    }
+
+    @NonNull
+    @Override
+    public PostDto decode(@NonNull byte[] data) throws PostDtoCodecException {
+
+        if (!isBinaryEncoded(data)) {
+            throw new PostDtoCodecException("Unsupported binary PostDto format version.");
+        }
+
+        var reader = new Reader(data, 1);
+        int mask = reader.readByte();
+
+        var post = new PostDto();
+
+        try {
+            if ((mask & ID_BIT) != 0) {
+                post.setId(reader.readVarLong());
+            }
+            if ((mask & USER_ID_BIT) != 0) {
+                post.setUserId(reader.readVarLong());
+            }
+            if ((mask & USERNAME_BIT) != 0) {
+                post.setUsername(reader.readString());
+            }
+            if ((mask & HEADLINE_BIT) != 0) {
+                post.setHeadline(reader.readString());
+            }
+            if ((mask & TEXT_BIT) != 0) {
+                post.setText(reader.readString());
+            }
+            if ((mask & KARMA_SCORE_BIT) != 0) {
+                post.setKarmaScore(reader.readVarLong());
+            }
+            if ((mask & VISIBILITY_BIT) != 0) {
+                post.setVisibility(VISIBILITIES[(int) reader.readVarLong()]);
+            }
+        } catch (IndexOutOfBoundsException ex) {
+            throw new PostDtoCodecException("Binary PostDto value is corrupted.", ex);
+        }
+
+        return post;
+    }
+
+    @Nullable
+    private static byte[] toBytes(@Nullable String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(@Nullable byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    private static class Writer {
+
+        private final byte[] buffer;
+        private int position = 0;
+
+        Writer(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        void writeByte(int value) {
+            buffer[position++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+
+            // zigzag encoding, so that small negative values (karma scores) are also short.
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buffer[position++] = (byte) zigzag;
+        }
+
+        void writeBytes(@NonNull byte[] value) {
+
+            writeVarLong(value.length);
+            System.arraycopy(value, 0, buffer, position, value.length);
+            position += value.length;
+        }
+
+        @NonNull
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+    }
+
+    private static class Reader {
+
+        private final byte[] buffer;
+        private int position;
+
+        Reader(@NonNull byte[] buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        int readByte() {
+            return buffer[position++] & 0xFF;
+        }
+
+        long readVarLong() {
+
+            long zigzag = 0;
+            int shift = 0;
+            byte current;
+            do {
+                if (shift >= 64) {
+                    throw new PostDtoCodecException("Binary PostDto value has malformed varint.");
+                }
+                current = buffer[position++];
+                zigzag |= (long) (current & 0x7F) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        @NonNull
+        String readString() {
+
+            int length = (int) readVarLong();
+            if (length < 0 || position + length > buffer.length) {
+                throw new IndexOutOfBoundsException();
+            }
+            var value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+    }
+
+}
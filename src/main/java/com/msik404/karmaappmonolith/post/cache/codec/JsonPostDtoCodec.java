@@ -0,0 +1,38 @@
+package com.msik404.karmaappmonolith.post.cache.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.msik404.karmaappmonolith.post.dto.PostDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.lang.NonNull;
+
+/**
+ * Codec which stores posts as json strings. This is the format which was used before binary codec was introduced.
+ */
+@RequiredArgsConstructor
+public class JsonPostDtoCodec implements PostDtoCodec {
+
+    private final ObjectMapper objectMapper;
+
+    @NonNull
+    @Override
+    public byte[] encode(@NonNull PostDto post) throws PostDtoCodecException {
+
+        try {
+            return objectMapper.writeValueAsBytes(post);
+        } catch (Exception ex) {
+            throw new PostDtoCodecException("Error serializing PostDto to JSON", ex);
+        }
+    }
+
+    @NonNull
+    @Override
+    public PostDto decode(@NonNull byte[] data) throws PostDtoCodecException {
+
+        try {
+            return objectMapper.readValue(data, PostDto.class);
+        } catch (Exception ex) {
+            throw new PostDtoCodecException("Error deserializing JSON to PostDto", ex);
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.msik404.karmaappmonolith.post.cache.codec;
+
+import com.msik404.karmaappmonolith.post.dto.PostDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.lang.NonNull;
+
+/**
+ * Codec which writes values with the configured codec, but reads both formats. Posts hash key does not depend on the
+ * codec, so after cache.post-codec is switched, or while instances with different codecs run side by side during
+ * deployment, the hash holds values of both formats until it is rebuilt. Json values always start with '{' which never
+ * is a valid binary version byte, so format can be detected by looking at the first byte only.
+ */
+@RequiredArgsConstructor
+public class MigratingPostDtoCodec implements PostDtoCodec {
+
+    private final PostDtoCodec writeCodec;
+    private final BinaryPostDtoCodec binaryCodec;
+    private final JsonPostDtoCodec jsonCodec;
+
+    @NonNull
+    @Override
+    public byte[] encode(@NonNull PostDto post) throws PostDtoCodecException {
+        return writeCodec.encode(post);
+    }
+
+    @NonNull
+    @Override
+    public PostDto decode(@NonNull byte[] data) throws PostDtoCodecException {
+
+        if (BinaryPostDtoCodec.isBinaryEncoded(data)) {
+            return binaryCodec.decode(data);
+        }
+        return jsonCodec.decode(data);
+    }
+
+}
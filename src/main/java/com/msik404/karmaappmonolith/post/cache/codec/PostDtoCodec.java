@@ -0,0 +1,17 @@
+package com.msik404.karmaappmonolith.post.cache.codec;
+
+import com.msik404.karmaappmonolith.post.dto.PostDto;
+import org.springframework.lang.NonNull;
+
+/**
+ * Strategy used by PostRedisCache for turning PostDto into values stored in redis hash and back.
+ */
+public interface PostDtoCodec {
+
+    @NonNull
+    byte[] encode(@NonNull PostDto post) throws PostDtoCodecException;
+
+    @NonNull
+    PostDto decode(@NonNull byte[] data) throws PostDtoCodecException;
+
+}
@@ -0,0 +1,31 @@
+package com.msik404.karmaappmonolith.post.cache.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class PostDtoCodecConfiguration {
+
+    /**
+     * Default mode is BINARY. Mode only selects format of written values, values of both formats are always read, see
+     * MigratingPostDtoCodec.
+     */
+    @Bean
+    public PostDtoCodec postDtoCodec(
+            ObjectMapper objectMapper,
+            @Value("${cache.post-codec:BINARY}") PostDtoCodecMode mode) {
+
+        var binaryCodec = new BinaryPostDtoCodec();
+        var jsonCodec = new JsonPostDtoCodec(objectMapper);
+
+        PostDtoCodec writeCodec = switch (mode) {
+            case JSON -> jsonCodec;
+            case BINARY -> binaryCodec;
+        };
+
+        return new MigratingPostDtoCodec(writeCodec, binaryCodec, jsonCodec);
+    }
+
+}
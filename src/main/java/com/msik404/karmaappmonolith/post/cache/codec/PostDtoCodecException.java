@@ -0,0 +1,13 @@
+package com.msik404.karmaappmonolith.post.cache.codec;
+
+public class PostDtoCodecException extends RuntimeException {
+
+    public PostDtoCodecException(String message) {
+        super(message);
+    }
+
+    public PostDtoCodecException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
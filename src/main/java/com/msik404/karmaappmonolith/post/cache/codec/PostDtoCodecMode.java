@@ -0,0 +1,6 @@
+package com.msik404.karmaappmonolith.post.cache.codec;
+
+public enum PostDtoCodecMode {
+    JSON,
+    BINARY
+}
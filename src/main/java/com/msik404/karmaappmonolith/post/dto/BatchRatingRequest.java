@@ -0,0 +1,14 @@
+package com.msik404.karmaappmonolith.post.dto;
+
+import java.util.List;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+public record BatchRatingRequest(
+        @NotNull @Size(min = 1, max = BatchRatingRequest.MAX_OPERATIONS) List<@Valid @NotNull PostRatingOperation> operations) {
+
+    public static final int MAX_OPERATIONS = 1000;
+
+}
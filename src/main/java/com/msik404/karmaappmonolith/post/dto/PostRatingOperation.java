@@ -0,0 +1,7 @@
+package com.msik404.karmaappmonolith.post.dto;
+
+import com.msik404.karmaappmonolith.post.RatingAction;
+import jakarta.validation.constraints.NotNull;
+
+public record PostRatingOperation(@NotNull Long postId, @NotNull RatingAction action) {
+}
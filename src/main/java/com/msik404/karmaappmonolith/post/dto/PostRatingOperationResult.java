@@ -0,0 +1,7 @@
+package com.msik404.karmaappmonolith.post.dto;
+
+import com.msik404.karmaappmonolith.post.RatingOperationStatus;
+import org.springframework.lang.NonNull;
+
+public record PostRatingOperationResult(long postId, @NonNull RatingOperationStatus status) {
+}
@@ -1,75 +1,126 @@
 package com.msik404.karmaappmonolith.post.repository;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
-import com.msik404.karmaappmonolith.position.ScrollPosition;
-import com.msik404.karmaappmonolith.post.Post;
 import com.msik404.karmaappmonolith.post.Visibility;
-import com.msik404.karmaappmonolith.user.User;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.criteria.*;
+import jakarta.persistence.TypedQuery;
 import org.springframework.lang.NonNull;
 
 public abstract class FindNPostPaginated<T> extends FindTemplate<T> {
 
-    protected Root<Post> postRoot;
-    protected Join<Post, User> userJoin;
-    protected Map<String, Predicate> wherePredicateMap;
+    protected static final String POST_ALIAS = "p";
+    private static final String USER_ALIAS = "u";
 
-    public FindNPostPaginated(EntityManager entityManager, CriteriaBuilder cb, Class<T> entityClass) {
+    private final List<String> joins;
+    private boolean isUserJoined;
+    private final List<String> wherePredicates;
 
-        super(entityManager, cb, entityClass);
+    private List<Visibility> visibilities;
+    private boolean isPaginated;
+    private boolean isUsernameEqual;
+    private boolean isUserIdEqual;
 
-        this.postRoot = criteriaQuery.from(Post.class);
-        this.userJoin = postRoot.join("user");
-        this.wherePredicateMap = new HashMap<>();
+    public FindNPostPaginated(Class<T> resultClass) {
+
+        super(resultClass);
+
+        this.joins = new ArrayList<>();
+        this.wherePredicates = new ArrayList<>();
+    }
+
+    protected void addJoin(@NonNull String join) {
+        joins.add(join);
+    }
+
+    /**
+     * Users are joined only by finders which need their columns, id of the user is read from posts without a join.
+     *
+     * @return alias of joined users
+     */
+    @NonNull
+    protected String getUserJoin() {
+
+        if (!isUserJoined) {
+            addJoin("JOIN " + POST_ALIAS + ".user " + USER_ALIAS);
+            isUserJoined = true;
+        }
+        return USER_ALIAS;
     }
 
     public void setVisibilitiesIn(@NonNull List<Visibility> visibilities) {
-        wherePredicateMap.put("visibilityPredicate", postRoot.get("visibility").in(visibilities));
+
+        this.visibilities = List.copyOf(visibilities);
+        wherePredicates.add(POST_ALIAS + ".visibility IN :visibilities");
     }
 
     /**
      * Fancy method that set predicate used to perform stable sort on two columns.
-     * In postgresql this could be rewritten as (karmaScore, postId) > (?, ?)
-     *
-     * @param position object with variables required to perform stable sort. These variables are postId and karmaScore
+     * Sort directions of these columns differ, so this can not be written as a row value comparison. Feed of ACTIVE
+     * posts uses one on negated karma score, see PostRepositoryCustomImpl.
+     * <p>
+     * Variables required to perform stable sort, which are postId and karmaScore, are bound from position of
+     * FindParameters.
      */
-    public void setPagination(@NonNull ScrollPosition position) {
-
-        wherePredicateMap.put("paginationPredicate", cb.or(
-                cb.lessThan(postRoot.get("karmaScore"), position.karmaScore()),
-                cb.and(
-                        cb.equal(postRoot.get("karmaScore"), position.karmaScore()),
-                        cb.greaterThan(postRoot.get("id"), position.postId())
-                )
-        ));
+    public void setPagination() {
+
+        isPaginated = true;
+        wherePredicates.add("(" + POST_ALIAS + ".karmaScore < :karmaScore OR (" +
+                POST_ALIAS + ".karmaScore = :karmaScore AND " + POST_ALIAS + ".id > :postId))");
     }
 
-    public void setUsernameEqual(@NonNull String username) {
-        wherePredicateMap.put("usernamePredicate", cb.equal(userJoin.get("username"), username));
+    public void setUsernameEqual() {
+
+        isUsernameEqual = true;
+        wherePredicates.add(getUserJoin() + ".username = :username");
+    }
+
+    public void setUserIdEqual() {
+
+        isUserIdEqual = true;
+        wherePredicates.add(POST_ALIAS + ".user.id = :userId");
     }
 
-    public void setUserIdEqual(@NonNull long userId) {
-        wherePredicateMap.put("userIdPredicate", cb.equal(postRoot.get("user").get("id"), userId));
+    @Override
+    String fromMethod() {
+
+        var from = new StringBuilder(" FROM Post ").append(POST_ALIAS);
+        for (String join : joins) {
+            from.append(' ').append(join);
+        }
+        return from.toString();
     }
 
     @Override
-    void whereMethod(CriteriaBuilder cb, CriteriaQuery<T> criteriaQuery) {
+    String whereMethod() {
 
-        if (!wherePredicateMap.isEmpty()) {
-            criteriaQuery.where(cb.and(wherePredicateMap.values().toArray(new Predicate[0])));
+        if (wherePredicates.isEmpty()) {
+            return "";
         }
+        return " WHERE " + String.join(" AND ", wherePredicates);
     }
 
     @Override
-    void orderMethod(CriteriaBuilder cb, CriteriaQuery<T> criteriaQuery) {
+    String orderMethod() {
+        return " ORDER BY " + POST_ALIAS + ".karmaScore DESC, " + POST_ALIAS + ".id ASC";
+    }
+
+    @Override
+    void bindMethod(TypedQuery<T> query, FindParameters parameters) {
 
-        criteriaQuery.orderBy(
-                cb.desc(postRoot.get("karmaScore")),
-                cb.asc(postRoot.get("id")));
+        if (visibilities != null) {
+            query.setParameter("visibilities", visibilities);
+        }
+        if (isPaginated) {
+            query.setParameter("karmaScore", parameters.position().karmaScore());
+            query.setParameter("postId", parameters.position().postId());
+        }
+        if (isUsernameEqual) {
+            query.setParameter("username", parameters.username());
+        }
+        if (isUserIdEqual) {
+            query.setParameter("userId", parameters.userId());
+        }
     }
 
 }
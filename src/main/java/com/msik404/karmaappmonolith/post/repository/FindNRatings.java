@@ -1,37 +1,33 @@
 package com.msik404.karmaappmonolith.post.repository;
 
-import com.msik404.karmaappmonolith.karma.KarmaScore;
-import com.msik404.karmaappmonolith.post.Post;
 import com.msik404.karmaappmonolith.post.dto.PostRatingResponse;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.criteria.CriteriaBuilder;
-import jakarta.persistence.criteria.Join;
-import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.TypedQuery;
 
 public class FindNRatings extends FindNPostPaginated<PostRatingResponse> {
 
-    protected Join<Post, KarmaScore> karmaScoreJoin;
+    private static final String KARMA_SCORE_ALIAS = "k";
 
-    public FindNRatings(EntityManager entityManager, CriteriaBuilder cb, long userId) {
-        super(entityManager, cb, PostRatingResponse.class);
+    public FindNRatings() {
 
-        this.karmaScoreJoin = postRoot
-                .join("karmaScores", JoinType.LEFT);
-        karmaScoreJoin.on(
-                cb.equal(karmaScoreJoin.get("user").get("id"), userId)
-        );
+        super(PostRatingResponse.class);
+
+        addJoin("LEFT JOIN " + POST_ALIAS + ".karmaScores " + KARMA_SCORE_ALIAS +
+                " ON " + KARMA_SCORE_ALIAS + ".user.id = :clientId");
+    }
+
+    @Override
+    String selectMethod() {
+
+        return "SELECT new " + PostRatingResponse.class.getName() + "(" +
+                POST_ALIAS + ".id, " +
+                KARMA_SCORE_ALIAS + ".isPositive)";
     }
 
     @Override
-    void selectMethod(CriteriaBuilder cb) {
-
-        criteriaQuery.select(
-                cb.construct(
-                        PostRatingResponse.class,
-                        postRoot.get("id"),
-                        karmaScoreJoin.get("isPositive")
-                )
-        );
+    void bindMethod(TypedQuery<PostRatingResponse> query, FindParameters parameters) {
+
+        super.bindMethod(query, parameters);
+        query.setParameter("clientId", parameters.clientId());
     }
 
 }
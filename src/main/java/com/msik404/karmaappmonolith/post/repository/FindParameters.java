@@ -0,0 +1,20 @@
+package com.msik404.karmaappmonolith.post.repository;
+
+import com.msik404.karmaappmonolith.position.ScrollPosition;
+import org.springframework.lang.Nullable;
+
+/**
+ * Values bound to parameters of a find query for a single call. Values which are null are not part of the query
+ * shape, see FindQueryShape.
+ *
+ * @param position Position after which posts are found, null for top posts.
+ * @param username Username of creator of posts.
+ * @param userId   Id of creator of posts.
+ * @param clientId Id of user whose ratings are found, only used by FindNRatings.
+ */
+record FindParameters(
+        @Nullable ScrollPosition position,
+        @Nullable String username,
+        @Nullable Long userId,
+        @Nullable Long clientId) {
+}
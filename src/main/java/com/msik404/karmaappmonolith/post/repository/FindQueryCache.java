@@ -0,0 +1,74 @@
+package com.msik404.karmaappmonolith.post.repository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.msik404.karmaappmonolith.post.Visibility;
+import com.msik404.karmaappmonolith.post.dto.PostDto;
+import com.msik404.karmaappmonolith.post.dto.PostRatingResponse;
+import org.springframework.lang.NonNull;
+
+/**
+ * Finders built once per FindQueryShape. There are only a few shapes, so every feed request reuses the same HQL
+ * string and only binds its parameters. Hibernate caches interpretation of HQL by its string, so the query is parsed
+ * and turned into SQL once per shape and not once per request, see FindQueryBenchmark.
+ * <p>
+ * Finders are shared by concurrent requests. Finder is built within computeIfAbsent, which also publishes it safely,
+ * and is never modified afterwards. Each call creates its own query from the string, so nothing else is shared.
+ */
+class FindQueryCache {
+
+    private final Map<FindQueryShape, FindNPostPaginated<?>> finders = new ConcurrentHashMap<>();
+
+    @NonNull
+    private static FindNPostPaginated<?> buildFinder(
+            @NonNull FindQueryShape shape,
+            @NonNull Supplier<FindNPostPaginated<?>> finderFactory) {
+
+        FindNPostPaginated<?> finder = finderFactory.get();
+
+        if (!shape.visibilities().isEmpty()) {
+            finder.setVisibilitiesIn(List.copyOf(shape.visibilities()));
+        }
+        if (shape.isPaginated()) {
+            finder.setPagination();
+        }
+        if (shape.isUsernameFiltered()) {
+            finder.setUsernameEqual();
+        }
+        if (shape.isUserIdFiltered()) {
+            finder.setUserIdEqual();
+        }
+        finder.build();
+
+        return finder;
+    }
+
+    @SuppressWarnings("unchecked")
+    @NonNull
+    FindNPostPaginated<PostDto> getPostsFinder(
+            @NonNull List<Visibility> visibilities,
+            @NonNull FindParameters parameters) {
+
+        var shape = FindQueryShape.of(FindNPosts.class, visibilities, parameters);
+        return (FindNPostPaginated<PostDto>) finders.computeIfAbsent(shape, key -> buildFinder(key, FindNPosts::new));
+    }
+
+    @SuppressWarnings("unchecked")
+    @NonNull
+    FindNPostPaginated<PostRatingResponse> getRatingsFinder(
+            @NonNull List<Visibility> visibilities,
+            @NonNull FindParameters parameters) {
+
+        var shape = FindQueryShape.of(FindNRatings.class, visibilities, parameters);
+        return (FindNPostPaginated<PostRatingResponse>) finders.computeIfAbsent(
+                shape, key -> buildFinder(key, FindNRatings::new));
+    }
+
+    int size() {
+        return finders.size();
+    }
+
+}
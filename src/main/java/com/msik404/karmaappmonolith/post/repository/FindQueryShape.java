@@ -0,0 +1,40 @@
+package com.msik404.karmaappmonolith.post.repository;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import com.msik404.karmaappmonolith.post.Visibility;
+import org.springframework.lang.NonNull;
+
+/**
+ * Everything that makes two find queries differ in structure and not only in values of their parameters.
+ */
+record FindQueryShape(
+        @NonNull Class<?> finderClass,
+        @NonNull Set<Visibility> visibilities,
+        boolean isPaginated,
+        boolean isUsernameFiltered,
+        boolean isUserIdFiltered) {
+
+    @NonNull
+    static FindQueryShape of(
+            @NonNull Class<?> finderClass,
+            @NonNull List<Visibility> visibilities,
+            @NonNull FindParameters parameters) {
+
+        Set<Visibility> visibilitySet = visibilities.isEmpty()
+                ? Set.of()
+                : Collections.unmodifiableSet(EnumSet.copyOf(visibilities));
+
+        return new FindQueryShape(
+                finderClass,
+                visibilitySet,
+                parameters.position() != null,
+                parameters.username() != null,
+                parameters.userId() != null
+        );
+    }
+
+}
@@ -1,53 +1,103 @@
 package com.msik404.karmaappmonolith.post.repository;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 import com.msik404.karmaappmonolith.post.exception.InternalServerErrorException;
 import jakarta.persistence.EntityManager;
-import jakarta.persistence.criteria.CriteriaBuilder;
-import jakarta.persistence.criteria.CriteriaQuery;
-
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.lang.NonNull;
+
+/**
+ * HQL query is rendered once by build method, every value which changes between calls is a named parameter of it.
+ * Built finder is therefore immutable and may be executed many times, also concurrently, see FindQueryCache.
+ */
 public abstract class FindTemplate<T> {
 
-    protected EntityManager entityManager;
-    protected CriteriaBuilder cb;
-    protected CriteriaQuery<T> criteriaQuery;
+    private final Class<T> resultClass;
+    private String hql;
+
+    public FindTemplate(Class<T> resultClass) {
+        this.resultClass = resultClass;
+    }
+
+    abstract String selectMethod();
+
+    abstract String fromMethod();
+
+    abstract String whereMethod();
+
+    abstract String orderMethod();
 
-    public FindTemplate(EntityManager entityManager, CriteriaBuilder cb, Class<T> entityClass) {
+    abstract void bindMethod(TypedQuery<T> query, FindParameters parameters);
 
-        this.entityManager = entityManager;
-        this.cb = cb;
-        this.criteriaQuery = cb.createQuery(entityClass);
+    protected List<T> returnMethod(TypedQuery<T> query, int size) {
+        return query.setMaxResults(size).getResultList();
     }
 
-    abstract void selectMethod(CriteriaBuilder cb);
+    @NonNull
+    FindTemplate<T> build() {
 
-    abstract void whereMethod(CriteriaBuilder cb, CriteriaQuery<T> criteriaQuery);
+        // select and where clauses are rendered first, they decide which joins the from clause needs
+        String select = selectMethod();
 
-    abstract void orderMethod(CriteriaBuilder cb, CriteriaQuery<T> criteriaQuery);
+        String where = whereMethod();
+
+        String order = orderMethod();
+
+        hql = select + fromMethod() + where + order;
+
+        return this;
+    }
+
+    @NonNull
+    String getHql() {
+        return hql;
+    }
 
-    protected List<T> returnMethod(EntityManager entityManager, CriteriaQuery<T> criteriaQuery, int size) {
+    @NonNull
+    TypedQuery<T> createQuery(@NonNull EntityManager entityManager, @NonNull FindParameters parameters) {
+
+        TypedQuery<T> query = entityManager.createQuery(hql, resultClass);
+        bindMethod(query, parameters);
+        return query;
+    }
+
+    List<T> execute(
+            @NonNull EntityManager entityManager,
+            int size,
+            @NonNull FindParameters parameters
+    ) throws InternalServerErrorException {
 
-        final int offset = 0;
         try {
-            return entityManager.createQuery(criteriaQuery)
-                    .setFirstResult(offset)
-                    .setMaxResults(size)
-                    .getResultList();
+            return returnMethod(createQuery(entityManager, parameters), size);
         } catch (RuntimeException ex) {
             throw new InternalServerErrorException("Could not get posts from database for some reason.");
         }
     }
 
-    List<T> execute(int size) throws InternalServerErrorException {
-
-        selectMethod(cb);
-
-        whereMethod(cb, criteriaQuery);
+    /**
+     * Results are fetched from database in batches of fetchSize rows as the stream is consumed, which requires an
+     * open transaction. Stream has to be closed.
+     */
+    @NonNull
+    Stream<T> stream(
+            @NonNull EntityManager entityManager,
+            int size,
+            int fetchSize,
+            @NonNull FindParameters parameters
+    ) throws InternalServerErrorException {
 
-        orderMethod(cb, criteriaQuery);
-
-        return returnMethod(entityManager, criteriaQuery, size);
+        try {
+            return createQuery(entityManager, parameters)
+                    .setMaxResults(size)
+                    .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                    .setHint(HibernateHints.HINT_READ_ONLY, true)
+                    .getResultStream();
+        } catch (RuntimeException ex) {
+            throw new InternalServerErrorException("Could not get posts from database for some reason.");
+        }
     }
 
 }
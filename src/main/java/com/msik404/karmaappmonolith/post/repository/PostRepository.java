@@ -1,6 +1,9 @@
 package com.msik404.karmaappmonolith.post.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import com.msik404.karmaappmonolith.post.Post;
 import com.msik404.karmaappmonolith.post.dto.ImageOnlyDto;
@@ -16,12 +19,32 @@ public interface PostRepository extends JpaRepository<Post, Long>, PostRepositor
 
     Optional<VisibilityOnlyDto> findVisibilityById(long postId);
 
-    @Query("SELECT NEW com.msik404.karmaappmonolith.post.dto.PostWithImageDataDto(p.id, p.user.id, u.username, p.headline, p.text, p.karmaScore, p.visibility, p.imageData) " +
+    // Karma score includes deltas not yet applied from post karma journal or folded from post karma shards, so that
+    // post is cached with its current score.
+    @Query("SELECT NEW com.msik404.karmaappmonolith.post.dto.PostWithImageDataDto(p.id, p.user.id, u.username, p.headline, p.text, " +
+            "p.karmaScore + COALESCE((SELECT SUM(d.delta) FROM PostKarmaDelta d WHERE d.postId = p.id), 0L) " +
+            "+ COALESCE((SELECT SUM(s.delta) FROM PostKarmaShard s WHERE s.id.postId = p.id), 0L), " +
+            "p.visibility, p.imageData) " +
             "FROM Post p JOIN p.user u WHERE p.id = :postId")
     Optional<PostWithImageDataDto> findPostDtoWithImageDataById(@Param("postId") long postId);
 
-    @Query("SELECT NEW com.msik404.karmaappmonolith.post.dto.PostWithImageDataDto(p.id, p.user.id, u.username, p.headline, p.text, p.karmaScore, p.visibility, p.imageData) " +
+    // Same as findPostDtoWithImageDataById, but for many posts with a single query.
+    @Query("SELECT NEW com.msik404.karmaappmonolith.post.dto.PostWithImageDataDto(p.id, p.user.id, u.username, p.headline, p.text, " +
+            "p.karmaScore + COALESCE((SELECT SUM(d.delta) FROM PostKarmaDelta d WHERE d.postId = p.id), 0L) " +
+            "+ COALESCE((SELECT SUM(s.delta) FROM PostKarmaShard s WHERE s.id.postId = p.id), 0L), " +
+            "p.visibility, p.imageData) " +
+            "FROM Post p JOIN p.user u WHERE p.id IN :postIds")
+    List<PostWithImageDataDto> findPostDtosWithImageDataByIds(@Param("postIds") Collection<Long> postIds);
+
+    // Same as findPostDtoWithImageDataById, but only if post is owned by the user.
+    @Query("SELECT NEW com.msik404.karmaappmonolith.post.dto.PostWithImageDataDto(p.id, p.user.id, u.username, p.headline, p.text, " +
+            "p.karmaScore + COALESCE((SELECT SUM(d.delta) FROM PostKarmaDelta d WHERE d.postId = p.id), 0L) " +
+            "+ COALESCE((SELECT SUM(s.delta) FROM PostKarmaShard s WHERE s.id.postId = p.id), 0L), " +
+            "p.visibility, p.imageData) " +
             "FROM Post p JOIN p.user u WHERE p.id = :postId AND p.user.id = :userId")
     Optional<PostWithImageDataDto> findPostDtoWithImageDataByIdAndUserId(@Param("postId") long postId, @Param("userId") long userId);
 
+    @Query("SELECT p.id FROM Post p WHERE p.id IN :postIds")
+    Set<Long> findExistingIds(@Param("postIds") Collection<Long> postIds);
+
 }
@@ -1,6 +1,8 @@
 package com.msik404.karmaappmonolith.post.repository;
 
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 import com.msik404.karmaappmonolith.position.ScrollPosition;
 import com.msik404.karmaappmonolith.post.Visibility;
@@ -16,6 +18,17 @@ public interface PostRepositoryCustom {
             @NonNull List<Visibility> visibilities
     ) throws InternalServerErrorException;
 
+    /**
+     * Streams top posts for consumers which process more of them than they should hold in memory at once. Rows are
+     * fetched from database in batches of fetchSize as the stream is consumed, which only happens within a
+     * transaction, otherwise postgresql driver fetches all rows at once. Stream has to be closed.
+     */
+    Stream<PostDto> streamTopNPosts(
+            int size,
+            @NonNull List<Visibility> visibilities,
+            int fetchSize
+    ) throws InternalServerErrorException;
+
     List<PostDto> findNextNPosts(
             int size,
             @NonNull List<Visibility> visibilities,
@@ -77,5 +90,9 @@ public interface PostRepositoryCustom {
 
     int addKarmaScoreToPost(long postId, long value);
 
+    int addKarmaScoresToPosts(@NonNull Map<Long, Long> deltas);
+
+    int recomputeKarmaScores();
+
     int changeVisibilityById(long postId, @NonNull Visibility visibility);
 }
@@ -1,6 +1,9 @@
 package com.msik404.karmaappmonolith.post.repository;
 
 import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.stream.Stream;
 
 import com.msik404.karmaappmonolith.position.ScrollPosition;
 import com.msik404.karmaappmonolith.post.Post;
@@ -9,20 +12,97 @@ import com.msik404.karmaappmonolith.post.dto.PostDto;
 import com.msik404.karmaappmonolith.post.dto.PostRatingResponse;
 import com.msik404.karmaappmonolith.post.exception.InternalServerErrorException;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.Path;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public class PostRepositoryCustomImpl implements PostRepositoryCustom {
 
+    // Amount of rows updated by a single statement, each row takes two bind parameters.
+    private static final int KARMA_SCORES_BATCH_SIZE = 1_000;
+
+    // Ids of a page are found first with an index-only scan of posts_active_keyset, only these posts are then read
+    // from the table. Both statements order by negated karma score, which is the same as karma score DESC, id ASC.
+    // Returned karma score also includes deltas not yet applied from post karma journal or folded from post karma
+    // shards, like posts loaded to cache one by one, while order still follows posts.karma_score.
+    static final String ACTIVE_KEYSET_SQL = "SELECT p.id, p.user_id, u.username, p.headline, p.text, " +
+            "p.karma_score + COALESCE((SELECT SUM(d.delta) FROM post_karma_deltas d WHERE d.post_id = p.id), 0) " +
+            "+ COALESCE((SELECT SUM(s.delta) FROM post_karma_shards s WHERE s.post_id = p.id), 0), " +
+            "p.visibility " +
+            "FROM (" +
+            "SELECT a.id FROM posts a " +
+            "WHERE a.visibility = 'ACTIVE' AND (-a.karma_score, a.id) > (-CAST(:karmaScore AS bigint), CAST(:postId AS bigint)) " +
+            "ORDER BY -a.karma_score, a.id " +
+            "LIMIT :size" +
+            ") AS page " +
+            "JOIN posts p ON p.id = page.id " +
+            "JOIN users u ON u.id = p.user_id " +
+            "ORDER BY -p.karma_score, p.id";
+
+    // Position which is before every post, so that the same statement returns the top posts.
+    private static final ScrollPosition TOP_POSITION = new ScrollPosition(Long.MIN_VALUE, Long.MAX_VALUE);
+
     private final EntityManager entityManager;
     private final CriteriaBuilder cb;
 
+    private final FindQueryCache queryCache;
+
     public PostRepositoryCustomImpl(EntityManager entityManager) {
         this.entityManager = entityManager;
         this.cb = entityManager.getCriteriaBuilder();
+        this.queryCache = new FindQueryCache();
+    }
+
+    private static boolean isActiveOnly(@NonNull List<Visibility> visibilities) {
+        return visibilities.size() == 1 && visibilities.get(0) == Visibility.ACTIVE;
+    }
+
+    @NonNull
+    private Query createActiveKeysetQuery(int size, @NonNull ScrollPosition position) {
+
+        return entityManager.createNativeQuery(ACTIVE_KEYSET_SQL)
+                .setParameter("karmaScore", position.karmaScore())
+                .setParameter("postId", position.postId())
+                .setParameter("size", size);
+    }
+
+    @NonNull
+    private static PostDto mapActiveKeysetRow(@NonNull Object row) {
+
+        Object[] columns = (Object[]) row;
+        return new PostDto(
+                ((Number) columns[0]).longValue(),
+                ((Number) columns[1]).longValue(),
+                (String) columns[2],
+                (String) columns[3],
+                (String) columns[4],
+                ((Number) columns[5]).longValue(),
+                Visibility.valueOf((String) columns[6])
+        );
+    }
+
+    /**
+     * Finds ACTIVE posts after position with a native row value comparison, which postgresql turns into a single
+     * range scan of the partial posts_active_keyset index, instead of scanning posts of every visibility and
+     * filtering them with an OR predicate.
+     */
+    @NonNull
+    private List<PostDto> findNextNActivePostsByKeyset(int size, @NonNull ScrollPosition position)
+            throws InternalServerErrorException {
+
+        try {
+            List<?> rows = createActiveKeysetQuery(size, position).getResultList();
+
+            return rows.stream()
+                    .map(PostRepositoryCustomImpl::mapActiveKeysetRow)
+                    .toList();
+        } catch (RuntimeException ex) {
+            throw new InternalServerErrorException("Could not get posts from database for some reason.");
+        }
     }
 
     @Override
@@ -31,12 +111,39 @@ public class PostRepositoryCustomImpl implements PostRepositoryCustom {
             @NonNull List<Visibility> visibilities)
             throws InternalServerErrorException {
 
-        var finder = new FindNPosts(entityManager, cb);
-        if (!visibilities.isEmpty()) {
-            finder.setVisibilitiesIn(visibilities);
+        if (isActiveOnly(visibilities)) {
+            return findNextNActivePostsByKeyset(size, TOP_POSITION);
         }
 
-        return finder.execute(size);
+        var parameters = new FindParameters(null, null, null, null);
+
+        return queryCache.getPostsFinder(visibilities, parameters).execute(entityManager, size, parameters);
+    }
+
+    @Override
+    @NonNull
+    public Stream<PostDto> streamTopNPosts(
+            int size,
+            @NonNull List<Visibility> visibilities,
+            int fetchSize
+    ) throws InternalServerErrorException {
+
+        if (!isActiveOnly(visibilities)) {
+            var parameters = new FindParameters(null, null, null, null);
+
+            return queryCache.getPostsFinder(visibilities, parameters).stream(entityManager, size, fetchSize, parameters);
+        }
+
+        try {
+            Stream<?> rows = createActiveKeysetQuery(size, TOP_POSITION)
+                    .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                    .setHint(HibernateHints.HINT_READ_ONLY, true)
+                    .getResultStream();
+
+            return rows.map(PostRepositoryCustomImpl::mapActiveKeysetRow);
+        } catch (RuntimeException ex) {
+            throw new InternalServerErrorException("Could not get posts from database for some reason.");
+        }
     }
 
     @Override
@@ -46,13 +153,14 @@ public class PostRepositoryCustomImpl implements PostRepositoryCustom {
             @NonNull ScrollPosition position
     ) throws InternalServerErrorException {
 
-        var finder = new FindNPosts(entityManager, cb);
-        if (!visibilities.isEmpty()) {
-            finder.setVisibilitiesIn(visibilities);
+        // Lowest karma score can not be negated, such positions are left to the HQL query.
+        if (isActiveOnly(visibilities) && position.karmaScore() != Long.MIN_VALUE) {
+            return findNextNActivePostsByKeyset(size, position);
         }
-        finder.setPagination(position);
 
-        return finder.execute(size);
+        var parameters = new FindParameters(position, null, null, null);
+
+        return queryCache.getPostsFinder(visibilities, parameters).execute(entityManager, size, parameters);
     }
 
     @Override
@@ -62,13 +170,9 @@ public class PostRepositoryCustomImpl implements PostRepositoryCustom {
             @NonNull String username)
             throws InternalServerErrorException {
 
-        var finder = new FindNPosts(entityManager, cb);
-        if (!visibilities.isEmpty()) {
-            finder.setVisibilitiesIn(visibilities);
-        }
-        finder.setUsernameEqual(username);
+        var parameters = new FindParameters(null, username, null, null);
 
-        return finder.execute(size);
+        return queryCache.getPostsFinder(visibilities, parameters).execute(entityManager, size, parameters);
     }
 
     @Override
@@ -79,14 +183,9 @@ public class PostRepositoryCustomImpl implements PostRepositoryCustom {
             @NonNull String username)
             throws InternalServerErrorException {
 
-        var finder = new FindNPosts(entityManager, cb);
-        if (!visibilities.isEmpty()) {
-            finder.setVisibilitiesIn(visibilities);
-        }
-        finder.setPagination(position);
-        finder.setUsernameEqual(username);
+        var parameters = new FindParameters(position, username, null, null);
 
-        return finder.execute(size);
+        return queryCache.getPostsFinder(visibilities, parameters).execute(entityManager, size, parameters);
     }
 
     @Override
@@ -96,11 +195,9 @@ public class PostRepositoryCustomImpl implements PostRepositoryCustom {
             long userId
     ) throws InternalServerErrorException {
 
-        var finder = new FindNPosts(entityManager, cb);
-        finder.setVisibilitiesIn(visibilities);
-        finder.setUserIdEqual(userId);
+        var parameters = new FindParameters(null, null, userId, null);
 
-        return finder.execute(size);
+        return queryCache.getPostsFinder(visibilities, parameters).execute(entityManager, size, parameters);
     }
 
     @Override
@@ -111,12 +208,9 @@ public class PostRepositoryCustomImpl implements PostRepositoryCustom {
             @NonNull ScrollPosition position
     ) throws InternalServerErrorException {
 
-        var finder = new FindNPosts(entityManager, cb);
-        finder.setVisibilitiesIn(visibilities);
-        finder.setPagination(position);
-        finder.setUserIdEqual(userId);
+        var parameters = new FindParameters(position, null, userId, null);
 
-        return finder.execute(size);
+        return queryCache.getPostsFinder(visibilities, parameters).execute(entityManager, size, parameters);
     }
 
     @Override
@@ -126,12 +220,9 @@ public class PostRepositoryCustomImpl implements PostRepositoryCustom {
             long userId)
             throws InternalServerErrorException {
 
-        var finder = new FindNRatings(entityManager, cb, userId);
-        if (!visibilities.isEmpty()) {
-            finder.setVisibilitiesIn(visibilities);
-        }
+        var parameters = new FindParameters(null, null, null, userId);
 
-        return finder.execute(size);
+        return queryCache.getRatingsFinder(visibilities, parameters).execute(entityManager, size, parameters);
     }
 
     @Override
@@ -142,13 +233,9 @@ public class PostRepositoryCustomImpl implements PostRepositoryCustom {
             @NonNull ScrollPosition position)
             throws InternalServerErrorException {
 
-        var finder = new FindNRatings(entityManager, cb, userId);
-        if (!visibilities.isEmpty()) {
-            finder.setVisibilitiesIn(visibilities);
-        }
-        finder.setPagination(position);
+        var parameters = new FindParameters(position, null, null, userId);
 
-        return finder.execute(size);
+        return queryCache.getRatingsFinder(visibilities, parameters).execute(entityManager, size, parameters);
     }
 
     @Override
@@ -159,13 +246,9 @@ public class PostRepositoryCustomImpl implements PostRepositoryCustom {
             @NonNull String username)
             throws InternalServerErrorException {
 
-        var finder = new FindNRatings(entityManager, cb, userId);
-        if (!visibilities.isEmpty()) {
-            finder.setVisibilitiesIn(visibilities);
-        }
-        finder.setUsernameEqual(username);
+        var parameters = new FindParameters(null, username, null, userId);
 
-        return finder.execute(size);
+        return queryCache.getRatingsFinder(visibilities, parameters).execute(entityManager, size, parameters);
     }
 
     @Override
@@ -177,14 +260,9 @@ public class PostRepositoryCustomImpl implements PostRepositoryCustom {
             @NonNull String username)
             throws InternalServerErrorException {
 
-        var finder = new FindNRatings(entityManager, cb, userId);
-        if (!visibilities.isEmpty()) {
-            finder.setVisibilitiesIn(visibilities);
-        }
-        finder.setPagination(position);
-        finder.setUsernameEqual(username);
+        var parameters = new FindParameters(position, username, null, userId);
 
-        return finder.execute(size);
+        return queryCache.getRatingsFinder(visibilities, parameters).execute(entityManager, size, parameters);
     }
 
     @Override
@@ -205,6 +283,87 @@ public class PostRepositoryCustomImpl implements PostRepositoryCustom {
         }
     }
 
+    /**
+     * Applies karma score deltas of many posts with batched UPDATE ... FROM (VALUES ...) statements. Rows are updated
+     * in ascending id order, so that concurrent flushes can not deadlock.
+     *
+     * @param deltas Map of post id to karma score delta.
+     * @return Amount of updated posts.
+     */
+    @Override
+    public int addKarmaScoresToPosts(@NonNull Map<Long, Long> deltas) throws InternalServerErrorException {
+
+        List<Map.Entry<Long, Long>> sortedDeltas = deltas.entrySet()
+                .stream()
+                .sorted(Map.Entry.comparingByKey())
+                .toList();
+
+        int rowsAffected = 0;
+        for (int start = 0; start < sortedDeltas.size(); start += KARMA_SCORES_BATCH_SIZE) {
+
+            List<Map.Entry<Long, Long>> batch = sortedDeltas.subList(
+                    start,
+                    Math.min(start + KARMA_SCORES_BATCH_SIZE, sortedDeltas.size())
+            );
+
+            var values = new StringJoiner(", ");
+            for (int i = 0; i < batch.size(); i++) {
+                values.add(String.format("(CAST(?%d AS bigint), CAST(?%d AS bigint))", 2 * i + 1, 2 * i + 2));
+            }
+
+            String sql = "UPDATE posts p SET karma_score = p.karma_score + v.delta " +
+                    "FROM (VALUES " + values + ") AS v(id, delta) " +
+                    "WHERE p.id = v.id";
+
+            var query = entityManager.createNativeQuery(sql);
+            for (int i = 0; i < batch.size(); i++) {
+                query.setParameter(2 * i + 1, batch.get(i).getKey());
+                query.setParameter(2 * i + 2, batch.get(i).getValue());
+            }
+
+            try {
+                rowsAffected += query.executeUpdate();
+            } catch (RuntimeException ex) {
+                throw new InternalServerErrorException("Could not add karma scores to posts.");
+            }
+        }
+
+        return rowsAffected;
+    }
+
+    /**
+     * Corrects karma score of every post whose score drifted from its votes in karma_scores. Deltas pending in
+     * post_karma_deltas and post_karma_shards are part of the expected score, so drift is computed from a single
+     * snapshot as votes - pending deltas - karma score and added to the current score. Deltas which are applied or
+     * appended concurrently change pending deltas and karma score (or votes) by the same amount, so they keep the drift
+     * unchanged and are never counted twice.
+     *
+     * @return Amount of corrected posts.
+     */
+    @Override
+    public int recomputeKarmaScores() throws InternalServerErrorException {
+
+        String sql = "UPDATE posts p SET karma_score = p.karma_score + s.drift " +
+                "FROM (" +
+                "SELECT p2.id, " +
+                "COALESCE(v.votes, 0) - COALESCE(d.delta, 0) - COALESCE(sh.delta, 0) - p2.karma_score AS drift " +
+                "FROM posts p2 " +
+                "LEFT JOIN (SELECT post_id, SUM(CASE WHEN is_positive THEN 1 ELSE -1 END) AS votes " +
+                "FROM karma_scores GROUP BY post_id) v ON v.post_id = p2.id " +
+                "LEFT JOIN (SELECT post_id, SUM(delta) AS delta " +
+                "FROM post_karma_deltas GROUP BY post_id) d ON d.post_id = p2.id " +
+                "LEFT JOIN (SELECT post_id, SUM(delta) AS delta " +
+                "FROM post_karma_shards GROUP BY post_id) sh ON sh.post_id = p2.id" +
+                ") AS s " +
+                "WHERE p.id = s.id AND s.drift <> 0";
+
+        try {
+            return entityManager.createNativeQuery(sql).executeUpdate();
+        } catch (RuntimeException ex) {
+            throw new InternalServerErrorException("Could not recompute karma scores of posts.");
+        }
+    }
+
     @Override
     public int changeVisibilityById(long postId, @NonNull Visibility visibility) throws InternalServerErrorException {
 
@@ -23,8 +23,12 @@ import org.springframework.security.core.userdetails.UserDetails;
 @AllArgsConstructor
 public class User implements UserDetails {
 
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Pooled like post ids, see Post.
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+    @SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     private String firstName;
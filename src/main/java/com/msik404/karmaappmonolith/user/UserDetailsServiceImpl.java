@@ -3,13 +3,14 @@ package com.msik404.karmaappmonolith.user;
 import lombok.RequiredArgsConstructor;
 import org.springframework.lang.NonNull;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 @Service
 @RequiredArgsConstructor
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserService userService;
 
@@ -18,4 +19,21 @@ public class UserDetailsServiceImpl implements UserDetailsService {
         return userService.findByEmail(email);
     }
 
+    /**
+     * Called by DaoAuthenticationProvider after successful login, if stored password hash has lower strength than the
+     * configured one.
+     *
+     * @param userDetails User returned by loadUserByUsername.
+     * @param newPassword Password already encoded with current strength.
+     */
+    @Override
+    public UserDetails updatePassword(@NonNull UserDetails userDetails, @NonNull String newPassword) {
+
+        var user = (User) userDetails;
+        userService.updateEncodedPassword(user.getId(), newPassword);
+        user.setPassword(newPassword);
+
+        return user;
+    }
+
 }
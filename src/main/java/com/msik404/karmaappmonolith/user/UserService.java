@@ -1,8 +1,10 @@
 package com.msik404.karmaappmonolith.user;
 
+import com.msik404.karmaappmonolith.auth.jwt.TokenRevocationService;
 import com.msik404.karmaappmonolith.exception.constraint.exception.DuplicateEmailException;
 import com.msik404.karmaappmonolith.exception.constraint.exception.DuplicateUnexpectedFieldException;
 import com.msik404.karmaappmonolith.exception.constraint.exception.DuplicateUsernameException;
+import com.msik404.karmaappmonolith.user.cache.UserPrincipalCache;
 import com.msik404.karmaappmonolith.user.dto.UserUpdateRequestWithAdminPrivilege;
 import com.msik404.karmaappmonolith.user.dto.UserUpdateRequestWithUserPrivilege;
 import com.msik404.karmaappmonolith.user.exception.NoFieldSetException;
@@ -20,6 +22,8 @@ import org.springframework.transaction.annotation.Transactional;
 public class UserService {
 
     private final UserRepository userRepository;
+    private final TokenRevocationService tokenRevocationService;
+    private final UserPrincipalCache userPrincipalCache;
 
     public User findById(long id) throws UserNotFoundException {
         return userRepository.findById(id).orElseThrow(UserNotFoundException::new);
@@ -60,9 +64,24 @@ public class UserService {
             throw new UserNotFoundException();
         }
 
+        // Role is embedded in tokens and cached principals, so both have to be dropped.
+        if (request.role() != null) {
+            tokenRevocationService.revokeTokensOfUserAfterCommit(userId);
+            userPrincipalCache.invalidateAfterCommit(userId);
+        }
+
         return request;
     }
 
+    @Transactional
+    public void updateEncodedPassword(long userId, @NonNull String encodedPassword) throws UserNotFoundException {
+
+        int rowsAffected = userRepository.updatePassword(userId, encodedPassword);
+        if (rowsAffected == 0) {
+            throw new UserNotFoundException();
+        }
+    }
+
     public User findByEmail(String email) throws UserNotFoundException {
         return userRepository.findByEmail(email).orElseThrow(UserNotFoundException::new);
     }
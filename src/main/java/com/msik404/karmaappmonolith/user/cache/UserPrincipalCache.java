@@ -0,0 +1,106 @@
+package com.msik404.karmaappmonolith.user.cache;
+
+import java.time.Duration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.msik404.karmaappmonolith.user.dto.UserPrincipalDto;
+import com.msik404.karmaappmonolith.user.exception.UserNotFoundException;
+import com.msik404.karmaappmonolith.user.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * In-process cache of user principals used by JwtAuthenticationFilter when authorities are not taken from token
+ * claims. Only role and enabled state are loaded from database, instead of the whole User entity.
+ * <p>
+ * Entries are invalidated when role is changed on this instance, other instances rely on TTL, so role change is
+ * noticed by them after at most cache.principal.ttl.
+ * <p>
+ * Hit, miss and eviction counters are exposed as cache.* metrics with cache=user-principal-cache tag and hit ratio
+ * as user.principal.cache.hit.ratio gauge.
+ */
+@Component
+public class UserPrincipalCache {
+
+    public static final String CACHE_NAME = "user-principal-cache";
+    public static final String HIT_RATIO_GAUGE_NAME = "user.principal.cache.hit.ratio";
+
+    private final UserRepository userRepository;
+
+    private final Cache<Long, UserPrincipalDto> cache;
+
+    public UserPrincipalCache(
+            UserRepository userRepository,
+            @Value("${cache.principal.ttl:PT1M}") Duration ttl,
+            @Value("${cache.principal.max-size:10000}") long maxSize,
+            MeterRegistry meterRegistry) {
+
+        this.userRepository = userRepository;
+
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+
+        Gauge.builder(HIT_RATIO_GAUGE_NAME, cache, cachedPrincipals -> cachedPrincipals.stats().hitRate())
+                .description("Ratio of user principal lookups served without database query")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param userId Id of the user.
+     * @return Principal of the user, loaded from database if it is not cached.
+     * @throws UserNotFoundException if user does not exist, which is not cached.
+     */
+    @NonNull
+    public UserPrincipalDto get(long userId) throws UserNotFoundException {
+
+        UserPrincipalDto principal = cache.get(userId, id -> userRepository.findPrincipalById(id).orElse(null));
+        if (principal == null) {
+            throw new UserNotFoundException();
+        }
+        return principal;
+    }
+
+    public void invalidate(long userId) {
+        cache.invalidate(userId);
+    }
+
+    /**
+     * Invalidates entry after current transaction commits, so that previous role, which concurrent requests can load
+     * until then, does not stay cached. If there is no transaction, entry is invalidated immediately.
+     *
+     * @param userId Id of the user.
+     */
+    public void invalidateAfterCommit(long userId) {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(userId);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(userId);
+            }
+        });
+    }
+
+    @NonNull
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+}
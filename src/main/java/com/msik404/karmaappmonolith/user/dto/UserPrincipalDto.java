@@ -0,0 +1,24 @@
+package com.msik404.karmaappmonolith.user.dto;
+
+import java.util.Collection;
+import java.util.Set;
+
+import com.msik404.karmaappmonolith.user.Role;
+import org.springframework.lang.NonNull;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+/**
+ * Part of User which is needed to authenticate requests.
+ *
+ * @param role      Role of the user.
+ * @param isEnabled Whether user is allowed to authenticate.
+ */
+public record UserPrincipalDto(@NonNull Role role, boolean isEnabled) {
+
+    @NonNull
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return Set.of(new SimpleGrantedAuthority(role.name()));
+    }
+
+}
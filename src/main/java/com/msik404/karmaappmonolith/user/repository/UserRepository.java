@@ -3,7 +3,11 @@ package com.msik404.karmaappmonolith.user.repository;
 import java.util.Optional;
 
 import com.msik404.karmaappmonolith.user.User;
+import com.msik404.karmaappmonolith.user.dto.UserPrincipalDto;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.lang.NonNull;
 
 public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
@@ -12,4 +16,12 @@ public interface UserRepository extends JpaRepository<User, Long>, UserRepositor
 
     Optional<User> findByEmail(@NonNull String email);
 
+    // There is no column for enabled state, every user is enabled, see User.isEnabled.
+    @Query("SELECT NEW com.msik404.karmaappmonolith.user.dto.UserPrincipalDto(u.role, true) FROM User u WHERE u.id = :userId")
+    Optional<UserPrincipalDto> findPrincipalById(@Param("userId") long userId);
+
+    @Modifying
+    @Query("UPDATE User u SET u.password = :password WHERE u.id = :userId")
+    int updatePassword(@Param("userId") long userId, @Param("password") @NonNull String encodedPassword);
+
 }
@@ -0,0 +1,8 @@
+-- Runs after Hibernate has created or updated tables, see spring.jpa.defer-datasource-initialization.
+
+-- Keyset pagination of the ACTIVE feed, which is ordered by karma_score DESC, id ASC. Row values can only be compared
+-- in a single direction, so karma_score is negated, which lets (-karma_score, id) > (?, ?) be a single index range scan.
+-- karma_score is included so that ids of a page can be found with an index-only scan.
+CREATE INDEX IF NOT EXISTS posts_active_keyset
+    ON posts ((-karma_score), id) INCLUDE (karma_score)
+    WHERE visibility = 'ACTIVE';
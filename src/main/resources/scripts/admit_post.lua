@@ -0,0 +1,53 @@
+-- Admits post into the cache if the cache is not full or post karma score is higher than the lowest cached score.
+-- Admitted post is inserted into karma score zset and posts hash, optionally its image is cached, and then the lowest
+-- ranked posts are evicted (zset member, hash field and image key), so that at most max cached posts are left.
+-- Everything is done atomically, so that concurrent admissions can not exceed the limit or admit too low scores.
+--
+-- Cold cache (no karma score zset) is left to the refresher, because admitting a single post would make the cache look
+-- non-empty, so refresh would not be requested and feed reads would miss the cache until the scheduled refresh.
+--
+-- KEYS[1] karma score zset, KEYS[2] posts hash, KEYS[3] image key of admitted post
+-- ARGV[1] member, ARGV[2] karma score, ARGV[3] encoded post, ARGV[4] max cached posts, ARGV[5] timeout in seconds,
+-- ARGV[6] image key prefix, ARGV[7] image key suffix, ARGV[8] optional image data
+--
+-- Reply is 1 if post was admitted, else 0 (also when the cache is cold).
+
+local member = ARGV[1]
+local score = tonumber(ARGV[2])
+local maxCachedPosts = tonumber(ARGV[4])
+
+local cachedPostsAmount = redis.call('ZCARD', KEYS[1])
+
+if cachedPostsAmount == 0 then
+    return 0
+end
+
+if cachedPostsAmount >= maxCachedPosts then
+    local lowest = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')
+    if score <= tonumber(lowest[2]) then
+        return 0
+    end
+end
+
+local isAdmitted = redis.call('ZADD', KEYS[1], ARGV[2], member) == 1
+isAdmitted = redis.call('HSET', KEYS[2], member, ARGV[3]) == 1 and isAdmitted
+
+if ARGV[8] then
+    local isImageSet = redis.call('SET', KEYS[3], ARGV[8], 'EX', ARGV[5], 'NX')
+    isAdmitted = isImageSet and isAdmitted
+end
+
+local excess = redis.call('ZCARD', KEYS[1]) - maxCachedPosts
+if excess > 0 then
+    local evicted = redis.call('ZRANGE', KEYS[1], 0, excess - 1)
+    for i = 1, #evicted do
+        redis.call('ZREM', KEYS[1], evicted[i])
+        redis.call('HDEL', KEYS[2], evicted[i])
+        redis.call('DEL', ARGV[6] .. evicted[i] .. ARGV[7])
+    end
+end
+
+if isAdmitted then
+    return 1
+end
+return 0
@@ -0,0 +1,30 @@
+-- Removes members which were not merged during incremental rebuild from live karma score zset and posts hash, then
+-- resets expiration of live keys.
+--
+-- KEYS[1] live karma score zset, KEYS[2] live posts hash, KEYS[3] seen zset
+-- ARGV[1] timeout in seconds
+--
+-- Reply is amount of removed members, or -1 if seen zset does not exist.
+
+if redis.call('EXISTS', KEYS[3]) == 0 then
+    return -1
+end
+
+local stale = redis.call('ZDIFF', 2, KEYS[1], KEYS[3])
+
+-- ZREM and HDEL are called in chunks, because unpack is limited by lua stack size.
+local chunkSize = 1000
+for chunkStart = 1, #stale, chunkSize do
+    local members = {}
+    for i = chunkStart, math.min(chunkStart + chunkSize - 1, #stale) do
+        members[#members + 1] = stale[i]
+    end
+    redis.call('ZREM', KEYS[1], unpack(members))
+    redis.call('HDEL', KEYS[2], unpack(members))
+end
+
+redis.call('DEL', KEYS[3])
+redis.call('EXPIRE', KEYS[1], ARGV[1])
+redis.call('EXPIRE', KEYS[2], ARGV[1])
+
+return #stale
@@ -0,0 +1,19 @@
+-- Removes changed ratings of a user from their ratings hash and bumps its version, so that ratings loaded from
+-- database before the change are not written anymore. Expiration time is set only if the hash has none yet.
+--
+-- KEYS[1] ratings hash of the user
+-- ARGV[1] ttl in milliseconds, ARGV[2] version field, then post ids
+--
+-- Reply is the new version.
+
+for i = 3, #ARGV do
+    redis.call('HDEL', KEYS[1], ARGV[i])
+end
+
+local version = redis.call('HINCRBY', KEYS[1], ARGV[2], 1)
+
+if redis.call('PTTL', KEYS[1]) < 0 then
+    redis.call('PEXPIRE', KEYS[1], ARGV[1])
+end
+
+return version
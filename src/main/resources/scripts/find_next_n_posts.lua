@@ -0,0 +1,77 @@
+-- Returns page of size posts which come right after the scroll position in karma score zset, along with their scores
+-- and contents from posts hash. Everything is done in a single round trip.
+--
+-- Members are zero-padded complements of post ids, so within a single score, reverse lexicographical order of members
+-- is ascending order of ids. This makes ZREVRANGE order equal to (karmaScore DESC, id ASC).
+--
+-- KEYS[1] karma score zset, KEYS[2] posts hash
+-- ARGV[1] size, ARGV[2] member of scroll position post (empty string for the first page),
+-- ARGV[3] karma score of scroll position post
+--
+-- Reply is flat array: score_1, post_1, score_2, post_2, ... or empty array when not enough posts are cached after
+-- the scroll position or some of them have no body.
+
+local size = tonumber(ARGV[1])
+local start = 0
+
+if ARGV[2] ~= '' then
+    local positionMember = ARGV[2]
+    local positionScore = ARGV[3]
+
+    -- Ranks of the band of members with the same score as scroll position are [low, high). Scroll position post does
+    -- not have to be cached, so first member within the band which comes after it is found with binary search.
+    local low = redis.call('ZCOUNT', KEYS[1], '(' .. positionScore, '+inf')
+    local high = redis.call('ZCOUNT', KEYS[1], positionScore, '+inf')
+    while low < high do
+        local mid = math.floor((low + high) / 2)
+        local member = redis.call('ZREVRANGE', KEYS[1], mid, mid)[1]
+        if member >= positionMember then
+            low = mid + 1
+        else
+            high = mid
+        end
+    end
+    start = low
+end
+
+local membersWithScores = redis.call('ZREVRANGE', KEYS[1], start, start + size - 1, 'WITHSCORES')
+if #membersWithScores ~= 2 * size then
+    return {}
+end
+
+-- HMGET is called in chunks, because unpack is limited by lua stack size.
+local chunkSize = 1000
+local posts = {}
+for chunkStart = 1, size, chunkSize do
+    local members = {}
+    for i = chunkStart, math.min(chunkStart + chunkSize - 1, size) do
+        members[#members + 1] = membersWithScores[2 * i - 1]
+    end
+    local chunk = redis.call('HMGET', KEYS[2], unpack(members))
+    for i = 1, #chunk do
+        posts[#posts + 1] = chunk[i]
+    end
+end
+
+-- Members without post body are ghosts left by concurrent deletes. They are removed, so that the cache heals itself,
+-- and this page is served from database.
+local ghosts = {}
+for i = 1, size do
+    if not posts[i] then
+        ghosts[#ghosts + 1] = membersWithScores[2 * i - 1]
+    end
+end
+if #ghosts > 0 then
+    for i = 1, #ghosts do
+        redis.call('ZREM', KEYS[1], ghosts[i])
+    end
+    return {}
+end
+
+local reply = {}
+for i = 1, size do
+    reply[#reply + 1] = membersWithScores[2 * i]
+    reply[#reply + 1] = posts[i]
+end
+
+return reply
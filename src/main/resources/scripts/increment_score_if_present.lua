@@ -0,0 +1,18 @@
+-- Increments karma score of post only if it is cached, in a single round trip. Member without post body in the hash
+-- is a ghost left by concurrent delete, it is removed instead of being incremented.
+--
+-- KEYS[1] karma score zset, KEYS[2] posts hash
+-- ARGV[1] member, ARGV[2] delta
+--
+-- Reply is new karma score or nil if post is not cached.
+
+if not redis.call('ZSCORE', KEYS[1], ARGV[1]) then
+    return nil
+end
+
+if redis.call('HEXISTS', KEYS[2], ARGV[1]) == 0 then
+    redis.call('ZREM', KEYS[1], ARGV[1])
+    return nil
+end
+
+return redis.call('ZINCRBY', KEYS[1], ARGV[2], ARGV[1])
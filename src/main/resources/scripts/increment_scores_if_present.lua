@@ -0,0 +1,26 @@
+-- Increments karma scores of many posts, each only if it is cached, in a single round trip. Member without post body
+-- in the hash is a ghost left by concurrent delete, it is removed instead of being incremented.
+--
+-- KEYS[1] karma score zset, KEYS[2] posts hash
+-- ARGV pairs of member and delta
+--
+-- Reply is array with new karma score of each member or nil if member is not cached.
+
+local results = {}
+
+for i = 1, #ARGV, 2 do
+    local member = ARGV[i]
+    local result = false
+
+    if redis.call('ZSCORE', KEYS[1], member) then
+        if redis.call('HEXISTS', KEYS[2], member) == 0 then
+            redis.call('ZREM', KEYS[1], member)
+        else
+            result = redis.call('ZINCRBY', KEYS[1], ARGV[i + 1], member)
+        end
+    end
+
+    results[#results + 1] = result
+end
+
+return results
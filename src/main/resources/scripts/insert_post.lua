@@ -0,0 +1,37 @@
+-- Inserts post into karma score zset and posts hash, optionally caches its image, and then evicts the lowest ranked
+-- posts, so that at most max cached posts are left. Evicted posts are removed from zset, hash and their image keys are
+-- deleted, all atomically, so that redis memory stays bounded under sustained write traffic.
+--
+-- KEYS[1] karma score zset, KEYS[2] posts hash, KEYS[3] image key of inserted post
+-- ARGV[1] member, ARGV[2] karma score, ARGV[3] encoded post, ARGV[4] max cached posts, ARGV[5] timeout in seconds,
+-- ARGV[6] image key prefix, ARGV[7] image key suffix, ARGV[8] optional image data
+--
+-- Reply is 1 if post was inserted (and its image was cached if image data was given) and was not evicted, else 0.
+
+local member = ARGV[1]
+
+local isInserted = redis.call('ZADD', KEYS[1], ARGV[2], member) == 1
+isInserted = redis.call('HSET', KEYS[2], member, ARGV[3]) == 1 and isInserted
+
+if ARGV[8] then
+    local isImageSet = redis.call('SET', KEYS[3], ARGV[8], 'EX', ARGV[5], 'NX')
+    isInserted = isImageSet and isInserted
+end
+
+local excess = redis.call('ZCARD', KEYS[1]) - tonumber(ARGV[4])
+if excess > 0 then
+    local lowest = redis.call('ZRANGE', KEYS[1], 0, excess - 1)
+    for i = 1, #lowest do
+        redis.call('ZREM', KEYS[1], lowest[i])
+        redis.call('HDEL', KEYS[2], lowest[i])
+        redis.call('DEL', ARGV[6] .. lowest[i] .. ARGV[7])
+        if lowest[i] == member then
+            isInserted = false
+        end
+    end
+end
+
+if isInserted then
+    return 1
+end
+return 0
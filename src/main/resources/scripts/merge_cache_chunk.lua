@@ -0,0 +1,22 @@
+-- Merges chunk of posts into live karma score zset and posts hash. ZADD of a member with unchanged score does not modify
+-- the zset. Every merged member is also recorded in seen zset, so that members which were not merged can be removed on
+-- commit.
+--
+-- KEYS[1] live karma score zset, KEYS[2] live posts hash, KEYS[3] seen zset
+-- ARGV[1] timeout in seconds, then triples of: member, karma score, encoded post
+--
+-- Reply is amount of members which were not cached before.
+
+local added = 0
+
+for i = 2, #ARGV, 3 do
+    local member = ARGV[i]
+    local score = ARGV[i + 1]
+    added = added + redis.call('ZADD', KEYS[1], score, member)
+    redis.call('HSET', KEYS[2], member, ARGV[i + 2])
+    redis.call('ZADD', KEYS[3], score, member)
+end
+
+redis.call('EXPIRE', KEYS[3], ARGV[1])
+
+return added
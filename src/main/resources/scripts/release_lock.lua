@@ -0,0 +1,13 @@
+-- Deletes lock only if it is still held by the caller, so that lock which expired and was acquired by someone else is
+-- not released.
+--
+-- KEYS[1] lock key
+-- ARGV[1] token of the lock holder
+--
+-- Reply is 1 if lock was released, 0 otherwise.
+
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+
+return 0
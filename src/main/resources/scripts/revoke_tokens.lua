@@ -0,0 +1,19 @@
+-- Bumps global revocation epoch and records it as revocation epoch of the user, so that tokens of the user issued
+-- before this call (with lower version) are rejected, while tokens issued afterwards are accepted.
+--
+-- KEYS[1] global revocation epoch key
+-- KEYS[2] revocation epoch key of the user
+-- ARGV[1] ttl of the user key in milliseconds, tokens older than that have expired anyway
+-- ARGV[2] highest epoch known by the caller, epoch is raised to it first if it is lower
+--
+-- Reply is the new epoch.
+
+local floor = tonumber(ARGV[2])
+if tonumber(redis.call('GET', KEYS[1]) or '0') < floor then
+    redis.call('SET', KEYS[1], floor)
+end
+
+local epoch = redis.call('INCR', KEYS[1])
+redis.call('SET', KEYS[2], epoch, 'PX', ARGV[1])
+
+return epoch
@@ -0,0 +1,16 @@
+-- Raises global revocation epoch to the given floor, if it is lower, for example after the key was lost.
+--
+-- KEYS[1] global revocation epoch key
+-- ARGV[1] floor of the epoch
+--
+-- Reply is the epoch after the call.
+
+local floor = tonumber(ARGV[1])
+local epoch = tonumber(redis.call('GET', KEYS[1]) or '0')
+
+if epoch < floor then
+    redis.call('SET', KEYS[1], floor)
+    return floor
+end
+
+return epoch
@@ -0,0 +1,17 @@
+-- Atomically replaces live karma score zset and posts hash with rebuilt ones, so that readers never see empty cache.
+--
+-- KEYS[1] live karma score zset, KEYS[2] live posts hash, KEYS[3] rebuilt karma score zset, KEYS[4] rebuilt posts hash
+-- ARGV[1] timeout in seconds
+--
+-- Reply is 1 if keys were swapped, 0 if rebuilt keys do not exist.
+
+if redis.call('EXISTS', KEYS[3]) == 0 or redis.call('EXISTS', KEYS[4]) == 0 then
+    return 0
+end
+
+redis.call('RENAME', KEYS[3], KEYS[1])
+redis.call('RENAME', KEYS[4], KEYS[2])
+redis.call('EXPIRE', KEYS[1], ARGV[1])
+redis.call('EXPIRE', KEYS[2], ARGV[1])
+
+return 1
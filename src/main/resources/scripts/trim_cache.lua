@@ -0,0 +1,30 @@
+-- Removes lowest ranked posts from karma score zset and posts hash and deletes their image keys, so that at most max
+-- cached posts are left.
+--
+-- KEYS[1] karma score zset, KEYS[2] posts hash
+-- ARGV[1] max cached posts, ARGV[2] image key prefix, ARGV[3] image key suffix
+--
+-- Reply is amount of removed posts.
+
+local excess = redis.call('ZCARD', KEYS[1]) - tonumber(ARGV[1])
+if excess <= 0 then
+    return 0
+end
+
+local lowest = redis.call('ZRANGE', KEYS[1], 0, excess - 1)
+
+-- ZREM, HDEL and DEL are called in chunks, because unpack is limited by lua stack size.
+local chunkSize = 1000
+for chunkStart = 1, #lowest, chunkSize do
+    local members = {}
+    local imageKeys = {}
+    for i = chunkStart, math.min(chunkStart + chunkSize - 1, #lowest) do
+        members[#members + 1] = lowest[i]
+        imageKeys[#imageKeys + 1] = ARGV[2] .. lowest[i] .. ARGV[3]
+    end
+    redis.call('ZREM', KEYS[1], unpack(members))
+    redis.call('HDEL', KEYS[2], unpack(members))
+    redis.call('DEL', unpack(imageKeys))
+end
+
+return #lowest
@@ -0,0 +1,26 @@
+-- Writes ratings of a user loaded from database to their ratings hash, only absent fields are written. Nothing is
+-- written if ratings of the user changed since the version was read, because loaded ratings might predate the change.
+-- Expiration time is set only if the hash has none yet, so the hash lives for at most ttl since it was created.
+--
+-- KEYS[1] ratings hash of the user
+-- ARGV[1] ttl in milliseconds, ARGV[2] version field, ARGV[3] version read before ratings were loaded or empty string
+-- if there was none, then pairs of: post id, rating
+--
+-- Reply is amount of written fields.
+
+local version = redis.call('HGET', KEYS[1], ARGV[2]) or ''
+if version ~= ARGV[3] then
+    return 0
+end
+
+local added = 0
+
+for i = 4, #ARGV, 2 do
+    added = added + redis.call('HSETNX', KEYS[1], ARGV[i], ARGV[i + 1])
+end
+
+if redis.call('PTTL', KEYS[1]) < 0 then
+    redis.call('PEXPIRE', KEYS[1], ARGV[1])
+end
+
+return added
@@ -0,0 +1,241 @@
+package com.msik404.karmaappmonolith.auth;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.msik404.karmaappmonolith.post.Post;
+import com.msik404.karmaappmonolith.post.repository.PostRepository;
+import com.msik404.karmaappmonolith.user.Role;
+import com.msik404.karmaappmonolith.user.User;
+import com.msik404.karmaappmonolith.user.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.lang.NonNull;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures p99 latency of the guest feed alone and then during a storm of logins, each of which verifies BCrypt
+ * password. Logins are hashed on PasswordHashingExecutor pool, so feed p99 should stay roughly the same. Both p99
+ * values and outcomes of logins are printed.
+ * <p>
+ * It takes about a minute and needs all processors, so it is skipped unless enabled with: ./mvnw test
+ * -Dtest=LoginStormLoadTest -Dloadtest.login-storm=true
+ */
+@Testcontainers
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "jwt.secret=login-storm-load-test-secret-with-at-least-32-bytes",
+                "jwt.key-id=primary",
+                "initialize.data=false",
+                "spring.jpa.show-sql=false",
+        }
+)
+@EnabledIfSystemProperty(named = "loadtest.login-storm", matches = "true")
+class LoginStormLoadTest {
+
+    private static final int USERS_AMOUNT = 200;
+    private static final int POSTS_AMOUNT = 200;
+    private static final String PASSWORD = "password";
+
+    private static final int FEED_CLIENTS = 8;
+    private static final int LOGIN_CLIENTS = 64;
+    private static final Duration WARM_UP = Duration.ofSeconds(10);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(20);
+
+    // Latency is not expected to be identical, only not to grow with CPU starvation, which would be orders of magnitude.
+    private static final double MAX_P99_GROWTH = 3.0;
+    private static final long P99_TOLERANCE_MILLIS = 20;
+
+    private static final PostgreSQLContainer<?> POSTGRESQL_CONTAINER =
+            new PostgreSQLContainer<>("postgres:alpine");
+
+    public static final GenericContainer<?> REDIS_CONTAINER =
+            new GenericContainer(DockerImageName.parse("redis:alpine")).withExposedPorts(6379);
+
+    static {
+        POSTGRESQL_CONTAINER.start();
+        REDIS_CONTAINER.start();
+    }
+
+    @DynamicPropertySource
+    private static void registerProperties(DynamicPropertyRegistry registry) {
+
+        registry.add("spring.datasource.url", POSTGRESQL_CONTAINER::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRESQL_CONTAINER::getUsername);
+        registry.add("spring.datasource.password", POSTGRESQL_CONTAINER::getPassword);
+        registry.add("spring.data.redis.host", REDIS_CONTAINER::getHost);
+        registry.add("spring.data.redis.port", () -> REDIS_CONTAINER.getMappedPort(6379).toString());
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private BCryptPasswordEncoder bCryptPasswordEncoder;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @NonNull
+    private static String getEmail(int userIdx) {
+        return String.format("login_storm_%d@mail.com", userIdx);
+    }
+
+    private void prepareData() {
+
+        // Password is hashed once, hashing it for each user would make setup as slow as the storm itself.
+        String encodedPassword = bCryptPasswordEncoder.encode(PASSWORD);
+
+        List<User> users = new ArrayList<>(USERS_AMOUNT);
+        for (int i = 0; i < USERS_AMOUNT; i++) {
+            String username = String.format("login_storm_%d", i);
+            users.add(new User(username, getEmail(i), encodedPassword, Role.USER, null, null));
+        }
+        users = userRepository.saveAll(users);
+
+        List<Post> posts = new ArrayList<>(POSTS_AMOUNT);
+        for (int i = 0; i < POSTS_AMOUNT; i++) {
+            posts.add(new Post("headline " + i, "text " + i, users.get(i % users.size()), null));
+        }
+        postRepository.saveAll(posts);
+    }
+
+    @NonNull
+    private URI getUri(@NonNull String path) {
+        return URI.create(String.format("http://localhost:%d/%s", port, path));
+    }
+
+    private long requestFeedNanos() throws Exception {
+
+        var request = HttpRequest.newBuilder(getUri("guest/posts?size=100")).GET().build();
+
+        long start = System.nanoTime();
+        httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        return System.nanoTime() - start;
+    }
+
+    private int login(int userIdx) throws Exception {
+
+        String body = String.format("{\"email\": \"%s\", \"password\": \"%s\"}", getEmail(userIdx), PASSWORD);
+        var request = HttpRequest.newBuilder(getUri("login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    /**
+     * @return Latencies of feed requests in nanoseconds, sent by FEED_CLIENTS clients for given duration.
+     */
+    @NonNull
+    private List<Long> measureFeed(@NonNull Duration duration) throws InterruptedException {
+
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        try (ExecutorService clients = Executors.newFixedThreadPool(FEED_CLIENTS)) {
+            for (int i = 0; i < FEED_CLIENTS; i++) {
+                clients.execute(() -> {
+                    while (System.nanoTime() < deadline) {
+                        try {
+                            latencies.add(requestFeedNanos());
+                        } catch (Exception ex) {
+                            throw new IllegalStateException(ex);
+                        }
+                    }
+                });
+            }
+            clients.shutdown();
+            assertTrue(clients.awaitTermination(duration.toMillis() * 2, TimeUnit.MILLISECONDS));
+        }
+
+        return latencies;
+    }
+
+    private static long getP99Millis(@NonNull List<Long> latencies) {
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        int idx = (int) Math.ceil(sorted.size() * 0.99) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(sorted.get(Math.max(idx, 0)));
+    }
+
+    @Test
+    void feed_LoginStorm_FeedP99ShouldStayFlat() throws Exception {
+
+        // given
+        prepareData();
+        measureFeed(WARM_UP);
+
+        long baselineP99 = getP99Millis(measureFeed(MEASUREMENT));
+
+        var isStormRunning = new AtomicBoolean(true);
+        var loginStatuses = new ConcurrentHashMap<Integer, LongAdder>();
+
+        // when
+        List<Long> latenciesDuringStorm;
+        try (ExecutorService loginClients = Executors.newFixedThreadPool(LOGIN_CLIENTS)) {
+            for (int i = 0; i < LOGIN_CLIENTS; i++) {
+                int clientIdx = i;
+                loginClients.execute(() -> {
+                    int userIdx = clientIdx;
+                    while (isStormRunning.get()) {
+                        try {
+                            int status = login(userIdx);
+                            loginStatuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+                        } catch (Exception ex) {
+                            throw new IllegalStateException(ex);
+                        }
+                        userIdx = (userIdx + LOGIN_CLIENTS) % USERS_AMOUNT;
+                    }
+                });
+            }
+
+            latenciesDuringStorm = measureFeed(MEASUREMENT);
+            isStormRunning.set(false);
+        }
+
+        // then
+        long stormP99 = getP99Millis(latenciesDuringStorm);
+
+        System.out.printf(
+                "%nFeed p99 without logins: %d ms, during login storm: %d ms, login responses by status: %s%n",
+                baselineP99,
+                stormP99,
+                loginStatuses
+        );
+
+        assertTrue(stormP99 <= baselineP99 * MAX_P99_GROWTH + P99_TOLERANCE_MILLIS);
+    }
+
+}
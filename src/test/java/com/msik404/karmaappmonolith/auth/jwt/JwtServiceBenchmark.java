@@ -0,0 +1,66 @@
+package com.msik404.karmaappmonolith.auth.jwt;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of extractAllClaims, which is called by JwtAuthenticationFilter on every authenticated request. Parsing
+ * with the parser and key built once is compared with building both per call, as it was done before.
+ * <p>
+ * Run with: ./mvnw test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath org.openjdk.jmh.Main JwtServiceBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class JwtServiceBenchmark {
+
+    private static final String SECRET = "benchmark-secret-which-is-at-least-32-bytes-long";
+
+    private JwtService jwtService;
+    private String jwt;
+
+    @Setup
+    public void setUp() {
+
+        jwtService = new JwtService(new JwtProperties(SECRET, "primary", Map.of("retired", SECRET + "-retired")));
+        jwt = jwtService.generateJwt(404L, null);
+    }
+
+    @Benchmark
+    public Claims extractAllClaims() {
+        return jwtService.extractAllClaims(jwt);
+    }
+
+    @Benchmark
+    public Claims extractAllClaimsWithParserBuiltPerCall() {
+
+        return Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseSignedClaims(jwt)
+                .getPayload();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        var options = new OptionsBuilder()
+                .include(JwtServiceBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.msik404.karmaappmonolith.auth.jwt;
+
+import java.util.Date;
+import java.util.Map;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtServiceTest {
+
+    private static final String CURRENT_KEY_ID = "current";
+    private static final String CURRENT_SECRET = "current-secret-which-is-at-least-32-bytes-long";
+    private static final String RETIRED_KEY_ID = "retired";
+    private static final String RETIRED_SECRET = "retired-secret-which-is-at-least-32-bytes-long";
+
+    private final JwtService jwtService = new JwtService(
+            new JwtProperties(CURRENT_SECRET, CURRENT_KEY_ID, Map.of(RETIRED_KEY_ID, RETIRED_SECRET)));
+
+    @NonNull
+    private static String signJwt(long clientId, @NonNull String secret, @Nullable String keyId) {
+
+        return Jwts.builder()
+                .header().keyId(keyId).and()
+                .subject(Long.toString(clientId))
+                .expiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor(secret.getBytes()))
+                .compact();
+    }
+
+    @Test
+    void generateJwt_ClientIdAndClaims_ClaimsAreExtractedAndKidIsCurrentKeyId() {
+
+        // given
+        long clientId = 404;
+        String claimName = "claim";
+
+        String jwt = jwtService.generateJwt(clientId, Map.of(claimName, "value"));
+
+        // when
+        Claims claims = jwtService.extractAllClaims(jwt);
+
+        // then
+        assertEquals(Long.toString(clientId), claims.getSubject());
+        assertEquals("value", claims.get(claimName, String.class));
+        assertEquals(CURRENT_KEY_ID, Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(CURRENT_SECRET.getBytes()))
+                .build()
+                .parseSignedClaims(jwt)
+                .getHeader()
+                .getKeyId()
+        );
+    }
+
+    @Test
+    void extractAllClaims_JwtIsSignedWithRetiredKey_ClaimsAreExtracted() {
+
+        // given
+        long clientId = 404;
+        String jwt = signJwt(clientId, RETIRED_SECRET, RETIRED_KEY_ID);
+
+        // when
+        Claims claims = jwtService.extractAllClaims(jwt);
+
+        // then
+        assertEquals(Long.toString(clientId), claims.getSubject());
+    }
+
+    @Test
+    void extractAllClaims_JwtHasNoKid_ClaimsAreExtractedWithCurrentKey() {
+
+        // given
+        long clientId = 404;
+        String jwt = signJwt(clientId, CURRENT_SECRET, null);
+
+        // when
+        Claims claims = jwtService.extractAllClaims(jwt);
+
+        // then
+        assertEquals(Long.toString(clientId), claims.getSubject());
+    }
+
+    @Test
+    void extractAllClaims_JwtHasUnknownKid_JwtExceptionIsThrown() {
+
+        // given
+        String jwt = signJwt(404, CURRENT_SECRET, "unknown");
+
+        // then                              // when
+        assertThrows(JwtException.class, () -> jwtService.extractAllClaims(jwt));
+    }
+
+    @Test
+    void extractAllClaims_JwtIsSignedWithOtherKeyUnderCurrentKid_JwtExceptionIsThrown() {
+
+        // given
+        String jwt = signJwt(404, RETIRED_SECRET, CURRENT_KEY_ID);
+
+        // then                              // when
+        assertThrows(JwtException.class, () -> jwtService.extractAllClaims(jwt));
+    }
+
+    @Test
+    void jwtProperties_RetiredKeysContainCurrentKeyId_IllegalArgumentExceptionIsThrown() {
+
+        // then
+        assertThrows(IllegalArgumentException.class, () -> new JwtProperties(
+                CURRENT_SECRET,
+                CURRENT_KEY_ID,
+                Map.of(CURRENT_KEY_ID, RETIRED_SECRET))
+        );
+    }
+
+}
@@ -0,0 +1,187 @@
+package com.msik404.karmaappmonolith.auth.jwt;
+
+import java.util.concurrent.TimeUnit;
+
+import com.msik404.karmaappmonolith.RedisConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+@SpringBootTest(classes = {
+        RedisConfiguration.class,
+        TokenRevocationService.class
+})
+class TokenRevocationServiceTest {
+
+    private static final long USER_ID = 404;
+    private static final long OTHER_USER_ID = 405;
+
+    private final RedisConnectionFactory redisConnectionFactory;
+    private final StringRedisTemplate redisTemplate;
+
+    private final TokenRevocationService revocationService;
+
+    public static final GenericContainer<?> REDIS_CONTAINER =
+            new GenericContainer(DockerImageName.parse("redis:alpine")).withExposedPorts(6379);
+
+    static {
+        REDIS_CONTAINER.start();
+    }
+
+    @DynamicPropertySource
+    private static void registerRedisProperties(DynamicPropertyRegistry registry) {
+
+        registry.add("spring.data.redis.host", REDIS_CONTAINER::getHost);
+        registry.add("spring.data.redis.port", () -> REDIS_CONTAINER.getMappedPort(6379).toString());
+    }
+
+    @Autowired
+    TokenRevocationServiceTest(
+            RedisConnectionFactory redisConnectionFactory,
+            StringRedisTemplate redisTemplate,
+            TokenRevocationService revocationService) {
+
+        this.redisConnectionFactory = redisConnectionFactory;
+        this.redisTemplate = redisTemplate;
+        this.revocationService = revocationService;
+    }
+
+    @AfterEach
+    void tearDown() {
+        redisConnectionFactory.getConnection().serverCommands().flushAll();
+    }
+
+    @Test
+    void isRevoked_NoRevocations_False() {
+
+        // given
+        long tokenVersion = revocationService.getCurrentEpoch();
+
+        // when
+        boolean isRevoked = revocationService.isRevoked(USER_ID, tokenVersion);
+
+        // then
+        assertFalse(isRevoked);
+    }
+
+    @Test
+    void revokeTokensOfUser_TokenWasIssuedBeforeRevocation_TokenIsRevoked() {
+
+        // given
+        long tokenVersion = revocationService.getCurrentEpoch();
+
+        // when
+        revocationService.revokeTokensOfUser(USER_ID);
+
+        // then
+        assertTrue(revocationService.isRevoked(USER_ID, tokenVersion));
+    }
+
+    @Test
+    void revokeTokensOfUser_TokenWasIssuedAfterRevocation_TokenIsNotRevoked() {
+
+        // given
+        revocationService.revokeTokensOfUser(USER_ID);
+
+        // when
+        long tokenVersion = revocationService.getCurrentEpoch();
+
+        // then
+        assertFalse(revocationService.isRevoked(USER_ID, tokenVersion));
+    }
+
+    @Test
+    void revokeTokensOfUser_TokenOfOtherUserWasIssuedBeforeRevocation_TokenIsNotRevoked() {
+
+        // given
+        long tokenVersion = revocationService.getCurrentEpoch();
+
+        // when
+        revocationService.revokeTokensOfUser(USER_ID);
+
+        // then
+        assertFalse(revocationService.isRevoked(OTHER_USER_ID, tokenVersion));
+    }
+
+    @Test
+    void revokeTokensOfUser_UserKeyShouldExpireAfterTokens() {
+
+        // when
+        revocationService.revokeTokensOfUser(USER_ID);
+
+        // then
+        Long ttlMillis = redisTemplate.getExpire(
+                TokenRevocationService.getUserKey(USER_ID), TimeUnit.MILLISECONDS);
+
+        assertNotNull(ttlMillis);
+        assertTrue(ttlMillis > 0);
+        assertTrue(ttlMillis <= JwtService.getTimeToExpire().toMillis());
+    }
+
+    @Test
+    void isRevoked_RevokedByOtherInstance_TokenIsRevokedOnlyAfterEpochRefresh() {
+
+        // given
+        var instance = new TokenRevocationService(redisTemplate);
+        var otherInstance = new TokenRevocationService(redisTemplate);
+
+        long tokenVersion = instance.getCurrentEpoch();
+
+        // when
+        otherInstance.revokeTokensOfUser(USER_ID);
+
+        // then
+        assertFalse(instance.isRevoked(USER_ID, tokenVersion));
+
+        instance.refreshCachedEpoch();
+        assertTrue(instance.isRevoked(USER_ID, tokenVersion));
+    }
+
+    @Test
+    void getCurrentEpoch_EpochKeyWasLost_EpochIsSeededWithKnownEpoch() {
+
+        // given
+        var instance = new TokenRevocationService(redisTemplate);
+        instance.revokeTokensOfUser(OTHER_USER_ID);
+        long knownEpoch = instance.getCurrentEpoch();
+
+        redisTemplate.delete(TokenRevocationService.EPOCH_KEY);
+
+        // when
+        long epoch = instance.getCurrentEpoch();
+
+        // then
+        assertEquals(knownEpoch, epoch);
+        assertEquals(Long.toString(knownEpoch), redisTemplate.opsForValue().get(TokenRevocationService.EPOCH_KEY));
+    }
+
+    @Test
+    void revokeTokensOfUser_EpochKeyWasLost_TokenIssuedBeforeLossIsRevoked() {
+
+        // given
+        var instance = new TokenRevocationService(redisTemplate);
+        instance.revokeTokensOfUser(OTHER_USER_ID);
+        instance.revokeTokensOfUser(OTHER_USER_ID);
+        long tokenVersion = instance.getCurrentEpoch();
+
+        redisTemplate.delete(TokenRevocationService.EPOCH_KEY);
+
+        // when
+        instance.revokeTokensOfUser(USER_ID);
+
+        // then
+        assertTrue(instance.isRevoked(USER_ID, tokenVersion));
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.msik404.karmaappmonolith.auth.password;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.msik404.karmaappmonolith.auth.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHashingExecutorTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(5);
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private PasswordHashingExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+
+        meterRegistry = new SimpleMeterRegistry();
+        executor = new PasswordHashingExecutor(1, 1, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void execute_TaskReturnsValue_ValueShouldBeReturnedAndTaskShouldRunOnHashingThread() {
+
+        // when
+        String threadName = executor.execute(() -> Thread.currentThread().getName());
+
+        // then
+        assertTrue(threadName.startsWith(PasswordHashingExecutor.EXECUTOR_NAME));
+    }
+
+    @Test
+    void execute_TaskThrowsRuntimeException_SameExceptionShouldBeRethrown() {
+
+        // given
+        var exception = new BadCredentialsException("Bad credentials");
+
+        // then
+        var thrown = assertThrows(BadCredentialsException.class, () -> executor.execute(() -> {
+            throw exception;
+        }));
+        assertSame(exception, thrown);
+    }
+
+    @Test
+    void execute_ThreadIsBusyAndQueueIsFull_TooManyRequestsExceptionShouldBeThrown() throws Exception {
+
+        // given
+        var isRunning = new CountDownLatch(1);
+        var canFinish = new CountDownLatch(1);
+
+        CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> executor.execute(() -> {
+            isRunning.countDown();
+            try {
+                return canFinish.await(WAIT.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }));
+        assertTrue(isRunning.await(WAIT.toMillis(), TimeUnit.MILLISECONDS));
+
+        CompletableFuture<Integer> queued = CompletableFuture.supplyAsync(() -> executor.execute(() -> 1));
+        long deadline = System.nanoTime() + WAIT.toNanos();
+        while (meterRegistry.get("executor.queued").gauge().value() < 1 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+
+        // then                                          // when
+        assertThrows(TooManyRequestsException.class, () -> executor.execute(() -> 2));
+        assertEquals(1, meterRegistry.counter(PasswordHashingExecutor.REJECTED_COUNTER_NAME).count());
+
+        canFinish.countDown();
+        assertTrue(running.get(WAIT.toMillis(), TimeUnit.MILLISECONDS));
+        assertEquals(1, queued.get(WAIT.toMillis(), TimeUnit.MILLISECONDS));
+    }
+
+}
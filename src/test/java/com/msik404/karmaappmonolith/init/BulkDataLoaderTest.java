@@ -0,0 +1,224 @@
+package com.msik404.karmaappmonolith.init;
+
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import com.msik404.karmaappmonolith.TestingDataCreator;
+import com.msik404.karmaappmonolith.exception.constraint.ConstraintExceptionsHandler;
+import com.msik404.karmaappmonolith.exception.constraint.strategy.ConstraintViolationExceptionErrorMessageExtractionStrategy;
+import com.msik404.karmaappmonolith.exception.constraint.strategy.RoundBraceErrorMassageParseStrategy;
+import com.msik404.karmaappmonolith.karma.KarmaScoreRepository;
+import com.msik404.karmaappmonolith.post.repository.PostRepository;
+import com.msik404.karmaappmonolith.user.Role;
+import com.msik404.karmaappmonolith.user.User;
+import com.msik404.karmaappmonolith.user.repository.UserCriteriaUpdater;
+import com.msik404.karmaappmonolith.user.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.support.TestPropertySourceUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(initializers = BulkDataLoaderTest.DataSourceInitializer.class)
+@Import({
+        BCryptPasswordEncoder.class,
+        UserCriteriaUpdater.class,
+        ConstraintExceptionsHandler.class,
+        ConstraintViolationExceptionErrorMessageExtractionStrategy.class,
+        RoundBraceErrorMassageParseStrategy.class,
+})
+class BulkDataLoaderTest {
+
+    private static final int HASHING_THREADS = 2;
+
+    private static final BulkDataSpec SPEC = new BulkDataSpec(20, 1, 3, 20, 1, 0.5, 404);
+
+    private final TestingDataCreator dataCreator;
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final KarmaScoreRepository karmaScoreRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BCryptPasswordEncoder bCryptPasswordEncoder;
+
+    private final BulkDataLoader bulkDataLoader;
+
+    private static final PostgreSQLContainer<?> POSTGRESQL_CONTAINER =
+            new PostgreSQLContainer<>("postgres:alpine");
+
+    static {
+        POSTGRESQL_CONTAINER.start();
+    }
+
+    public static class DataSourceInitializer
+            implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+        @Override
+        public void initialize(@NonNull ConfigurableApplicationContext applicationContext) {
+            TestPropertySourceUtils.addInlinedPropertiesToEnvironment(
+                    applicationContext,
+                    "spring.datasource.url=" + POSTGRESQL_CONTAINER.getJdbcUrl(),
+                    "spring.datasource.username=" + POSTGRESQL_CONTAINER.getUsername(),
+                    "spring.datasource.password=" + POSTGRESQL_CONTAINER.getPassword()
+            );
+        }
+    }
+
+    @Autowired
+    BulkDataLoaderTest(
+            UserRepository userRepository,
+            PostRepository postRepository,
+            KarmaScoreRepository karmaScoreRepository,
+            DataSource dataSource,
+            JdbcTemplate jdbcTemplate,
+            BCryptPasswordEncoder bCryptPasswordEncoder) {
+
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.karmaScoreRepository = karmaScoreRepository;
+
+        this.dataCreator = new TestingDataCreator(userRepository, postRepository, karmaScoreRepository);
+
+        this.jdbcTemplate = jdbcTemplate;
+        this.bCryptPasswordEncoder = bCryptPasswordEncoder;
+
+        this.bulkDataLoader = new BulkDataLoader(dataSource, bCryptPasswordEncoder, HASHING_THREADS);
+    }
+
+    @BeforeEach
+    void setUp() {
+        dataCreator.prepareData();
+    }
+
+    @AfterEach
+    void tearDown() {
+
+        karmaScoreRepository.deleteAllInBatch();
+        postRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void load_SmallSpec_AmountsOfInsertedRowsMatchResult() {
+
+        // given
+        long usersBefore = userRepository.count();
+        long postsBefore = postRepository.count();
+        long votesBefore = karmaScoreRepository.count();
+
+        // when
+        BulkLoadResult result = bulkDataLoader.load(SPEC);
+
+        // then
+        assertEquals(SPEC.users(), result.users());
+        assertTrue(result.posts() >= (long) SPEC.users() * SPEC.minPostsPerUser());
+        assertTrue(result.posts() <= (long) SPEC.users() * SPEC.maxPostsPerUser());
+        assertTrue(result.votes() > 0);
+
+        assertEquals(usersBefore + result.users(), userRepository.count());
+        assertEquals(postsBefore + result.posts(), postRepository.count());
+        assertEquals(votesBefore + result.votes(), karmaScoreRepository.count());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void load_SmallSpec_KarmaScoreOfEveryPostMatchesItsKarmaScores() {
+
+        // when
+        bulkDataLoader.load(SPEC);
+
+        // then
+        Long inconsistentPosts = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM posts p
+                WHERE p.karma_score <> (
+                    SELECT COALESCE(SUM(CASE WHEN k.is_positive THEN 1 ELSE -1 END), 0)
+                    FROM karma_scores k
+                    WHERE k.post_id = p.id
+                )
+                """, Long.class);
+
+        assertEquals(0L, inconsistentPosts);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void load_SameSpecTwice_SameDataIsGenerated() {
+
+        // given
+        String scoresQuery = "SELECT karma_score FROM posts WHERE id > ? ORDER BY id";
+
+        Long maxIdBefore = jdbcTemplate.queryForObject("SELECT MAX(id) FROM posts", Long.class);
+        bulkDataLoader.load(SPEC);
+        List<Long> firstScores = jdbcTemplate.queryForList(scoresQuery, Long.class, maxIdBefore);
+
+        Long maxIdAfterFirstLoad = jdbcTemplate.queryForObject("SELECT MAX(id) FROM posts", Long.class);
+
+        // when
+        bulkDataLoader.load(SPEC);
+
+        // then
+        List<Long> secondScores = jdbcTemplate.queryForList(scoresQuery, Long.class, maxIdAfterFirstLoad);
+
+        assertEquals(firstScores, secondScores);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void load_LoadedUser_PasswordIsHashedUsername() {
+
+        // when
+        bulkDataLoader.load(SPEC);
+
+        // then
+        Long loadedUserId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM users", Long.class);
+        assertNotNull(loadedUserId);
+
+        User loadedUser = userRepository.findById(loadedUserId).orElseThrow();
+        String username = BulkDataLoader.getUsername(loadedUserId);
+
+        assertEquals(username, loadedUser.getUsername());
+        assertEquals(Role.USER, loadedUser.getRole());
+        assertTrue(bCryptPasswordEncoder.matches(username, loadedUser.getPassword()));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void load_UserIsSavedAfterLoad_IdDoesNotCollideWithLoadedUsers() {
+
+        // given
+        bulkDataLoader.load(SPEC);
+        User user = TestingDataCreator.getUserForTesting(100_000, Role.USER);
+
+        // when
+        User savedUser = userRepository.save(user);
+
+        // then
+        Long usersWithSavedId = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM users WHERE id = ?", Long.class, savedUser.getId());
+
+        assertEquals(1L, usersWithSavedId);
+        assertEquals(user.getUsername(), userRepository.findById(savedUser.getId()).orElseThrow().getUsername());
+    }
+
+}
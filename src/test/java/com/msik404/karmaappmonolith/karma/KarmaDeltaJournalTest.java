@@ -0,0 +1,57 @@
+package com.msik404.karmaappmonolith.karma;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class KarmaDeltaJournalTest {
+
+    @Mock
+    private PostKarmaDeltaRepository repository;
+
+    @InjectMocks
+    private KarmaDeltaJournal journal;
+
+    @Test
+    void flush_WriteBehindModeAndJournalIsDrained_JournalShouldStillBeApplied() {
+
+        // given
+        ReflectionTestUtils.setField(journal, "karmaWriteMode", KarmaWriteMode.WRITE_BEHIND);
+
+        when(repository.applyAll()).thenReturn(0, 2);
+
+        // when
+        journal.flush();
+        int updatedPosts = journal.flush();
+
+        // then
+        assertEquals(2, updatedPosts);
+        verify(repository, times(2)).applyAll();
+    }
+
+    @Test
+    void flush_SyncModeAndDeltasAreLeftByPreviousMode_JournalShouldBeAppliedUntilItIsDrained() {
+
+        // given
+        ReflectionTestUtils.setField(journal, "karmaWriteMode", KarmaWriteMode.SYNC);
+
+        when(repository.applyAll()).thenReturn(3, 0);
+
+        // when
+        int updatedPosts = journal.flush();
+        journal.flush();
+        journal.flush();
+
+        // then
+        assertEquals(3, updatedPosts);
+        verify(repository, times(2)).applyAll();
+    }
+
+}
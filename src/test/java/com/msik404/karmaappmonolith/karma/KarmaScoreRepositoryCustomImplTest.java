@@ -0,0 +1,377 @@
+package com.msik404.karmaappmonolith.karma;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.msik404.karmaappmonolith.TestingDataCreator;
+import com.msik404.karmaappmonolith.exception.constraint.ConstraintExceptionsHandler;
+import com.msik404.karmaappmonolith.exception.constraint.strategy.ConstraintViolationExceptionErrorMessageExtractionStrategy;
+import com.msik404.karmaappmonolith.exception.constraint.strategy.RoundBraceErrorMassageParseStrategy;
+import com.msik404.karmaappmonolith.post.Post;
+import com.msik404.karmaappmonolith.post.Visibility;
+import com.msik404.karmaappmonolith.post.repository.PostRepository;
+import com.msik404.karmaappmonolith.user.User;
+import com.msik404.karmaappmonolith.user.repository.UserCriteriaUpdater;
+import com.msik404.karmaappmonolith.user.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.lang.NonNull;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.support.TestPropertySourceUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(initializers = KarmaScoreRepositoryCustomImplTest.DataSourceInitializer.class)
+@Import({
+        BCryptPasswordEncoder.class,
+        UserCriteriaUpdater.class,
+        ConstraintExceptionsHandler.class,
+        ConstraintViolationExceptionErrorMessageExtractionStrategy.class,
+        RoundBraceErrorMassageParseStrategy.class,
+})
+class KarmaScoreRepositoryCustomImplTest {
+
+    private final TestingDataCreator dataCreator;
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final KarmaScoreRepository karmaScoreRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private static final PostgreSQLContainer<?> POSTGRESQL_CONTAINER =
+            new PostgreSQLContainer<>("postgres:alpine");
+
+    static {
+        POSTGRESQL_CONTAINER.start();
+    }
+
+    public static class DataSourceInitializer
+            implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+        @Override
+        public void initialize(@NonNull ConfigurableApplicationContext applicationContext) {
+            TestPropertySourceUtils.addInlinedPropertiesToEnvironment(
+                    applicationContext,
+                    "spring.datasource.url=" + POSTGRESQL_CONTAINER.getJdbcUrl(),
+                    "spring.datasource.username=" + POSTGRESQL_CONTAINER.getUsername(),
+                    "spring.datasource.password=" + POSTGRESQL_CONTAINER.getPassword()
+            );
+        }
+    }
+
+    @Autowired
+    KarmaScoreRepositoryCustomImplTest(
+            UserRepository userRepository,
+            PostRepository postRepository,
+            KarmaScoreRepository karmaScoreRepository,
+            TransactionTemplate transactionTemplate) {
+
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.karmaScoreRepository = karmaScoreRepository;
+
+        this.dataCreator = new TestingDataCreator(userRepository, postRepository, karmaScoreRepository);
+
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @BeforeEach
+    void setUp() {
+        dataCreator.prepareData();
+    }
+
+    @AfterEach
+    void tearDown() {
+
+        karmaScoreRepository.deleteAll();
+        postRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @NonNull
+    private Post getActivePostNotRatedByEveryUser() {
+
+        List<Post> topPosts = TestingDataCreator.getTopPosts(
+                postRepository.findAll(), new HashSet<>(List.of(Visibility.ACTIVE)));
+
+        return topPosts.stream()
+                .filter(post -> findUserWhoDidNotRate(post).isPresent())
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @NonNull
+    private Optional<User> findUserWhoDidNotRate(@NonNull Post post) {
+
+        return userRepository.findAll()
+                .stream()
+                .filter(user -> !karmaScoreRepository.existsById(new KarmaKey(user.getId(), post.getId())))
+                .findFirst();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void upsertRating_PostWasNotRatedByUserAndRatingIsPositive_RatingIsInsertedAndScoreIsIncreasedByOne() {
+
+        // given
+        Post post = getActivePostNotRatedByEveryUser();
+        User user = findUserWhoDidNotRate(post).orElseThrow();
+
+        // when
+        KarmaScoreChange change = transactionTemplate.execute(status ->
+                karmaScoreRepository.upsertRating(user.getId(), post.getId(), true, true));
+
+        // then
+        assertEquals(new KarmaScoreChange(true, 1L), change);
+
+        Optional<KarmaScore> optionalKarmaScore = karmaScoreRepository.findById(new KarmaKey(user.getId(), post.getId()));
+        assertTrue(optionalKarmaScore.isPresent());
+        assertTrue(optionalKarmaScore.get().isPositive());
+
+        assertEquals(post.getKarmaScore() + 1, postRepository.findById(post.getId()).orElseThrow().getKarmaScore());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void upsertRating_PostWasRatedPositivelyAndRatingIsNegative_RatingIsFlippedAndScoreIsDecreasedByTwo() {
+
+        // given
+        Post post = getActivePostNotRatedByEveryUser();
+        User user = findUserWhoDidNotRate(post).orElseThrow();
+        transactionTemplate.execute(status ->
+                karmaScoreRepository.upsertRating(user.getId(), post.getId(), true, true));
+
+        // when
+        KarmaScoreChange change = transactionTemplate.execute(status ->
+                karmaScoreRepository.upsertRating(user.getId(), post.getId(), false, true));
+
+        // then
+        assertEquals(new KarmaScoreChange(true, -2L), change);
+
+        Optional<KarmaScore> optionalKarmaScore = karmaScoreRepository.findById(new KarmaKey(user.getId(), post.getId()));
+        assertTrue(optionalKarmaScore.isPresent());
+        assertFalse(optionalKarmaScore.get().isPositive());
+
+        assertEquals(post.getKarmaScore() - 1, postRepository.findById(post.getId()).orElseThrow().getKarmaScore());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void upsertRating_SameRatingIsRepeated_DeltaIsZeroAndScoreIsNotChanged() {
+
+        // given
+        Post post = getActivePostNotRatedByEveryUser();
+        User user = findUserWhoDidNotRate(post).orElseThrow();
+        transactionTemplate.execute(status ->
+                karmaScoreRepository.upsertRating(user.getId(), post.getId(), true, true));
+
+        // when
+        KarmaScoreChange change = transactionTemplate.execute(status ->
+                karmaScoreRepository.upsertRating(user.getId(), post.getId(), true, true));
+
+        // then
+        assertEquals(new KarmaScoreChange(true, 0L), change);
+        assertEquals(post.getKarmaScore() + 1, postRepository.findById(post.getId()).orElseThrow().getKarmaScore());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void upsertRating_ShouldNotUpdatePost_RatingIsInsertedAndScoreIsNotChanged() {
+
+        // given
+        Post post = getActivePostNotRatedByEveryUser();
+        User user = findUserWhoDidNotRate(post).orElseThrow();
+
+        // when
+        KarmaScoreChange change = transactionTemplate.execute(status ->
+                karmaScoreRepository.upsertRating(user.getId(), post.getId(), false, false));
+
+        // then
+        assertEquals(new KarmaScoreChange(true, -1L), change);
+        assertTrue(karmaScoreRepository.existsById(new KarmaKey(user.getId(), post.getId())));
+        assertEquals(post.getKarmaScore(), postRepository.findById(post.getId()).orElseThrow().getKarmaScore());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void upsertRating_PostDoesNotExist_PostIsNotFoundAndNothingIsInserted() {
+
+        // given
+        User user = userRepository.findAll().get(0);
+        long nonExistentPostId = postRepository.findAll()
+                .stream()
+                .mapToLong(Post::getId)
+                .max()
+                .orElseThrow() + 1;
+
+        // when
+        KarmaScoreChange change = transactionTemplate.execute(status ->
+                karmaScoreRepository.upsertRating(user.getId(), nonExistentPostId, true, true));
+
+        // then
+        assertEquals(new KarmaScoreChange(false, 0L), change);
+        assertFalse(karmaScoreRepository.existsById(new KarmaKey(user.getId(), nonExistentPostId)));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void deleteRating_PostWasRatedNegatively_RatingIsDeletedAndScoreIsIncreasedByOne() {
+
+        // given
+        Post post = getActivePostNotRatedByEveryUser();
+        User user = findUserWhoDidNotRate(post).orElseThrow();
+        transactionTemplate.execute(status ->
+                karmaScoreRepository.upsertRating(user.getId(), post.getId(), false, true));
+
+        // when
+        Long delta = transactionTemplate.execute(status ->
+                karmaScoreRepository.deleteRating(user.getId(), post.getId(), true));
+
+        // then
+        assertEquals(1L, delta);
+        assertFalse(karmaScoreRepository.existsById(new KarmaKey(user.getId(), post.getId())));
+        assertEquals(post.getKarmaScore(), postRepository.findById(post.getId()).orElseThrow().getKarmaScore());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void deleteRating_PostWasNotRated_DeltaIsZero() {
+
+        // given
+        Post post = getActivePostNotRatedByEveryUser();
+        User user = findUserWhoDidNotRate(post).orElseThrow();
+
+        // when
+        Long delta = transactionTemplate.execute(status ->
+                karmaScoreRepository.deleteRating(user.getId(), post.getId(), true));
+
+        // then
+        assertEquals(0L, delta);
+        assertEquals(post.getKarmaScore(), postRepository.findById(post.getId()).orElseThrow().getKarmaScore());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void batchUpdateRatings_OneRatingIsUpsertedAndOneIsDeleted_RatingsOfUserAreChangedAndScoresAreNotChanged() {
+
+        // given
+        Post ratedPost = getActivePostNotRatedByEveryUser();
+        User user = findUserWhoDidNotRate(ratedPost).orElseThrow();
+        transactionTemplate.execute(status ->
+                karmaScoreRepository.upsertRating(user.getId(), ratedPost.getId(), true, false));
+
+        Post unratedPost = postRepository.findAll()
+                .stream()
+                .filter(post -> !karmaScoreRepository.existsById(new KarmaKey(user.getId(), post.getId())))
+                .findFirst()
+                .orElseThrow();
+
+        // when
+        Map<Long, Long> deltas = transactionTemplate.execute(status -> karmaScoreRepository.batchUpdateRatings(
+                user.getId(),
+                Map.of(unratedPost.getId(), false),
+                List.of(ratedPost.getId())
+        ));
+
+        // then
+        assertEquals(Map.of(unratedPost.getId(), -1L, ratedPost.getId(), -1L), deltas);
+
+        Map<Long, Boolean> ratings = karmaScoreRepository.findRatingsOfUser(
+                user.getId(), List.of(ratedPost.getId(), unratedPost.getId()));
+
+        assertEquals(Map.of(unratedPost.getId(), false), ratings);
+        assertEquals(ratedPost.getKarmaScore(), postRepository.findById(ratedPost.getId()).orElseThrow().getKarmaScore());
+        assertEquals(unratedPost.getKarmaScore(), postRepository.findById(unratedPost.getId()).orElseThrow().getKarmaScore());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void batchUpdateRatings_RatingWasChangedAfterItWasRead_DeltasAreComputedFromWrittenRows() {
+
+        // given
+        Post flippedPost = getActivePostNotRatedByEveryUser();
+        User user = findUserWhoDidNotRate(flippedPost).orElseThrow();
+
+        Post unchangedPost = postRepository.findAll()
+                .stream()
+                .filter(post -> !post.getId().equals(flippedPost.getId()))
+                .filter(post -> !karmaScoreRepository.existsById(new KarmaKey(user.getId(), post.getId())))
+                .findFirst()
+                .orElseThrow();
+
+        // concurrent requests of the same user, committed after client has seen post without ratings
+        transactionTemplate.execute(status ->
+                karmaScoreRepository.upsertRating(user.getId(), flippedPost.getId(), true, false));
+        transactionTemplate.execute(status ->
+                karmaScoreRepository.upsertRating(user.getId(), unchangedPost.getId(), false, false));
+
+        // when
+        Map<Long, Long> deltas = transactionTemplate.execute(status -> karmaScoreRepository.batchUpdateRatings(
+                user.getId(),
+                Map.of(flippedPost.getId(), false, unchangedPost.getId(), false),
+                List.of()
+        ));
+
+        // then
+        assertEquals(Map.of(flippedPost.getId(), -2L), deltas);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void batchUpdateRatings_DeletedRatingsDoNotExist_NoDeltasAreReturned() {
+
+        // given
+        Post post = getActivePostNotRatedByEveryUser();
+        User user = findUserWhoDidNotRate(post).orElseThrow();
+
+        // when
+        Map<Long, Long> deltas = transactionTemplate.execute(status ->
+                karmaScoreRepository.batchUpdateRatings(user.getId(), Map.of(), List.of(post.getId())));
+
+        // then
+        assertEquals(Map.of(), deltas);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void findRatingsOfUser_UserRatedSomeOfPosts_OnlyRatedPostsAreReturned() {
+
+        // given
+        User user = userRepository.findAll().get(0);
+        List<KarmaScore> karmaScoresOfUser = karmaScoreRepository.findAll()
+                .stream()
+                .filter(karmaScore -> karmaScore.getId().getUserId().equals(user.getId()))
+                .toList();
+
+        List<Long> postIds = postRepository.findAll().stream().map(Post::getId).toList();
+
+        // when
+        Map<Long, Boolean> ratings = karmaScoreRepository.findRatingsOfUser(user.getId(), postIds);
+
+        // then
+        assertEquals(karmaScoresOfUser.size(), ratings.size());
+        for (KarmaScore karmaScore : karmaScoresOfUser) {
+            assertEquals(karmaScore.isPositive(), ratings.get(karmaScore.getId().getPostId()));
+        }
+    }
+
+}
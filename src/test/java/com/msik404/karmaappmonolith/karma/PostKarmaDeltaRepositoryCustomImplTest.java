@@ -0,0 +1,312 @@
+package com.msik404.karmaappmonolith.karma;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.msik404.karmaappmonolith.TestingDataCreator;
+import com.msik404.karmaappmonolith.exception.constraint.ConstraintExceptionsHandler;
+import com.msik404.karmaappmonolith.exception.constraint.strategy.ConstraintViolationExceptionErrorMessageExtractionStrategy;
+import com.msik404.karmaappmonolith.exception.constraint.strategy.RoundBraceErrorMassageParseStrategy;
+import com.msik404.karmaappmonolith.post.Post;
+import com.msik404.karmaappmonolith.post.Visibility;
+import com.msik404.karmaappmonolith.post.dto.PostDto;
+import com.msik404.karmaappmonolith.post.dto.PostWithImageDataDto;
+import com.msik404.karmaappmonolith.post.repository.PostRepository;
+import com.msik404.karmaappmonolith.user.repository.UserCriteriaUpdater;
+import com.msik404.karmaappmonolith.user.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.lang.NonNull;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.support.TestPropertySourceUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(initializers = PostKarmaDeltaRepositoryCustomImplTest.DataSourceInitializer.class)
+@Import({
+        BCryptPasswordEncoder.class,
+        UserCriteriaUpdater.class,
+        ConstraintExceptionsHandler.class,
+        ConstraintViolationExceptionErrorMessageExtractionStrategy.class,
+        RoundBraceErrorMassageParseStrategy.class,
+})
+class PostKarmaDeltaRepositoryCustomImplTest {
+
+    private final TestingDataCreator dataCreator;
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final KarmaScoreRepository karmaScoreRepository;
+    private final PostKarmaDeltaRepository deltaRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private static final PostgreSQLContainer<?> POSTGRESQL_CONTAINER =
+            new PostgreSQLContainer<>("postgres:alpine");
+
+    static {
+        POSTGRESQL_CONTAINER.start();
+    }
+
+    public static class DataSourceInitializer
+            implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+        @Override
+        public void initialize(@NonNull ConfigurableApplicationContext applicationContext) {
+            TestPropertySourceUtils.addInlinedPropertiesToEnvironment(
+                    applicationContext,
+                    "spring.datasource.url=" + POSTGRESQL_CONTAINER.getJdbcUrl(),
+                    "spring.datasource.username=" + POSTGRESQL_CONTAINER.getUsername(),
+                    "spring.datasource.password=" + POSTGRESQL_CONTAINER.getPassword()
+            );
+        }
+    }
+
+    @Autowired
+    PostKarmaDeltaRepositoryCustomImplTest(
+            UserRepository userRepository,
+            PostRepository postRepository,
+            KarmaScoreRepository karmaScoreRepository,
+            PostKarmaDeltaRepository deltaRepository,
+            TransactionTemplate transactionTemplate) {
+
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.karmaScoreRepository = karmaScoreRepository;
+        this.deltaRepository = deltaRepository;
+
+        this.dataCreator = new TestingDataCreator(userRepository, postRepository, karmaScoreRepository);
+
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @BeforeEach
+    void setUp() {
+        dataCreator.prepareData();
+    }
+
+    @AfterEach
+    void tearDown() {
+
+        deltaRepository.deleteAll();
+        karmaScoreRepository.deleteAll();
+        postRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @NonNull
+    private Post getTopActivePost() {
+
+        List<Post> topPosts = TestingDataCreator.getTopPosts(
+                postRepository.findAll(), new HashSet<>(List.of(Visibility.ACTIVE)));
+
+        return topPosts.get(0);
+    }
+
+    // Hidden posts with zero karma score have no votes in testing data.
+    @NonNull
+    private Post getPostWithoutVotes() {
+
+        return postRepository.findAll()
+                .stream()
+                .filter(post -> post.getVisibility().equals(Visibility.HIDDEN) && post.getKarmaScore() == 0)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private long getKarmaScore(long postId) {
+        return postRepository.findById(postId).orElseThrow().getKarmaScore();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void appendAll_DeltasOfTheSamePostAreAppended_PostIsNotUpdatedUntilDeltasAreApplied() {
+
+        // given
+        Post post = getTopActivePost();
+        Post otherPost = getPostWithoutVotes();
+
+        // when
+        transactionTemplate.execute(status -> {
+            deltaRepository.appendAll(Map.of(post.getId(), 1L, otherPost.getId(), -1L));
+            return null;
+        });
+        transactionTemplate.execute(status -> {
+            deltaRepository.append(post.getId(), 2L);
+            return null;
+        });
+
+        // then
+        assertEquals(3, deltaRepository.count());
+        assertEquals(post.getKarmaScore(), getKarmaScore(post.getId()));
+        assertEquals(otherPost.getKarmaScore(), getKarmaScore(otherPost.getId()));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void applyAll_DeltasArePending_DeltasAreSummedIntoPostKarmaScoreAndRemoved() {
+
+        // given
+        Post post = getTopActivePost();
+        transactionTemplate.execute(status -> {
+            deltaRepository.append(post.getId(), 1L);
+            deltaRepository.append(post.getId(), 2L);
+            deltaRepository.append(post.getId(), -1L);
+            return null;
+        });
+
+        // when
+        Integer updatedPosts = transactionTemplate.execute(status -> deltaRepository.applyAll());
+
+        // then
+        assertEquals(1, updatedPosts);
+        assertEquals(0, deltaRepository.count());
+        assertEquals(post.getKarmaScore() + 2, getKarmaScore(post.getId()));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void applyAll_AppendingTransactionWasRolledBack_DeltaIsNotApplied() {
+
+        // given
+        Post post = getTopActivePost();
+        transactionTemplate.execute(status -> {
+            deltaRepository.append(post.getId(), 1L);
+            status.setRollbackOnly();
+            return null;
+        });
+
+        // when
+        Integer updatedPosts = transactionTemplate.execute(status -> deltaRepository.applyAll());
+
+        // then
+        assertEquals(0, updatedPosts);
+        assertEquals(post.getKarmaScore(), getKarmaScore(post.getId()));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void findPostDtoWithImageDataById_DeltasOfPostArePending_KarmaScoreIncludesDeltas() {
+
+        // given
+        Post post = getTopActivePost();
+        transactionTemplate.execute(status -> {
+            deltaRepository.append(post.getId(), 2L);
+            deltaRepository.append(post.getId(), 3L);
+            return null;
+        });
+
+        // when
+        Optional<PostWithImageDataDto> optionalPost = transactionTemplate.execute(status ->
+                postRepository.findPostDtoWithImageDataById(post.getId()));
+
+        // then
+        assertTrue(optionalPost.isPresent());
+        assertEquals(post.getKarmaScore() + 5, optionalPost.get().postDto().getKarmaScore());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void findPostDtoWithImageDataByIdAndUserId_DeltasOfPostArePending_KarmaScoreIncludesDeltas() {
+
+        // given
+        Post post = getTopActivePost();
+        transactionTemplate.execute(status -> {
+            deltaRepository.append(post.getId(), 2L);
+            deltaRepository.append(post.getId(), 3L);
+            return null;
+        });
+
+        // when
+        Optional<PostWithImageDataDto> optionalPost = transactionTemplate.execute(status ->
+                postRepository.findPostDtoWithImageDataByIdAndUserId(post.getId(), post.getUser().getId()));
+
+        // then
+        assertTrue(optionalPost.isPresent());
+        assertEquals(post.getKarmaScore() + 5, optionalPost.get().postDto().getKarmaScore());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void findTopNPosts_DeltasOfActivePostArePending_KarmaScoreIncludesDeltas() {
+
+        // given
+        Post post = getTopActivePost();
+        transactionTemplate.execute(status -> {
+            deltaRepository.append(post.getId(), 2L);
+            deltaRepository.append(post.getId(), 3L);
+            return null;
+        });
+
+        // when
+        List<PostDto> topPosts = transactionTemplate.execute(status ->
+                postRepository.findTopNPosts(1, List.of(Visibility.ACTIVE)));
+
+        // then
+        assertNotNull(topPosts);
+        assertEquals(1, topPosts.size());
+        assertEquals(post.getId(), topPosts.get(0).getId());
+        assertEquals(post.getKarmaScore() + 5, topPosts.get(0).getKarmaScore());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void recomputeKarmaScores_KarmaScoreDrifted_KarmaScoreIsCorrected() {
+
+        // given
+        transactionTemplate.execute(status -> postRepository.recomputeKarmaScores());
+        Post post = getPostWithoutVotes();
+        transactionTemplate.execute(status -> postRepository.addKarmaScoreToPost(post.getId(), 7L));
+
+        // when
+        Integer correctedPosts = transactionTemplate.execute(status -> postRepository.recomputeKarmaScores());
+
+        // then
+        assertEquals(1, correctedPosts);
+        assertEquals(0L, getKarmaScore(post.getId()));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void recomputeKarmaScores_VoteDeltaIsPending_DeltaIsNotCountedTwice() {
+
+        // given
+        transactionTemplate.execute(status -> postRepository.recomputeKarmaScores());
+        Post post = getPostWithoutVotes();
+        long userId = userRepository.findAll().get(0).getId();
+
+        // vote as persisted in WRITE_BEHIND mode, posts.karma_score is not updated
+        transactionTemplate.execute(status -> {
+            karmaScoreRepository.upsertRating(userId, post.getId(), true, false);
+            deltaRepository.append(post.getId(), 1L);
+            return null;
+        });
+
+        // when
+        Integer correctedPosts = transactionTemplate.execute(status -> postRepository.recomputeKarmaScores());
+        transactionTemplate.execute(status -> deltaRepository.applyAll());
+
+        // then
+        assertEquals(0, correctedPosts);
+        assertEquals(1L, getKarmaScore(post.getId()));
+    }
+
+}
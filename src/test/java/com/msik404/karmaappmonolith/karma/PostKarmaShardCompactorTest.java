@@ -0,0 +1,57 @@
+package com.msik404.karmaappmonolith.karma;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PostKarmaShardCompactorTest {
+
+    @Mock
+    private PostKarmaShardRepository repository;
+
+    @InjectMocks
+    private PostKarmaShardCompactor compactor;
+
+    @Test
+    void compact_ShardedModeAndShardsAreCompacted_ShardsShouldStillBeCompacted() {
+
+        // given
+        ReflectionTestUtils.setField(compactor, "karmaWriteMode", KarmaWriteMode.SHARDED);
+
+        when(repository.compact()).thenReturn(0, 2);
+
+        // when
+        compactor.compact();
+        int updatedPosts = compactor.compact();
+
+        // then
+        assertEquals(2, updatedPosts);
+        verify(repository, times(2)).compact();
+    }
+
+    @Test
+    void compact_SyncModeAndShardsAreLeftByPreviousMode_ShardsShouldBeCompactedUntilTheyAreDrained() {
+
+        // given
+        ReflectionTestUtils.setField(compactor, "karmaWriteMode", KarmaWriteMode.SYNC);
+
+        when(repository.compact()).thenReturn(3, 0);
+
+        // when
+        int updatedPosts = compactor.compact();
+        compactor.compact();
+        compactor.compact();
+
+        // then
+        assertEquals(3, updatedPosts);
+        verify(repository, times(2)).compact();
+    }
+
+}
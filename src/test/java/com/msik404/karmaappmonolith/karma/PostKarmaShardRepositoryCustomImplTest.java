@@ -0,0 +1,246 @@
+package com.msik404.karmaappmonolith.karma;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+
+import com.msik404.karmaappmonolith.TestingDataCreator;
+import com.msik404.karmaappmonolith.exception.constraint.ConstraintExceptionsHandler;
+import com.msik404.karmaappmonolith.exception.constraint.strategy.ConstraintViolationExceptionErrorMessageExtractionStrategy;
+import com.msik404.karmaappmonolith.exception.constraint.strategy.RoundBraceErrorMassageParseStrategy;
+import com.msik404.karmaappmonolith.post.Post;
+import com.msik404.karmaappmonolith.post.Visibility;
+import com.msik404.karmaappmonolith.post.cache.PostRedisCache;
+import com.msik404.karmaappmonolith.post.cache.PostRedisCacheRefresher;
+import com.msik404.karmaappmonolith.post.dto.PostDto;
+import com.msik404.karmaappmonolith.post.dto.PostWithImageDataDto;
+import com.msik404.karmaappmonolith.post.repository.PostRepository;
+import com.msik404.karmaappmonolith.user.repository.UserCriteriaUpdater;
+import com.msik404.karmaappmonolith.user.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.lang.NonNull;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.support.TestPropertySourceUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@Testcontainers
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(initializers = PostKarmaShardRepositoryCustomImplTest.DataSourceInitializer.class)
+@Import({
+        BCryptPasswordEncoder.class,
+        UserCriteriaUpdater.class,
+        ConstraintExceptionsHandler.class,
+        ConstraintViolationExceptionErrorMessageExtractionStrategy.class,
+        RoundBraceErrorMassageParseStrategy.class,
+})
+class PostKarmaShardRepositoryCustomImplTest {
+
+    private final TestingDataCreator dataCreator;
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final KarmaScoreRepository karmaScoreRepository;
+    private final PostKarmaShardRepository shardRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private static final PostgreSQLContainer<?> POSTGRESQL_CONTAINER =
+            new PostgreSQLContainer<>("postgres:alpine");
+
+    static {
+        POSTGRESQL_CONTAINER.start();
+    }
+
+    public static class DataSourceInitializer
+            implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+        @Override
+        public void initialize(@NonNull ConfigurableApplicationContext applicationContext) {
+            TestPropertySourceUtils.addInlinedPropertiesToEnvironment(
+                    applicationContext,
+                    "spring.datasource.url=" + POSTGRESQL_CONTAINER.getJdbcUrl(),
+                    "spring.datasource.username=" + POSTGRESQL_CONTAINER.getUsername(),
+                    "spring.datasource.password=" + POSTGRESQL_CONTAINER.getPassword()
+            );
+        }
+    }
+
+    @Autowired
+    PostKarmaShardRepositoryCustomImplTest(
+            UserRepository userRepository,
+            PostRepository postRepository,
+            KarmaScoreRepository karmaScoreRepository,
+            PostKarmaShardRepository shardRepository,
+            TransactionTemplate transactionTemplate) {
+
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.karmaScoreRepository = karmaScoreRepository;
+        this.shardRepository = shardRepository;
+
+        this.dataCreator = new TestingDataCreator(userRepository, postRepository, karmaScoreRepository);
+
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @BeforeEach
+    void setUp() {
+        dataCreator.prepareData();
+    }
+
+    @AfterEach
+    void tearDown() {
+
+        shardRepository.deleteAll();
+        karmaScoreRepository.deleteAll();
+        postRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @NonNull
+    private Post getTopActivePost() {
+
+        List<Post> topPosts = TestingDataCreator.getTopPosts(
+                postRepository.findAll(), new HashSet<>(List.of(Visibility.ACTIVE)));
+
+        return topPosts.get(0);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void addToShard_SameSlotIsUsedTwice_DeltasAreSummedInSingleShardAndPostIsNotUpdated() {
+
+        // given
+        Post post = getTopActivePost();
+        int slot = 3;
+
+        // when
+        transactionTemplate.execute(status -> shardRepository.addToShard(post.getId(), slot, 1));
+        transactionTemplate.execute(status -> shardRepository.addToShard(post.getId(), slot, 2));
+
+        // then
+        List<PostKarmaShard> shards = shardRepository.findAll();
+        assertEquals(1, shards.size());
+        assertEquals(new PostKarmaShardKey(post.getId(), slot), shards.get(0).getId());
+        assertEquals(3L, shards.get(0).getDelta());
+
+        assertEquals(post.getKarmaScore(), postRepository.findById(post.getId()).orElseThrow().getKarmaScore());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void compact_ShardsOfPostExist_ShardsAreFoldedIntoPostKarmaScoreAndRemoved() {
+
+        // given
+        Post post = getTopActivePost();
+        transactionTemplate.execute(status -> shardRepository.addToShard(post.getId(), 0, 1));
+        transactionTemplate.execute(status -> shardRepository.addToShard(post.getId(), 1, 2));
+        transactionTemplate.execute(status -> shardRepository.addToShard(post.getId(), 2, -1));
+
+        // when
+        Integer updatedPosts = transactionTemplate.execute(status -> shardRepository.compact());
+
+        // then
+        assertEquals(1, updatedPosts);
+        assertEquals(0, shardRepository.count());
+        assertEquals(post.getKarmaScore() + 2, postRepository.findById(post.getId()).orElseThrow().getKarmaScore());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void findPostDtoWithImageDataById_ShardsOfPostExist_KarmaScoreIncludesShards() {
+
+        // given
+        Post post = getTopActivePost();
+        transactionTemplate.execute(status -> shardRepository.addToShard(post.getId(), 0, 2));
+        transactionTemplate.execute(status -> shardRepository.addToShard(post.getId(), 5, 3));
+
+        // when
+        Optional<PostWithImageDataDto> optionalPost = transactionTemplate.execute(status ->
+                postRepository.findPostDtoWithImageDataById(post.getId()));
+
+        // then
+        assertTrue(optionalPost.isPresent());
+        assertEquals(post.getKarmaScore() + 5, optionalPost.get().postDto().getKarmaScore());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void findPostDtoWithImageDataByIdAndUserId_ShardsOfPostExist_KarmaScoreIncludesShards() {
+
+        // given
+        Post post = getTopActivePost();
+        transactionTemplate.execute(status -> shardRepository.addToShard(post.getId(), 0, 2));
+        transactionTemplate.execute(status -> shardRepository.addToShard(post.getId(), 5, 3));
+
+        // when
+        Optional<PostWithImageDataDto> optionalPost = transactionTemplate.execute(status ->
+                postRepository.findPostDtoWithImageDataByIdAndUserId(post.getId(), post.getUser().getId()));
+
+        // then
+        assertTrue(optionalPost.isPresent());
+        assertEquals(post.getKarmaScore() + 5, optionalPost.get().postDto().getKarmaScore());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void refresh_ShardsOfActivePostAreNotCompacted_PostIsCachedWithShards() {
+
+        // given
+        Post post = getTopActivePost();
+        transactionTemplate.execute(status -> shardRepository.addToShard(post.getId(), 0, 2));
+        transactionTemplate.execute(status -> shardRepository.addToShard(post.getId(), 5, 3));
+
+        PostRedisCache cache = mock(PostRedisCache.class);
+        PostRedisCache.Rebuild rebuild = mock(PostRedisCache.Rebuild.class);
+        when(cache.tryAcquireRefreshLock(any())).thenReturn(Optional.of("token"));
+        when(cache.beginRebuild()).thenReturn(rebuild);
+
+        List<PostDto> cachedPosts = new ArrayList<>();
+        doAnswer(invocation -> cachedPosts.addAll(invocation.getArgument(0)))
+                .when(rebuild).addChunk(anyCollection());
+
+        var refresher = new PostRedisCacheRefresher(
+                cache,
+                postRepository,
+                transactionTemplate.getTransactionManager(),
+                Duration.ofSeconds(30),
+                Duration.ofSeconds(5),
+                2,
+                new SimpleMeterRegistry());
+
+        // when
+        refresher.refresh();
+        refresher.shutdown();
+
+        // then
+        PostDto cachedPost = cachedPosts.stream()
+                .filter(postDto -> postDto.getId().equals(post.getId()))
+                .findFirst()
+                .orElseThrow();
+
+        assertEquals(post.getKarmaScore() + 5, cachedPost.getKarmaScore());
+        verify(rebuild).commit();
+    }
+
+}
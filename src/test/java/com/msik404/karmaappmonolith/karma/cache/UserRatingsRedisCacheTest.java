@@ -0,0 +1,274 @@
+package com.msik404.karmaappmonolith.karma.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.msik404.karmaappmonolith.RedisConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+@SpringBootTest(classes = {
+        RedisConfiguration.class,
+        UserRatingsRedisCache.class
+})
+class UserRatingsRedisCacheTest {
+
+    private static final long USER_ID = 404;
+    private static final long OTHER_USER_ID = 405;
+
+    private final RedisConnectionFactory redisConnectionFactory;
+    private final StringRedisTemplate redisTemplate;
+
+    private final UserRatingsRedisCache ratingsCache;
+
+    public static final GenericContainer<?> REDIS_CONTAINER =
+            new GenericContainer(DockerImageName.parse("redis:alpine")).withExposedPorts(6379);
+
+    static {
+        REDIS_CONTAINER.start();
+    }
+
+    @DynamicPropertySource
+    private static void registerRedisProperties(DynamicPropertyRegistry registry) {
+
+        registry.add("spring.data.redis.host", REDIS_CONTAINER::getHost);
+        registry.add("spring.data.redis.port", () -> REDIS_CONTAINER.getMappedPort(6379).toString());
+    }
+
+    @Autowired
+    UserRatingsRedisCacheTest(
+            RedisConnectionFactory redisConnectionFactory,
+            StringRedisTemplate redisTemplate,
+            UserRatingsRedisCache ratingsCache) {
+
+        this.redisConnectionFactory = redisConnectionFactory;
+        this.redisTemplate = redisTemplate;
+        this.ratingsCache = ratingsCache;
+    }
+
+    @AfterEach
+    void tearDown() {
+        redisConnectionFactory.getConnection().serverCommands().flushAll();
+    }
+
+    /**
+     * Loader which serves given ratings and records post ids of every call.
+     */
+    private static Function<Collection<Long>, Map<Long, Boolean>> getLoader(
+            Map<Long, Boolean> ratings,
+            List<Collection<Long>> calls) {
+
+        return postIds -> {
+            calls.add(List.copyOf(postIds));
+            return ratings.entrySet().stream()
+                    .filter(entry -> postIds.contains(entry.getKey()))
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        };
+    }
+
+    @Test
+    void findRatingsOfUser_NothingIsCached_AllPostsAreLoadedAndUnratedPostsAreAbsent() {
+
+        // given
+        List<Collection<Long>> calls = new ArrayList<>();
+        var loader = getLoader(Map.of(1L, true, 3L, false), calls);
+
+        // when
+        Map<Long, Boolean> ratings = ratingsCache.findRatingsOfUser(USER_ID, List.of(1L, 2L, 3L), loader);
+
+        // then
+        assertEquals(Map.of(1L, true, 3L, false), ratings);
+        assertEquals(List.of(List.of(1L, 2L, 3L)), calls);
+    }
+
+    @Test
+    void findRatingsOfUser_SamePostsRequestedAgain_LoaderIsNotCalled() {
+
+        // given
+        List<Collection<Long>> calls = new ArrayList<>();
+        var loader = getLoader(Map.of(1L, true, 3L, false), calls);
+        ratingsCache.findRatingsOfUser(USER_ID, List.of(1L, 2L, 3L), loader);
+        calls.clear();
+
+        // when
+        Map<Long, Boolean> ratings = ratingsCache.findRatingsOfUser(USER_ID, List.of(3L, 2L, 1L), loader);
+
+        // then
+        assertEquals(Map.of(1L, true, 3L, false), ratings);
+        assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    void findRatingsOfUser_SomePostsAreCached_OnlyMissingPostsAreLoaded() {
+
+        // given
+        List<Collection<Long>> calls = new ArrayList<>();
+        var loader = getLoader(Map.of(1L, true, 4L, false), calls);
+        ratingsCache.findRatingsOfUser(USER_ID, List.of(1L, 2L), loader);
+        calls.clear();
+
+        // when
+        Map<Long, Boolean> ratings = ratingsCache.findRatingsOfUser(USER_ID, List.of(1L, 2L, 3L, 4L), loader);
+
+        // then
+        assertEquals(Map.of(1L, true, 4L, false), ratings);
+        assertEquals(List.of(List.of(3L, 4L)), calls);
+    }
+
+    @Test
+    void findRatingsOfUser_RatingsOfOtherUserAreCached_AllPostsAreLoaded() {
+
+        // given
+        List<Collection<Long>> calls = new ArrayList<>();
+        ratingsCache.findRatingsOfUser(OTHER_USER_ID, List.of(1L), getLoader(Map.of(1L, true), calls));
+        calls.clear();
+
+        // when
+        Map<Long, Boolean> ratings = ratingsCache.findRatingsOfUser(
+                USER_ID, List.of(1L), getLoader(Map.of(), calls));
+
+        // then
+        assertTrue(ratings.isEmpty());
+        assertEquals(List.of(List.of(1L)), calls);
+    }
+
+    @Test
+    void evictRatings_RatingsAreCached_EvictedRatingsAreLoadedAgain() {
+
+        // given
+        List<Collection<Long>> calls = new ArrayList<>();
+        ratingsCache.findRatingsOfUser(USER_ID, List.of(1L, 2L, 3L), getLoader(Map.of(1L, true, 3L, false), calls));
+        calls.clear();
+
+        // when
+        ratingsCache.evictRatings(USER_ID, List.of(1L, 3L));
+
+        // then
+        Map<Long, Boolean> ratings = ratingsCache.findRatingsOfUser(
+                USER_ID, List.of(1L, 2L, 3L), getLoader(Map.of(1L, false), calls));
+
+        assertEquals(Map.of(1L, false), ratings);
+        assertEquals(List.of(List.of(1L, 3L)), calls);
+    }
+
+    @Test
+    void evictRatings_ConcurrentChangesAreEvictedInAnyOrder_RatingIsLoadedFromDatabase() {
+
+        // given
+        List<Collection<Long>> calls = new ArrayList<>();
+        ratingsCache.findRatingsOfUser(USER_ID, List.of(1L), getLoader(Map.of(1L, true), calls));
+        calls.clear();
+
+        // when
+        // second change committed first and first change committed second, both leave the same state behind
+        ratingsCache.evictRatings(USER_ID, List.of(1L));
+        ratingsCache.evictRatings(USER_ID, List.of(1L));
+
+        // then
+        Map<Long, Boolean> ratings = ratingsCache.findRatingsOfUser(
+                USER_ID, List.of(1L), getLoader(Map.of(1L, false), calls));
+
+        assertEquals(Map.of(1L, false), ratings);
+        assertEquals(List.of(List.of(1L)), calls);
+    }
+
+    @Test
+    void findRatingsOfUser_RatingWasChangedWhileItWasLoaded_LoadedRatingIsNotCached() {
+
+        // given
+        List<Collection<Long>> calls = new ArrayList<>();
+        var loaderRacingWithChange = getLoader(Map.of(1L, true), calls).andThen(loaded -> {
+            ratingsCache.evictRatings(USER_ID, List.of(1L));
+            return loaded;
+        });
+
+        // when
+        Map<Long, Boolean> ratingsDuringChange = ratingsCache.findRatingsOfUser(
+                USER_ID, List.of(1L), loaderRacingWithChange);
+
+        // then
+        assertEquals(Map.of(1L, true), ratingsDuringChange);
+
+        Map<Long, Boolean> ratings = ratingsCache.findRatingsOfUser(
+                USER_ID, List.of(1L), getLoader(Map.of(), calls));
+
+        assertTrue(ratings.isEmpty());
+        assertEquals(2, calls.size());
+    }
+
+    @Test
+    void findRatingsOfUser_HashExpiredWhileRatingWasLoaded_LoadedRatingIsNotCached() {
+
+        // given
+        List<Collection<Long>> calls = new ArrayList<>();
+        ratingsCache.evictRatings(USER_ID, List.of(2L));
+        var loaderRacingWithExpiration = getLoader(Map.of(1L, true), calls).andThen(loaded -> {
+            redisTemplate.delete(UserRatingsRedisCache.getUserRatingsKey(USER_ID));
+            return loaded;
+        });
+
+        // when
+        ratingsCache.findRatingsOfUser(USER_ID, List.of(1L), loaderRacingWithExpiration);
+
+        // then
+        assertFalse(redisTemplate.hasKey(UserRatingsRedisCache.getUserRatingsKey(USER_ID)));
+    }
+
+    @Test
+    void findRatingsOfUser_HashIsCreatedByLoader_HashHasExpirationTime() {
+
+        // given
+        String key = UserRatingsRedisCache.getUserRatingsKey(USER_ID);
+
+        // when
+        ratingsCache.findRatingsOfUser(USER_ID, List.of(1L), getLoader(Map.of(1L, true), new ArrayList<>()));
+
+        // then
+        Long ttlMillis = redisTemplate.getExpire(key, TimeUnit.MILLISECONDS);
+
+        assertNotNull(ttlMillis);
+        assertTrue(ttlMillis > 0);
+    }
+
+    @Test
+    void evictRatings_UserIsRatingRepeatedly_ExpirationTimeIsSetOnceAndNotExtended() throws InterruptedException {
+
+        // given
+        ratingsCache.evictRatings(USER_ID, List.of(1L));
+        String key = UserRatingsRedisCache.getUserRatingsKey(USER_ID);
+
+        Long ttlMillisAfterCreation = redisTemplate.getExpire(key, TimeUnit.MILLISECONDS);
+        assertNotNull(ttlMillisAfterCreation);
+        assertTrue(ttlMillisAfterCreation > 0);
+
+        TimeUnit.MILLISECONDS.sleep(50);
+
+        // when
+        ratingsCache.evictRatings(USER_ID, List.of(2L));
+
+        // then
+        Long ttlMillis = redisTemplate.getExpire(key, TimeUnit.MILLISECONDS);
+
+        assertNotNull(ttlMillis);
+        assertTrue(ttlMillis > 0);
+        assertTrue(ttlMillis < ttlMillisAfterCreation);
+    }
+
+}
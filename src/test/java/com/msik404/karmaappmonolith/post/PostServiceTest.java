@@ -2,24 +2,33 @@ package com.msik404.karmaappmonolith.post;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalDouble;
 import java.util.Set;
+import java.util.function.Function;
 
 import com.msik404.karmaappmonolith.TestingImageDataCreator;
 import com.msik404.karmaappmonolith.auth.exception.InsufficientRoleException;
-import com.msik404.karmaappmonolith.karma.KarmaKey;
-import com.msik404.karmaappmonolith.karma.KarmaScore;
-import com.msik404.karmaappmonolith.karma.KarmaScoreRepository;
+import com.msik404.karmaappmonolith.karma.KarmaDeltaJournal;
+import com.msik404.karmaappmonolith.karma.KarmaScoreChange;
 import com.msik404.karmaappmonolith.karma.KarmaScoreService;
-import com.msik404.karmaappmonolith.karma.exception.KarmaScoreNotFoundException;
+import com.msik404.karmaappmonolith.karma.KarmaWriteMode;
+import com.msik404.karmaappmonolith.karma.PostKarmaShardService;
+import com.msik404.karmaappmonolith.karma.cache.UserRatingsRedisCache;
 import com.msik404.karmaappmonolith.position.ScrollPosition;
+import com.msik404.karmaappmonolith.post.cache.PostFeedNearCache;
 import com.msik404.karmaappmonolith.post.cache.PostRedisCache;
 import com.msik404.karmaappmonolith.post.cache.PostRedisCacheHandlerService;
 import com.msik404.karmaappmonolith.post.dto.ImageOnlyDto;
 import com.msik404.karmaappmonolith.post.dto.PostCreationRequest;
 import com.msik404.karmaappmonolith.post.dto.PostDto;
+import com.msik404.karmaappmonolith.post.dto.PostRatingOperation;
+import com.msik404.karmaappmonolith.post.dto.PostRatingOperationResult;
+import com.msik404.karmaappmonolith.post.dto.PostRatingResponse;
 import com.msik404.karmaappmonolith.post.dto.PostWithImageDataDto;
 import com.msik404.karmaappmonolith.post.exception.FileProcessingException;
 import com.msik404.karmaappmonolith.post.exception.ImageNotFoundException;
@@ -29,6 +38,7 @@ import com.msik404.karmaappmonolith.post.repository.PostRepository;
 import com.msik404.karmaappmonolith.user.Role;
 import com.msik404.karmaappmonolith.user.User;
 import com.msik404.karmaappmonolith.user.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -39,6 +49,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -53,12 +64,11 @@ class PostServiceTest {
     @Mock
     private UserRepository userRepository;
 
-
     @Mock
-    private KarmaScoreRepository karmaScoreRepository;
+    private KarmaScoreService karmaScoreService;
 
     @Mock
-    private KarmaScoreService karmaScoreService;
+    private UserRatingsRedisCache userRatingsCache;
 
     @Mock
     private PostRedisCache cache;
@@ -66,9 +76,23 @@ class PostServiceTest {
     @Mock
     private PostRedisCacheHandlerService cacheHandler;
 
+    @Mock
+    private PostFeedNearCache nearCache;
+
+    @Mock
+    private KarmaDeltaJournal karmaDeltaJournal;
+
+    @Mock
+    private PostKarmaShardService karmaShardService;
+
     @InjectMocks
     private PostService postService;
 
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
     @Test
     void findPaginatedPosts_PaginationIsNullAndUsernameIsNull_CacheHandlerFindTopNHandlerCalled() {
 
@@ -205,7 +229,7 @@ class PostServiceTest {
     }
 
     @Test
-    void findPaginatedPostRatings_PaginationIsNullAndUsernameIsNull_RepositoryFindTopNRatingsCalled() {
+    void findPaginatedPostRatings_PaginationIsNullAndUsernameIsNullAndVisibilitiesAreNotOnlyActive_RepositoryFindTopNRatingsCalled() {
 
         // given
         ScrollPosition position = null;
@@ -213,7 +237,7 @@ class PostServiceTest {
 
         // these values won't influence results of these test
         int size = 10;
-        List<Visibility> visibilities = List.of(Visibility.ACTIVE);
+        List<Visibility> visibilities = List.of(Visibility.ACTIVE, Visibility.HIDDEN);
 
         // mock authentication
         Authentication authentication = mock(Authentication.class);
@@ -263,7 +287,7 @@ class PostServiceTest {
     }
 
     @Test
-    void findPaginatedPostRatings_PaginationIsNonNullAndUsernameIsNull_RepositoryFindNextNRatingsCalled() {
+    void findPaginatedPostRatings_PaginationIsNonNullAndUsernameIsNullAndVisibilitiesAreNotOnlyActive_RepositoryFindNextNRatingsCalled() {
 
         // given
         var pagination = new ScrollPosition(0, 0);
@@ -271,7 +295,7 @@ class PostServiceTest {
 
         // these values won't influence results of these test
         int size = 10;
-        List<Visibility> visibilities = List.of(Visibility.ACTIVE);
+        List<Visibility> visibilities = List.of(Visibility.ACTIVE, Visibility.HIDDEN);
 
         // mock authentication
         Authentication authentication = mock(Authentication.class);
@@ -320,6 +344,85 @@ class PostServiceTest {
         verify(repository).findTopNRatingsWithUsername(size, visibilities, userId, username);
     }
 
+    @Test
+    void findPaginatedPostRatings_PaginationIsNonNullAndUsernameIsNullAndVisibilitiesAreOnlyActive_RatingsOfCachedPageFound() {
+
+        // given
+        var pagination = new ScrollPosition(0, 0);
+        String username = null;
+
+        int size = 3;
+        List<Visibility> visibilities = List.of(Visibility.ACTIVE);
+
+        // mock authentication
+        Authentication authentication = mock(Authentication.class);
+        SecurityContext securityContext = mock(SecurityContext.class);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        long userId = 10L;
+        when(authentication.getPrincipal()).thenReturn(userId);
+        SecurityContextHolder.setContext(securityContext);
+
+        List<PostDto> page = List.of(
+                new PostDto(3L, 1L, "username", null, null, 5L, Visibility.ACTIVE),
+                new PostDto(1L, 1L, "username", null, null, 4L, Visibility.ACTIVE),
+                new PostDto(2L, 1L, "username", null, null, 3L, Visibility.ACTIVE)
+        );
+        when(cacheHandler.findNextNHandler(size, visibilities, pagination)).thenReturn(page);
+        // rating of post 3 is cached, ratings of posts 1 and 2 are loaded
+        when(userRatingsCache.findRatingsOfUser(eq(userId), eq(List.of(3L, 1L, 2L)), any()))
+                .thenAnswer(invocation -> {
+                    Function<Collection<Long>, Map<Long, Boolean>> loader = invocation.getArgument(2);
+                    Map<Long, Boolean> ratings = new HashMap<>(loader.apply(List.of(1L, 2L)));
+                    ratings.put(3L, true);
+                    return ratings;
+                });
+        when(karmaScoreService.findRatingsOfUser(userId, List.of(1L, 2L))).thenReturn(Map.of(2L, false));
+
+        // when
+        List<PostRatingResponse> results = postService.findPaginatedPostRatings(
+                size, visibilities, pagination, username);
+
+        // then
+        assertEquals(
+                List.of(
+                        new PostRatingResponse(3L, true),
+                        new PostRatingResponse(1L, null),
+                        new PostRatingResponse(2L, false)
+                ),
+                results
+        );
+        verify(repository, never()).findNextNRatings(size, visibilities, userId, pagination);
+    }
+
+    @Test
+    void findPaginatedPostRatings_PaginationIsNullAndUsernameIsNullAndVisibilitiesAreOnlyActive_CacheHandlerFindTopNHandlerCalled() {
+
+        // given
+        ScrollPosition position = null;
+        String username = null;
+
+        int size = 10;
+        List<Visibility> visibilities = List.of(Visibility.ACTIVE);
+
+        // mock authentication
+        Authentication authentication = mock(Authentication.class);
+        SecurityContext securityContext = mock(SecurityContext.class);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        long userId = 10L;
+        when(authentication.getPrincipal()).thenReturn(userId);
+        SecurityContextHolder.setContext(securityContext);
+
+        when(cacheHandler.findTopNHandler(size, visibilities)).thenReturn(List.of());
+
+        // when
+        List<PostRatingResponse> results = postService.findPaginatedPostRatings(
+                size, visibilities, position, username);
+
+        // then
+        assertTrue(results.isEmpty());
+        verify(repository, never()).findTopNRatings(size, visibilities, userId);
+    }
+
     @Test
     void findImageByPostId_CacheHasRequestedImage_RepositoryShouldNotBeCalled() {
 
@@ -572,7 +675,6 @@ class PostServiceTest {
         // given
         long postId = 1;
         boolean isNewRatingPositive = true;
-        boolean isOldRatingPositive = false;
         long delta = 2;
 
         // mock authentication
@@ -583,25 +685,18 @@ class PostServiceTest {
         when(authentication.getPrincipal()).thenReturn(userId);
         SecurityContextHolder.setContext(securityContext);
 
-        var karmaKey = new KarmaKey(userId, postId);
-        var karmaScore = new KarmaScore(karmaKey, null, null, isOldRatingPositive);
-
-        when(karmaScoreService.findById(karmaKey)).thenReturn(karmaScore);
-
-        int rowsAffected = 1;
-        when(repository.addKarmaScoreToPost(postId, delta)).thenReturn(rowsAffected);
+        when(karmaScoreService.rate(userId, postId, isNewRatingPositive, true))
+                .thenReturn(new KarmaScoreChange(true, delta));
 
         when(cache.updateKarmaScoreIfPresent(postId, delta)).thenReturn(OptionalDouble.empty());
 
-        when(cacheHandler.loadPostDataToCacheIfPossible(postId)).thenReturn(true);
-
         // when
         postService.rate(postId, isNewRatingPositive);
 
         // then
-        verify(karmaScoreService).findById(karmaKey);
-        verify(karmaScoreService, never()).create(userId, postId, isNewRatingPositive);
-        verify(repository).addKarmaScoreToPost(postId, delta);
+        verify(karmaScoreService).rate(userId, postId, isNewRatingPositive, true);
+        verify(userRatingsCache).evictRatingsAfterCommit(userId, List.of(postId));
+        verify(karmaDeltaJournal, never()).append(anyLong(), anyLong());
         verify(cache).updateKarmaScoreIfPresent(postId, (double) delta);
         verify(cacheHandler).loadPostDataToCacheIfPossible(postId);
     }
@@ -612,7 +707,6 @@ class PostServiceTest {
         // given
         long postId = 1;
         boolean isNewRatingPositive = false;
-        boolean isOldRatingPositive = true;
         long delta = -2;
 
         // mock authentication
@@ -623,25 +717,17 @@ class PostServiceTest {
         when(authentication.getPrincipal()).thenReturn(userId);
         SecurityContextHolder.setContext(securityContext);
 
-        var karmaKey = new KarmaKey(userId, postId);
-        var karmaScore = new KarmaScore(karmaKey, null, null, isOldRatingPositive);
-
-        when(karmaScoreService.findById(karmaKey)).thenReturn(karmaScore);
-
-        int rowsAffected = 1;
-        when(repository.addKarmaScoreToPost(postId, delta)).thenReturn(rowsAffected);
+        when(karmaScoreService.rate(userId, postId, isNewRatingPositive, true))
+                .thenReturn(new KarmaScoreChange(true, delta));
 
         when(cache.updateKarmaScoreIfPresent(postId, delta)).thenReturn(OptionalDouble.empty());
 
-        when(cacheHandler.loadPostDataToCacheIfPossible(postId)).thenReturn(true);
-
         // when
         postService.rate(postId, isNewRatingPositive);
 
         // then
-        verify(karmaScoreService).findById(karmaKey);
-        verify(karmaScoreService, never()).create(userId, postId, isNewRatingPositive);
-        verify(repository).addKarmaScoreToPost(postId, delta);
+        verify(karmaScoreService).rate(userId, postId, isNewRatingPositive, true);
+        verify(karmaDeltaJournal, never()).append(anyLong(), anyLong());
         verify(cache).updateKarmaScoreIfPresent(postId, (double) delta);
         verify(cacheHandler).loadPostDataToCacheIfPossible(postId);
     }
@@ -662,35 +748,28 @@ class PostServiceTest {
         when(authentication.getPrincipal()).thenReturn(userId);
         SecurityContextHolder.setContext(securityContext);
 
-        var karmaKey = new KarmaKey(userId, postId);
-
-        when(karmaScoreService.findById(karmaKey)).thenThrow(KarmaScoreNotFoundException.class);
-
-        int rowsAffected = 1;
-        when(repository.addKarmaScoreToPost(postId, delta)).thenReturn(rowsAffected);
+        when(karmaScoreService.rate(userId, postId, isNewRatingPositive, true))
+                .thenReturn(new KarmaScoreChange(true, delta));
 
         when(cache.updateKarmaScoreIfPresent(postId, delta)).thenReturn(OptionalDouble.empty());
 
-        when(cacheHandler.loadPostDataToCacheIfPossible(postId)).thenReturn(true);
-
         // when
         postService.rate(postId, isNewRatingPositive);
 
         // then
-        verify(karmaScoreService).findById(karmaKey);
-        verify(karmaScoreService).create(userId, postId, isNewRatingPositive);
-        verify(repository).addKarmaScoreToPost(postId, delta);
+        verify(karmaScoreService).rate(userId, postId, isNewRatingPositive, true);
+        verify(karmaDeltaJournal, never()).append(anyLong(), anyLong());
         verify(cache).updateKarmaScoreIfPresent(postId, (double) delta);
         verify(cacheHandler).loadPostDataToCacheIfPossible(postId);
     }
 
     @Test
-    void rate_IsNewRatingPositiveIsTrueAndOldRatingIsNullAndWasNotCachedAndPostIsNotFound_ShouldThrowPostNotFoundException() {
+    void rate_IsNewRatingPositiveIsTrueAndPostIsNotFound_ShouldThrowPostNotFoundException() {
 
         // given
         long postId = 1;
         boolean isNewRatingPositive = true;
-        long delta = 1;
+        long delta = 0;
 
         // mock authentication
         Authentication authentication = mock(Authentication.class);
@@ -700,31 +779,23 @@ class PostServiceTest {
         when(authentication.getPrincipal()).thenReturn(userId);
         SecurityContextHolder.setContext(securityContext);
 
-        var karmaKey = new KarmaKey(userId, postId);
-
-        when(karmaScoreService.findById(karmaKey)).thenThrow(KarmaScoreNotFoundException.class);
+        when(karmaScoreService.rate(userId, postId, isNewRatingPositive, true))
+                .thenReturn(new KarmaScoreChange(false, delta));
 
-        int rowsAffected = 0;
-        when(repository.addKarmaScoreToPost(postId, delta)).thenReturn(rowsAffected);
-
-        // when
+        // then                                         // when
         assertThrows(PostNotFoundException.class, () -> postService.rate(postId, isNewRatingPositive));
 
-        // then
-        verify(karmaScoreService).findById(karmaKey);
-        verify(karmaScoreService).create(userId, postId, isNewRatingPositive);
-        verify(repository).addKarmaScoreToPost(postId, delta);
-        verify(cache, never()).updateKarmaScoreIfPresent(postId, (double) delta);
-        verify(cacheHandler, never()).loadPostDataToCacheIfPossible(postId);
+        verify(cache, never()).updateKarmaScoreIfPresent(anyLong(), anyDouble());
+        verify(karmaDeltaJournal, never()).append(anyLong(), anyLong());
     }
 
     @Test
-    void rate_IsNewRatingPositiveIsTrueAndOldRatingIsPositiveAndWasNotCached_ShouldEarlyReturn() {
+    void rate_IsNewRatingPositiveIsTrueAndOldRatingIsPositive_DeltaIsZeroAndShouldEarlyReturn() {
 
         // given
         long postId = 1;
         boolean isNewRatingPositive = true;
-        boolean isOldRatingPositive = true;
+        long delta = 0;
 
         // mock authentication
         Authentication authentication = mock(Authentication.class);
@@ -734,17 +805,17 @@ class PostServiceTest {
         when(authentication.getPrincipal()).thenReturn(userId);
         SecurityContextHolder.setContext(securityContext);
 
-        var karmaKey = new KarmaKey(userId, postId);
-        var karmaScore = new KarmaScore(karmaKey, null, null, isOldRatingPositive);
-
-        when(karmaScoreService.findById(karmaKey)).thenReturn(karmaScore);
+        when(karmaScoreService.rate(userId, postId, isNewRatingPositive, true))
+                .thenReturn(new KarmaScoreChange(true, delta));
 
         // when
-        assertDoesNotThrow(() -> postService.rate(postId, isNewRatingPositive));
+        postService.rate(postId, isNewRatingPositive);
 
         // then
-        verify(karmaScoreService).findById(karmaKey);
-        verify(karmaScoreService, never()).create(userId, postId, isNewRatingPositive);
+        verify(karmaScoreService).rate(userId, postId, isNewRatingPositive, true);
+        verify(userRatingsCache, never()).evictRatingsAfterCommit(anyLong(), anyCollection());
+        verify(cache, never()).updateKarmaScoreIfPresent(anyLong(), anyDouble());
+        verify(cacheHandler, never()).loadPostDataToCacheIfPossible(postId);
     }
 
     @Test
@@ -763,12 +834,8 @@ class PostServiceTest {
         when(authentication.getPrincipal()).thenReturn(userId);
         SecurityContextHolder.setContext(securityContext);
 
-        var karmaKey = new KarmaKey(userId, postId);
-
-        when(karmaScoreService.findById(karmaKey)).thenThrow(KarmaScoreNotFoundException.class);
-
-        int rowsAffected = 1;
-        when(repository.addKarmaScoreToPost(postId, delta)).thenReturn(rowsAffected);
+        when(karmaScoreService.rate(userId, postId, isNewRatingPositive, true))
+                .thenReturn(new KarmaScoreChange(true, delta));
 
         when(cache.updateKarmaScoreIfPresent(postId, delta)).thenReturn(OptionalDouble.of(1));
 
@@ -776,19 +843,18 @@ class PostServiceTest {
         postService.rate(postId, isNewRatingPositive);
 
         // then
-        verify(karmaScoreService).findById(karmaKey);
-        verify(karmaScoreService).create(userId, postId, isNewRatingPositive);
-        verify(repository).addKarmaScoreToPost(postId, delta);
+        verify(karmaScoreService).rate(userId, postId, isNewRatingPositive, true);
+        verify(karmaDeltaJournal, never()).append(anyLong(), anyLong());
         verify(cache).updateKarmaScoreIfPresent(postId, (double) delta);
         verify(cacheHandler, never()).loadPostDataToCacheIfPossible(postId);
     }
 
     @Test
-    void unrate_PostExistsAndWasRatedPositivelyAndIsCached_KarmaScoreShouldBeFoundAndDeletedPostKarmaScoreShouldBeUpdatedAndCachedKarmaScoreShouldBeUpdatedAndShouldNotTryToLoadToCache() {
+    void unrate_PostWasRatedPositivelyAndIsCached_DeltaIsMinusOneAndCachedKarmaScoreShouldBeUpdatedAndShouldNotTryToLoadToCache() {
 
         // given
         long postId = 1;
-        boolean isPositive = true;
+        long delta = -1;
 
         // mock authentication
         Authentication authentication = mock(Authentication.class);
@@ -798,33 +864,119 @@ class PostServiceTest {
         when(authentication.getPrincipal()).thenReturn(userId);
         SecurityContextHolder.setContext(securityContext);
 
-        var karmaKey = new KarmaKey(userId, postId);
-        var karmaScore = new KarmaScore(karmaKey, null, null, isPositive);
+        when(karmaScoreService.unrate(userId, postId, true)).thenReturn(delta);
 
-        when(karmaScoreRepository.findById(karmaKey)).thenReturn(Optional.of(karmaScore));
+        when(cache.updateKarmaScoreIfPresent(postId, delta)).thenReturn(OptionalDouble.of(1));
+
+        // when
+        postService.unrate(postId);
 
+        // then
+        verify(karmaScoreService).unrate(userId, postId, true);
+        verify(userRatingsCache).evictRatingsAfterCommit(userId, List.of(postId));
+        verify(karmaDeltaJournal, never()).append(anyLong(), anyLong());
+        verify(cache).updateKarmaScoreIfPresent(postId, (double) delta);
+        verify(cacheHandler, never()).loadPostDataToCacheIfPossible(postId);
+    }
+
+    @Test
+    void unrate_PostWasRatedPositivelyAndIsNotCached_DeltaIsMinusOneAndShouldTryToLoadToCache() {
+
+        // given
+        long postId = 1;
         long delta = -1;
-        when(repository.addKarmaScoreToPost(postId, delta)).thenReturn(1);
 
-        when(cache.updateKarmaScoreIfPresent(postId, delta)).thenReturn(OptionalDouble.of(1));
+        // mock authentication
+        Authentication authentication = mock(Authentication.class);
+        SecurityContext securityContext = mock(SecurityContext.class);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        long userId = 10L;
+        when(authentication.getPrincipal()).thenReturn(userId);
+        SecurityContextHolder.setContext(securityContext);
+
+        when(karmaScoreService.unrate(userId, postId, true)).thenReturn(delta);
+
+        when(cache.updateKarmaScoreIfPresent(postId, delta)).thenReturn(OptionalDouble.empty());
 
         // when
         postService.unrate(postId);
 
         // then
-        verify(karmaScoreRepository).findById(karmaKey);
-        verify(repository).addKarmaScoreToPost(postId, delta);
-        verify(karmaScoreService).deleteById(karmaKey);
+        verify(karmaScoreService).unrate(userId, postId, true);
+        verify(karmaDeltaJournal, never()).append(anyLong(), anyLong());
+        verify(cache).updateKarmaScoreIfPresent(postId, (double) delta);
+        verify(cacheHandler).loadPostDataToCacheIfPossible(postId);
+    }
+
+    @Test
+    void unrate_PostWasNotRated_DeltaIsZeroAndShouldEarlyReturn() {
+
+        // given
+        long postId = 1;
+        long delta = 0;
+
+        // mock authentication
+        Authentication authentication = mock(Authentication.class);
+        SecurityContext securityContext = mock(SecurityContext.class);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        long userId = 10L;
+        when(authentication.getPrincipal()).thenReturn(userId);
+        SecurityContextHolder.setContext(securityContext);
+
+        when(karmaScoreService.unrate(userId, postId, true)).thenReturn(delta);
+
+        // when
+        postService.unrate(postId);
+
+        // then
+        verify(karmaScoreService).unrate(userId, postId, true);
+        verify(userRatingsCache, never()).evictRatingsAfterCommit(anyLong(), anyCollection());
+        verify(cache, never()).updateKarmaScoreIfPresent(anyLong(), anyDouble());
+        verify(cacheHandler, never()).loadPostDataToCacheIfPossible(postId);
+    }
+
+    @Test
+    void rate_WriteBehindModeAndOldRatingIsNegativeAndIsCached_DeltaIsTwoAndShouldBeJournaledInsteadOfUpdatingPost() {
+
+        // given
+        ReflectionTestUtils.setField(postService, "karmaWriteMode", KarmaWriteMode.WRITE_BEHIND);
+
+        long postId = 1;
+        boolean isNewRatingPositive = true;
+        long delta = 2;
+
+        // mock authentication
+        Authentication authentication = mock(Authentication.class);
+        SecurityContext securityContext = mock(SecurityContext.class);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        long userId = 10L;
+        when(authentication.getPrincipal()).thenReturn(userId);
+        SecurityContextHolder.setContext(securityContext);
+
+        when(karmaScoreService.rate(userId, postId, isNewRatingPositive, false))
+                .thenReturn(new KarmaScoreChange(true, delta));
+
+        when(cache.updateKarmaScoreIfPresent(postId, delta)).thenReturn(OptionalDouble.of(2));
+
+        // when
+        postService.rate(postId, isNewRatingPositive);
+
+        // then
+        verify(karmaScoreService).rate(userId, postId, isNewRatingPositive, false);
+        verify(karmaDeltaJournal).append(postId, delta);
         verify(cache).updateKarmaScoreIfPresent(postId, (double) delta);
         verify(cacheHandler, never()).loadPostDataToCacheIfPossible(postId);
     }
 
     @Test
-    void unrate_PostExistsAndWasRatedPositivelyAndIsNotCached_KarmaScoreShouldBeFoundAndDeletedPostKarmaScoreShouldBeUpdatedAndShouldTryToLoadToCache() {
+    void rate_WriteBehindModeAndPostIsNotFound_PostNotFoundExceptionShouldBeThrownAndNothingShouldBeJournaled() {
 
         // given
+        ReflectionTestUtils.setField(postService, "karmaWriteMode", KarmaWriteMode.WRITE_BEHIND);
+
         long postId = 1;
-        boolean isPositive = true;
+        boolean isNewRatingPositive = true;
+        long delta = 0;
 
         // mock authentication
         Authentication authentication = mock(Authentication.class);
@@ -834,13 +986,34 @@ class PostServiceTest {
         when(authentication.getPrincipal()).thenReturn(userId);
         SecurityContextHolder.setContext(securityContext);
 
-        var karmaKey = new KarmaKey(userId, postId);
-        var karmaScore = new KarmaScore(karmaKey, null, null, isPositive);
+        when(karmaScoreService.rate(userId, postId, isNewRatingPositive, false))
+                .thenReturn(new KarmaScoreChange(false, delta));
 
-        when(karmaScoreRepository.findById(karmaKey)).thenReturn(Optional.of(karmaScore));
+        // then                                         // when
+        assertThrows(PostNotFoundException.class, () -> postService.rate(postId, isNewRatingPositive));
+
+        verify(cache, never()).updateKarmaScoreIfPresent(anyLong(), anyDouble());
+        verify(karmaDeltaJournal, never()).append(anyLong(), anyLong());
+    }
+
+    @Test
+    void unrate_WriteBehindModeAndWasRatedPositivelyAndIsNotCached_DeltaIsMinusOneAndShouldBeJournaledAndShouldTryToLoadToCache() {
 
+        // given
+        ReflectionTestUtils.setField(postService, "karmaWriteMode", KarmaWriteMode.WRITE_BEHIND);
+
+        long postId = 1;
         long delta = -1;
-        when(repository.addKarmaScoreToPost(postId, delta)).thenReturn(1);
+
+        // mock authentication
+        Authentication authentication = mock(Authentication.class);
+        SecurityContext securityContext = mock(SecurityContext.class);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        long userId = 10L;
+        when(authentication.getPrincipal()).thenReturn(userId);
+        SecurityContextHolder.setContext(securityContext);
+
+        when(karmaScoreService.unrate(userId, postId, false)).thenReturn(delta);
 
         when(cache.updateKarmaScoreIfPresent(postId, delta)).thenReturn(OptionalDouble.empty());
 
@@ -848,19 +1021,21 @@ class PostServiceTest {
         postService.unrate(postId);
 
         // then
-        verify(karmaScoreRepository).findById(karmaKey);
-        verify(repository).addKarmaScoreToPost(postId, delta);
-        verify(karmaScoreService).deleteById(karmaKey);
+        verify(karmaScoreService).unrate(userId, postId, false);
+        verify(karmaDeltaJournal).append(postId, delta);
         verify(cache).updateKarmaScoreIfPresent(postId, (double) delta);
         verify(cacheHandler).loadPostDataToCacheIfPossible(postId);
     }
 
     @Test
-    void unrate_PostWasRatedPositivelyButPostWasNotFound_PostNotFoundExceptionShouldBeThrown() {
+    void rate_ShardedModeAndOldRatingIsNullAndIsNotCached_DeltaIsOneAndShouldBeAddedToShardAndShouldTryToLoadToCache() {
 
         // given
+        ReflectionTestUtils.setField(postService, "karmaWriteMode", KarmaWriteMode.SHARDED);
+
         long postId = 1;
-        boolean isPositive = true;
+        boolean isNewRatingPositive = true;
+        long delta = 1;
 
         // mock authentication
         Authentication authentication = mock(Authentication.class);
@@ -870,16 +1045,183 @@ class PostServiceTest {
         when(authentication.getPrincipal()).thenReturn(userId);
         SecurityContextHolder.setContext(securityContext);
 
-        var karmaKey = new KarmaKey(userId, postId);
-        var karmaScore = new KarmaScore(karmaKey, null, null, isPositive);
+        when(karmaScoreService.rate(userId, postId, isNewRatingPositive, false))
+                .thenReturn(new KarmaScoreChange(true, delta));
 
-        when(karmaScoreRepository.findById(karmaKey)).thenReturn(Optional.of(karmaScore));
+        when(cache.updateKarmaScoreIfPresent(postId, delta)).thenReturn(OptionalDouble.empty());
 
-        long delta = -1;
-        when(repository.addKarmaScoreToPost(postId, delta)).thenReturn(0);
+        // when
+        postService.rate(postId, isNewRatingPositive);
 
-        // then                                         // when
-        assertThrows(PostNotFoundException.class, () -> postService.unrate(postId));
+        // then
+        verify(karmaScoreService).rate(userId, postId, isNewRatingPositive, false);
+        verify(karmaShardService).addToRandomShard(postId, delta);
+        verify(karmaDeltaJournal, never()).append(anyLong(), anyLong());
+        verify(cache).updateKarmaScoreIfPresent(postId, (double) delta);
+        verify(cacheHandler).loadPostDataToCacheIfPossible(postId);
+    }
+
+    @Test
+    void unrate_ShardedModeAndWasRatedNegativelyAndIsCached_DeltaIsOneAndShouldBeAddedToShard() {
+
+        // given
+        ReflectionTestUtils.setField(postService, "karmaWriteMode", KarmaWriteMode.SHARDED);
+
+        long postId = 1;
+        long delta = 1;
+
+        // mock authentication
+        Authentication authentication = mock(Authentication.class);
+        SecurityContext securityContext = mock(SecurityContext.class);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        long userId = 10L;
+        when(authentication.getPrincipal()).thenReturn(userId);
+        SecurityContextHolder.setContext(securityContext);
+
+        when(karmaScoreService.unrate(userId, postId, false)).thenReturn(delta);
+
+        when(cache.updateKarmaScoreIfPresent(postId, delta)).thenReturn(OptionalDouble.of(1));
+
+        // when
+        postService.unrate(postId);
+
+        // then
+        verify(karmaShardService).addToRandomShard(postId, delta);
+        verify(cache).updateKarmaScoreIfPresent(postId, (double) delta);
+        verify(cacheHandler, never()).loadPostDataToCacheIfPossible(postId);
+    }
+
+    @Test
+    void rateInBatch_OperationsOfEveryKind_EachOperationShouldGetItsOutcomeAndChangedRatingsShouldBeWrittenInBatch() {
+
+        // given
+        long newlyRatedPostId = 1;
+        long flippedPostId = 2;
+        long unratedPostId = 3;
+        long unchangedPostId = 4;
+        long supersededPostId = 5;
+        long nonExistentPostId = 404;
+
+        List<PostRatingOperation> operations = List.of(
+                new PostRatingOperation(newlyRatedPostId, RatingAction.POSITIVE),
+                new PostRatingOperation(flippedPostId, RatingAction.NEGATIVE),
+                new PostRatingOperation(unratedPostId, RatingAction.UNRATE),
+                new PostRatingOperation(unchangedPostId, RatingAction.POSITIVE),
+                new PostRatingOperation(supersededPostId, RatingAction.NEGATIVE),
+                new PostRatingOperation(nonExistentPostId, RatingAction.POSITIVE),
+                new PostRatingOperation(supersededPostId, RatingAction.POSITIVE)
+        );
+
+        // mock authentication
+        Authentication authentication = mock(Authentication.class);
+        SecurityContext securityContext = mock(SecurityContext.class);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        long userId = 10L;
+        when(authentication.getPrincipal()).thenReturn(userId);
+        SecurityContextHolder.setContext(securityContext);
+
+        Set<Long> existingPostIds = Set.of(
+                newlyRatedPostId, flippedPostId, unratedPostId, unchangedPostId, supersededPostId);
+        when(repository.findExistingIds(Set.of(
+                newlyRatedPostId, flippedPostId, unratedPostId, unchangedPostId, supersededPostId, nonExistentPostId)))
+                .thenReturn(existingPostIds);
+
+        Map<Long, Boolean> expectedRatingsToUpsert = Map.of(
+                newlyRatedPostId, true,
+                flippedPostId, false,
+                unchangedPostId, true,
+                supersededPostId, true
+        );
+        Map<Long, Long> expectedDeltas = Map.of(
+                newlyRatedPostId, 1L,
+                flippedPostId, -2L,
+                unratedPostId, 1L,
+                supersededPostId, 1L
+        );
+        when(karmaScoreService.batchUpdateRatings(userId, expectedRatingsToUpsert, List.of(unratedPostId)))
+                .thenReturn(expectedDeltas);
+        when(cache.updateKarmaScoresIfPresent(expectedDeltas)).thenReturn(Map.of(flippedPostId, 10.0));
+
+        // when
+        List<PostRatingOperationResult> results = postService.rateInBatch(operations);
+
+        // then
+        assertEquals(List.of(
+                new PostRatingOperationResult(newlyRatedPostId, RatingOperationStatus.APPLIED),
+                new PostRatingOperationResult(flippedPostId, RatingOperationStatus.APPLIED),
+                new PostRatingOperationResult(unratedPostId, RatingOperationStatus.APPLIED),
+                new PostRatingOperationResult(unchangedPostId, RatingOperationStatus.UNCHANGED),
+                new PostRatingOperationResult(supersededPostId, RatingOperationStatus.SUPERSEDED),
+                new PostRatingOperationResult(nonExistentPostId, RatingOperationStatus.POST_NOT_FOUND),
+                new PostRatingOperationResult(supersededPostId, RatingOperationStatus.APPLIED)
+        ), results);
+
+        verify(userRatingsCache).evictRatingsAfterCommit(userId, expectedDeltas.keySet());
+        verify(repository).addKarmaScoresToPosts(expectedDeltas);
+
+        // only uncached posts whose score has increased are loaded to cache, all at once
+        verify(cacheHandler).loadPostsDataToCacheIfPossible(List.of(newlyRatedPostId, unratedPostId, supersededPostId));
+        verify(cacheHandler, never()).loadPostDataToCacheIfPossible(anyLong());
+        verify(nearCache).invalidateAll();
+    }
+
+    @Test
+    void rateInBatch_AllRequestedRatingsAreInPlace_NoKarmaScoreShouldBeUpdated() {
+
+        // given
+        long postId = 1;
+        List<PostRatingOperation> operations = List.of(new PostRatingOperation(postId, RatingAction.NEGATIVE));
+
+        // mock authentication
+        Authentication authentication = mock(Authentication.class);
+        SecurityContext securityContext = mock(SecurityContext.class);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        long userId = 10L;
+        when(authentication.getPrincipal()).thenReturn(userId);
+        SecurityContextHolder.setContext(securityContext);
+
+        when(repository.findExistingIds(Set.of(postId))).thenReturn(Set.of(postId));
+        when(karmaScoreService.batchUpdateRatings(userId, Map.of(postId, false), List.of())).thenReturn(Map.of());
+
+        // when
+        List<PostRatingOperationResult> results = postService.rateInBatch(operations);
+
+        // then
+        assertEquals(List.of(new PostRatingOperationResult(postId, RatingOperationStatus.UNCHANGED)), results);
+        verify(userRatingsCache, never()).evictRatingsAfterCommit(anyLong(), anyCollection());
+        verify(repository, never()).addKarmaScoresToPosts(anyMap());
+        verify(cache, never()).updateKarmaScoresIfPresent(anyMap());
+    }
+
+    @Test
+    void rateInBatch_WriteBehindMode_DeltasShouldBeJournaledInsteadOfUpdatingPosts() {
+
+        // given
+        ReflectionTestUtils.setField(postService, "karmaWriteMode", KarmaWriteMode.WRITE_BEHIND);
+
+        long postId = 1;
+        List<PostRatingOperation> operations = List.of(new PostRatingOperation(postId, RatingAction.NEGATIVE));
+
+        // mock authentication
+        Authentication authentication = mock(Authentication.class);
+        SecurityContext securityContext = mock(SecurityContext.class);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        long userId = 10L;
+        when(authentication.getPrincipal()).thenReturn(userId);
+        SecurityContextHolder.setContext(securityContext);
+
+        when(repository.findExistingIds(Set.of(postId))).thenReturn(Set.of(postId));
+        when(karmaScoreService.batchUpdateRatings(userId, Map.of(postId, false), List.of()))
+                .thenReturn(Map.of(postId, -1L));
+        when(cache.updateKarmaScoresIfPresent(Map.of(postId, -1L))).thenReturn(Map.of());
+
+        // when
+        postService.rateInBatch(operations);
+
+        // then
+        verify(karmaDeltaJournal).appendAll(Map.of(postId, -1L));
+        verify(repository, never()).addKarmaScoresToPosts(anyMap());
+        verify(cacheHandler, never()).loadPostsDataToCacheIfPossible(anyCollection());
     }
 
     @Test
@@ -944,6 +1286,14 @@ class PostServiceTest {
 
         when(repository.changeVisibilityById(postId, visibility)).thenReturn(0);
 
+        // mock authentication
+        Authentication authentication = mock(Authentication.class);
+        SecurityContext securityContext = mock(SecurityContext.class);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        var authorities = Set.of(new SimpleGrantedAuthority(Role.ADMIN.name()));
+        doReturn(authorities).when(authentication).getAuthorities();
+        SecurityContextHolder.setContext(securityContext);
+
         // when
         assertThrows(PostNotFoundException.class, () -> postService.changeVisibility(postId, visibility));
 
@@ -30,15 +30,16 @@ class PostRedisCacheHandlerServiceTest {
     @Mock
     private PostRedisCache cache;
 
+    @Mock
+    private PostFeedNearCache nearCache;
+
+    @Mock
+    private PostRedisCacheRefresher refresher;
+
     @Spy
     @InjectMocks
     private PostRedisCacheHandlerService cacheHandler;
 
-    @NonNull
-    PostDto getPost(long id, long karmaScore) {
-        return new PostDto(id, null, null, null, null, karmaScore, null);
-    }
-
     @NonNull
     List<PostDto> getPosts(int size) {
 
@@ -72,6 +73,47 @@ class PostRedisCacheHandlerServiceTest {
         verify(repository, never()).findTopNPosts(size, visibilities);
     }
 
+    @Test
+    void findTopNHandler_SizeIsThreeAndVisibilityIsActiveAndNearCacheHasRequestedPage_RedisCacheAndRepositoryShouldNotBeUsed() {
+
+        // given
+        int size = 3;
+        List<Visibility> visibilities = List.of(Visibility.ACTIVE);
+
+        List<PostDto> nearCacheResults = getPosts(size);
+        when(nearCache.find(size, null)).thenReturn(Optional.of(nearCacheResults));
+
+        // when
+        List<PostDto> results = cacheHandler.findTopNHandler(size, visibilities);
+
+        // then
+        assertSame(nearCacheResults, results);
+        verify(cache, never()).isEmpty();
+        verify(cache, never()).findTopNCached(size);
+        verify(repository, never()).findTopNPosts(size, visibilities);
+        verify(nearCache, never()).put(anyInt(), any(), anyList());
+    }
+
+    @Test
+    void findTopNHandler_SizeIsThreeAndVisibilityIsActiveAndNearCacheDoesNotHaveRequestedPage_PageShouldBePutToNearCache() {
+
+        // given
+        int size = 3;
+        List<Visibility> visibilities = List.of(Visibility.ACTIVE);
+
+        when(cache.isEmpty()).thenReturn(false);
+
+        List<PostDto> cacheResults = getPosts(size);
+        when(cache.findTopNCached(size)).thenReturn(Optional.of(cacheResults));
+
+        // when
+        cacheHandler.findTopNHandler(size, visibilities);
+
+        // then
+        verify(nearCache).find(size, null);
+        verify(nearCache).put(size, null, cacheResults);
+    }
+
     @Test
     void findTopNHandler_SizeIsThreeAndVisibilityIsActiveAndCacheHasNotEnoughPostsButIsNotEmpty_RepositoryShouldBeUsed() {
 
@@ -97,7 +139,7 @@ class PostRedisCacheHandlerServiceTest {
     }
 
     @Test
-    void findTopNHandler_SizeIsSevenAndVisibilityIsActiveAndCacheIsEmpty_CacheShouldBeUpdated() {
+    void findTopNHandler_SizeIsSevenAndVisibilityIsActiveAndCacheIsEmpty_RefreshShouldBeRequestedAndRepositoryShouldBeUsed() {
 
         // given
         int size = 7;
@@ -106,16 +148,17 @@ class PostRedisCacheHandlerServiceTest {
         boolean isCacheEmpty = true;
         when(cache.isEmpty()).thenReturn(isCacheEmpty);
 
-        int updatedCacheSize = 5;
-        List<PostDto> updatedCachePosts = getPosts(updatedCacheSize);
-        when(cacheHandler.updateCache()).thenReturn(updatedCachePosts);
+        List<PostDto> repoResults = getPosts(size);
+        when(repository.findTopNPosts(size, visibilities)).thenReturn(repoResults);
 
         // when
-        cacheHandler.findTopNHandler(size, visibilities);
+        List<PostDto> results = cacheHandler.findTopNHandler(size, visibilities);
 
         // then
+        assertEquals(repoResults, results);
         verify(cache).isEmpty();
-        verify(cacheHandler).updateCache();
+        verify(refresher).requestRefresh();
+        verify(refresher, never()).refresh();
         verify(cache, never()).findTopNCached(size);
     }
 
@@ -181,92 +224,29 @@ class PostRedisCacheHandlerServiceTest {
         verify(repository).findNextNPosts(size, visibilities, pagination);
     }
 
-    // proper here means that pagination obj values are based on real values, post with id and karmaScore exists.
     @Test
-    void findNextNHandler_SizeIsThreeAndVisibilityIsActiveAndProperPaginationIsSetAndCacheHasRequestedPosts_CacheShouldBeUpdated() {
+    void findNextNHandler_SizeIsThreeAndVisibilityIsActiveAndProperPaginationIsSetAndCacheIsEmpty_RefreshShouldBeRequestedAndRepositoryShouldBeUsed() {
 
         // given
-        int topSize = 3;
         int size = 3;
         List<Visibility> visibilities = List.of(Visibility.ACTIVE);
-
-        List<PostDto> groundTruthPosts = new ArrayList<>();
-        groundTruthPosts.add(getPost(3, 10));
-        groundTruthPosts.add(getPost(1, 8));
-        groundTruthPosts.add(getPost(2, 8));
-        groundTruthPosts.add(getPost(5, 8));
-        groundTruthPosts.add(getPost(0, 6));
-        groundTruthPosts.add(getPost(4, 4));
-        groundTruthPosts.add(getPost(6, 2));
-        groundTruthPosts.add(getPost(7, -5));
-
-        PostDto lastPost = groundTruthPosts.get(topSize - 1);
-        var pagination = new ScrollPosition(
-                lastPost.getId(),
-                lastPost.getKarmaScore()
-        );
+        var pagination = new ScrollPosition(3, 10);
 
         boolean isCacheEmpty = true;
         when(cache.isEmpty()).thenReturn(isCacheEmpty);
-        when(cacheHandler.updateCache()).thenReturn(groundTruthPosts);
-
-        // when
-        List<PostDto> results = cacheHandler.findNextNHandler(size, visibilities, pagination);
-
-        // then
-        verify(cache).isEmpty();
-        verify(cacheHandler).updateCache();
-        verify(cache, never()).findNextNCached(size, pagination);
-
-        assertEquals(size, results.size());
-
-        List<PostDto> groundTruthNextPosts = groundTruthPosts.subList(topSize, topSize + size);
-        for (int i = 0; i < results.size(); i++) {
-            assertEquals(groundTruthNextPosts.get(i), results.get(i));
-        }
-    }
 
-    // arbitrary here means that pagination obj values are based on non existing values,
-    // post with id and karmaScore does not exist.
-    @Test
-    void findNextNHandler_SizeIsThreeAndVisibilityIsActiveAndArbitraryPaginationIsSetAndCacheHasRequestedPosts_CacheShouldBeUpdated() {
-
-        // given
-        int size = 6;
-        List<Visibility> visibilities = List.of(Visibility.ACTIVE);
-
-        List<PostDto> groundTruthPosts = new ArrayList<>();
-        groundTruthPosts.add(getPost(3, 10));
-        groundTruthPosts.add(getPost(1, 8));
-        groundTruthPosts.add(getPost(2, 8));
-        groundTruthPosts.add(getPost(5, 8));
-        groundTruthPosts.add(getPost(0, 6));
-        groundTruthPosts.add(getPost(4, 4));
-        groundTruthPosts.add(getPost(6, 2));
-        groundTruthPosts.add(getPost(7, -5));
-
-        var pagination = new ScrollPosition(-1, 7);
-
-        boolean isCacheEmpty = true;
-        when(cache.isEmpty()).thenReturn(isCacheEmpty);
-        when(cacheHandler.updateCache()).thenReturn(groundTruthPosts);
+        List<PostDto> repoResults = getPosts(size);
+        when(repository.findNextNPosts(size, visibilities, pagination)).thenReturn(repoResults);
 
         // when
         List<PostDto> results = cacheHandler.findNextNHandler(size, visibilities, pagination);
 
         // then
+        assertEquals(repoResults, results);
         verify(cache).isEmpty();
-        verify(cacheHandler).updateCache();
+        verify(refresher).requestRefresh();
+        verify(refresher, never()).refresh();
         verify(cache, never()).findNextNCached(size, pagination);
-
-        int startIdx = 4;
-        List<PostDto> groundTruthNextPosts = groundTruthPosts.subList(startIdx, groundTruthPosts.size());
-
-        assertEquals(groundTruthNextPosts.size(), results.size());
-
-        for (int i = 0; i < results.size(); i++) {
-            assertEquals(groundTruthNextPosts.get(i), results.get(i));
-        }
     }
 
     @Test
@@ -288,7 +268,7 @@ class PostRedisCacheHandlerServiceTest {
     }
 
     @Test
-    void loadPostDataToCacheIfKarmaScoreIsHighEnough_DtoIsFoundAndContainsImageDataAndScoreIsHighEnoughForCachingAndCacheIsNotEmpty_DtoWithImageShouldBeCached() {
+    void loadPostDataToCacheIfKarmaScoreIsHighEnough_DtoIsFoundAndContainsImageDataAndPostIsAdmittedByCache_DtoWithImageShouldBeCached() {
 
         // given
         long postId = 404;
@@ -309,21 +289,21 @@ class PostRedisCacheHandlerServiceTest {
         );
 
         when(repository.findPostDtoWithImageDataById(postId)).thenReturn(Optional.of(post));
-        when(cache.isKarmaScoreGreaterThanLowestScoreInZSet(karmaScore)).thenReturn(true);
-        when(cache.insertPost(postDto, post.imageData())).thenReturn(true);
-        when(cache.getZSetSize()).thenReturn((long) PostRedisCache.getMaxCachedPosts());
+        when(cache.admitPost(postDto, post.imageData())).thenReturn(true);
 
         // when
         assertTrue(cacheHandler.loadPostDataToCacheIfPossible(postId));
 
         // then
         verify(repository).findPostDtoWithImageDataById(postId);
-        verify(cache).isKarmaScoreGreaterThanLowestScoreInZSet(karmaScore);
-        verify(cache).insertPost(postDto, post.imageData());
+        verify(cache).admitPost(postDto, post.imageData());
+        verify(cache, never()).getZSetSize();
+        verify(cache, never()).isKarmaScoreGreaterThanLowestScoreInZSet(anyLong());
+        verify(cache, never()).insertPost(any(PostDto.class), any());
     }
 
     @Test
-    void loadPostDataToCacheIfKarmaScoreIsHighEnough_DtoIsFoundAndDoesNotContainImageDataAndScoreIsHighEnoughForCachingAndCacheIsNotEmpty_DtoWithImageShouldBeCached() {
+    void loadPostDataToCacheIfKarmaScoreIsHighEnough_DtoIsFoundAndDoesNotContainImageDataAndPostIsAdmittedByCache_DtoShouldBeCached() {
 
         // given
         long postId = 404;
@@ -340,25 +320,22 @@ class PostRedisCacheHandlerServiceTest {
 
         var post = new PostWithImageDataDto(
                 postDto,
-                TestingImageDataCreator.getTestingImage()
+                null
         );
 
         when(repository.findPostDtoWithImageDataById(postId)).thenReturn(Optional.of(post));
-        when(cache.isKarmaScoreGreaterThanLowestScoreInZSet(karmaScore)).thenReturn(true);
-        when(cache.insertPost(postDto, post.imageData())).thenReturn(true);
-        when(cache.getZSetSize()).thenReturn((long) PostRedisCache.getMaxCachedPosts());
+        when(cache.admitPost(postDto, null)).thenReturn(true);
 
         // when
         assertTrue(cacheHandler.loadPostDataToCacheIfPossible(postId));
 
         // then
         verify(repository).findPostDtoWithImageDataById(postId);
-        verify(cache).isKarmaScoreGreaterThanLowestScoreInZSet(karmaScore);
-        verify(cache).insertPost(postDto, post.imageData());
+        verify(cache).admitPost(postDto, null);
     }
 
     @Test
-    void loadPostDataToCacheIfKarmaScoreIsHighEnough_DtoIsFoundAndContainsImageDataAndScoreIsNotHighEnoughForCachingAndCacheIsNotEmpty_DtoWithImageShouldNotBeCached() {
+    void loadPostDataToCacheIfKarmaScoreIsHighEnough_DtoIsFoundAndContainsImageDataAndPostIsNotAdmittedByCache_DtoWithImageShouldNotBeCached() {
 
         // given
         long postId = 404;
@@ -379,64 +356,74 @@ class PostRedisCacheHandlerServiceTest {
         );
 
         when(repository.findPostDtoWithImageDataById(postId)).thenReturn(Optional.of(post));
-        when(cache.isKarmaScoreGreaterThanLowestScoreInZSet(karmaScore)).thenReturn(false);
-        when(cache.getZSetSize()).thenReturn((long) PostRedisCache.getMaxCachedPosts());
+        when(cache.admitPost(postDto, post.imageData())).thenReturn(false);
 
         // when
         assertFalse(cacheHandler.loadPostDataToCacheIfPossible(postId));
 
         // then
         verify(repository).findPostDtoWithImageDataById(postId);
-        verify(cache).isKarmaScoreGreaterThanLowestScoreInZSet(karmaScore);
-        verify(cache, never()).insertPost(postDto, post.imageData());
+        verify(cache).admitPost(postDto, post.imageData());
+        verify(cache, never()).insertPost(any(PostDto.class), any());
     }
 
     @Test
-    void loadPostDataToCacheIfKarmaScoreIsHighEnough_DtoIsFoundAndContainsImageDataAndCacheIsEmpty_DtoWithImageShouldBeCached() {
+    void loadPostDataToCacheIfKarmaScoreIsHighEnough_DtoIsNotFound_DtoWithImageShouldNotBeCached() {
 
         // given
-        long postId = 404;
-        long karmaScore = 400;
-        var postDto = new PostDto(
-                postId,
-                405L,
-                "username",
-                "headline",
-                "text",
-                karmaScore,
-                Visibility.ACTIVE
-        );
+        long postId = 404L;
+        when(repository.findPostDtoWithImageDataById(postId)).thenReturn(Optional.empty());
 
-        var post = new PostWithImageDataDto(
-                postDto,
-                TestingImageDataCreator.getTestingImage()
+        // when
+        assertFalse(cacheHandler.loadPostDataToCacheIfPossible(postId));
+
+        // then
+        verify(repository).findPostDtoWithImageDataById(postId);
+        verify(cache, never()).admitPost(any(PostDto.class), any());
+    }
+
+    @Test
+    void loadPostsDataToCacheIfPossible_CacheIsNotEmpty_PostsShouldBeLoadedWithSingleQueryAndAdmittedAtOnce() {
+
+        // given
+        List<Long> postIds = List.of(404L, 405L);
+        List<PostWithImageDataDto> posts = List.of(
+                new PostWithImageDataDto(
+                        new PostDto(404L, 1L, "username", "headline", "text", 400L, Visibility.ACTIVE),
+                        TestingImageDataCreator.getTestingImage()
+                ),
+                new PostWithImageDataDto(
+                        new PostDto(405L, 1L, "username", "headline", "text", 300L, Visibility.ACTIVE),
+                        null
+                )
         );
 
-        when(repository.findPostDtoWithImageDataById(postId)).thenReturn(Optional.of(post));
-        when(cache.getZSetSize()).thenReturn(0L);
+        when(cache.isEmpty()).thenReturn(false);
+        when(repository.findPostDtosWithImageDataByIds(postIds)).thenReturn(posts);
+        when(cache.admitPosts(posts)).thenReturn(1L);
 
         // when
-        assertFalse(cacheHandler.loadPostDataToCacheIfPossible(postId));
+        long admittedPosts = cacheHandler.loadPostsDataToCacheIfPossible(postIds);
 
         // then
-        verify(repository).findPostDtoWithImageDataById(postId);
-        verify(cache, never()).isKarmaScoreGreaterThanLowestScoreInZSet(karmaScore);
-        verify(cache).insertPost(postDto, post.imageData());
+        assertEquals(1L, admittedPosts);
+        verify(repository, never()).findPostDtoWithImageDataById(anyLong());
+        verify(cache, never()).admitPost(any(PostDto.class), any());
     }
 
     @Test
-    void loadPostDataToCacheIfKarmaScoreIsHighEnough_DtoIsNotFound_DtoWithImageShouldNotBeCached() {
+    void loadPostsDataToCacheIfPossible_CacheIsEmpty_PostsShouldNotBeLoaded() {
 
         // given
-        long postId = 404L;
-        when(repository.findPostDtoWithImageDataById(postId)).thenReturn(Optional.empty());
+        when(cache.isEmpty()).thenReturn(true);
 
         // when
-        assertFalse(cacheHandler.loadPostDataToCacheIfPossible(postId));
+        long admittedPosts = cacheHandler.loadPostsDataToCacheIfPossible(List.of(404L));
 
         // then
-        verify(repository).findPostDtoWithImageDataById(postId);
-        verify(cache, never()).isKarmaScoreGreaterThanLowestScoreInZSet(anyLong());
-        verify(cache, never()).insertPost(any(PostDto.class), any(byte[].class));
+        assertEquals(0L, admittedPosts);
+        verify(repository, never()).findPostDtosWithImageDataByIds(anyCollection());
+        verify(cache, never()).admitPosts(anyCollection());
     }
-}
\ No newline at end of file
+
+}
@@ -0,0 +1,217 @@
+package com.msik404.karmaappmonolith.post.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import com.msik404.karmaappmonolith.post.Visibility;
+import com.msik404.karmaappmonolith.post.dto.PostDto;
+import com.msik404.karmaappmonolith.post.repository.PostRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.lang.NonNull;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PostRedisCacheRefresherTest {
+
+    private static final Duration LOCK_LEASE = Duration.ofSeconds(30);
+    private static final Duration WAIT = Duration.ofSeconds(5);
+    private static final int CHUNK_SIZE = 2;
+    private static final String LOCK_TOKEN = "token";
+
+    @Mock
+    private PostRedisCache cache;
+
+    @Mock
+    private PostRedisCache.Rebuild rebuild;
+
+    @Mock
+    private PostRepository repository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private PostRedisCacheRefresher refresher;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        refresher = new PostRedisCacheRefresher(
+                cache, repository, transactionManager, LOCK_LEASE, WAIT, CHUNK_SIZE, meterRegistry);
+    }
+
+    @NonNull
+    List<PostDto> getPosts(int size) {
+
+        List<PostDto> posts = new ArrayList<>(size);
+        for (long i = 0; i < size; i++) {
+            posts.add(new PostDto(i, null, null, null, null, null, null));
+        }
+        return posts;
+    }
+
+    @Test
+    void refresh_LockIsAcquired_PostsShouldBeAddedInChunksAndLockShouldBeReleased() {
+
+        // given
+        when(cache.tryAcquireRefreshLock(LOCK_LEASE)).thenReturn(Optional.of(LOCK_TOKEN));
+        when(cache.beginRebuild()).thenReturn(rebuild);
+
+        List<PostDto> posts = getPosts(3);
+        when(repository.streamTopNPosts(PostRedisCache.getMaxCachedPosts(), List.of(Visibility.ACTIVE), CHUNK_SIZE))
+                .thenReturn(posts.stream());
+
+        // when
+        OptionalLong optionalResults = refresher.refresh();
+
+        // then
+        assertEquals(OptionalLong.of(posts.size()), optionalResults);
+
+        var inOrder = inOrder(rebuild);
+        inOrder.verify(rebuild).addChunk(posts.subList(0, CHUNK_SIZE));
+        inOrder.verify(rebuild).addChunk(posts.subList(CHUNK_SIZE, posts.size()));
+        inOrder.verify(rebuild).commit();
+
+        verify(transactionManager).getTransaction(argThat(TransactionDefinition::isReadOnly));
+        verify(cache).releaseRefreshLock(LOCK_TOKEN);
+        assertEquals(1, meterRegistry.timer(PostRedisCacheRefresher.REFRESH_TIMER_NAME).count());
+    }
+
+    @Test
+    void refresh_NoPosts_RebuildShouldNotBeCommitted() {
+
+        // given
+        when(cache.tryAcquireRefreshLock(LOCK_LEASE)).thenReturn(Optional.of(LOCK_TOKEN));
+        when(cache.beginRebuild()).thenReturn(rebuild);
+        when(repository.streamTopNPosts(PostRedisCache.getMaxCachedPosts(), List.of(Visibility.ACTIVE), CHUNK_SIZE))
+                .thenReturn(Stream.empty());
+
+        // when
+        OptionalLong optionalResults = refresher.refresh();
+
+        // then
+        assertEquals(OptionalLong.of(0), optionalResults);
+        verify(rebuild, never()).addChunk(anyCollection());
+        verify(rebuild, never()).commit();
+        verify(cache).releaseRefreshLock(LOCK_TOKEN);
+    }
+
+    @Test
+    void refresh_LockIsHeldByOtherInstance_EmptyOptionalAndRepositoryShouldNotBeUsed() {
+
+        // given
+        when(cache.tryAcquireRefreshLock(LOCK_LEASE)).thenReturn(Optional.empty());
+
+        // when
+        OptionalLong optionalResults = refresher.refresh();
+
+        // then
+        assertTrue(optionalResults.isEmpty());
+        verify(repository, never()).streamTopNPosts(anyInt(), anyList(), anyInt());
+        verify(cache, never()).beginRebuild();
+        verify(cache, never()).releaseRefreshLock(anyString());
+    }
+
+    @Test
+    void refresh_RepositoryThrows_LockShouldBeReleasedAndExceptionShouldBeRethrown() {
+
+        // given
+        when(cache.tryAcquireRefreshLock(LOCK_LEASE)).thenReturn(Optional.of(LOCK_TOKEN));
+        when(repository.streamTopNPosts(PostRedisCache.getMaxCachedPosts(), List.of(Visibility.ACTIVE), CHUNK_SIZE))
+                .thenThrow(new IllegalStateException());
+
+        // then                                          // when
+        assertThrows(IllegalStateException.class, () -> refresher.refresh());
+        verify(cache).releaseRefreshLock(LOCK_TOKEN);
+    }
+
+    @Test
+    void requestRefresh_LockIsAcquired_CacheShouldBeRebuiltInTheBackground() {
+
+        // given
+        when(cache.tryAcquireRefreshLock(LOCK_LEASE)).thenReturn(Optional.of(LOCK_TOKEN));
+        when(cache.beginRebuild()).thenReturn(rebuild);
+
+        List<PostDto> posts = getPosts(3);
+        when(repository.streamTopNPosts(PostRedisCache.getMaxCachedPosts(), List.of(Visibility.ACTIVE), CHUNK_SIZE))
+                .thenReturn(posts.stream());
+
+        // when
+        refresher.requestRefresh();
+
+        // then
+        verify(rebuild, timeout(WAIT.toMillis())).commit();
+        verify(cache, timeout(WAIT.toMillis())).releaseRefreshLock(LOCK_TOKEN);
+    }
+
+    @Test
+    void trimPeriodically_CacheIsTrimmed() {
+
+        // when
+        refresher.trimPeriodically();
+
+        // then
+        verify(cache).trimToMaxCachedPosts();
+    }
+
+    @Test
+    void refresh_TwoConcurrentRefreshes_RepositoryShouldBeUsedOnceAndBothShouldGetTheSameResults() throws Exception {
+
+        // given
+        when(cache.tryAcquireRefreshLock(LOCK_LEASE)).thenReturn(Optional.of(LOCK_TOKEN));
+        when(cache.beginRebuild()).thenReturn(rebuild);
+
+        var isRefreshStarted = new CountDownLatch(1);
+        var canRefreshFinish = new CountDownLatch(1);
+
+        List<PostDto> posts = getPosts(3);
+        when(repository.streamTopNPosts(PostRedisCache.getMaxCachedPosts(), List.of(Visibility.ACTIVE), CHUNK_SIZE))
+                .thenAnswer(invocation -> {
+                    isRefreshStarted.countDown();
+                    assertTrue(canRefreshFinish.await(WAIT.toMillis(), TimeUnit.MILLISECONDS));
+                    return posts.stream();
+                });
+
+        CompletableFuture<OptionalLong> leader = CompletableFuture.supplyAsync(refresher::refresh);
+        assertTrue(isRefreshStarted.await(WAIT.toMillis(), TimeUnit.MILLISECONDS));
+
+        // when
+        var followerResults = new AtomicReference<OptionalLong>();
+        var follower = new Thread(() -> followerResults.set(refresher.refresh()));
+        follower.start();
+
+        // follower is waiting for in flight refresh once it is parked with timeout.
+        long deadline = System.nanoTime() + WAIT.toNanos();
+        while (follower.getState() != Thread.State.TIMED_WAITING && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        canRefreshFinish.countDown();
+        follower.join(WAIT.toMillis());
+
+        // then
+        assertEquals(OptionalLong.of(posts.size()), leader.get(WAIT.toMillis(), TimeUnit.MILLISECONDS));
+        assertEquals(OptionalLong.of(posts.size()), followerResults.get());
+        verify(repository, times(1)).streamTopNPosts(
+                PostRedisCache.getMaxCachedPosts(), List.of(Visibility.ACTIVE), CHUNK_SIZE);
+        verify(cache, times(1)).tryAcquireRefreshLock(LOCK_LEASE);
+    }
+
+}
@@ -7,13 +7,16 @@ import com.msik404.karmaappmonolith.RedisConfiguration;
 import com.msik404.karmaappmonolith.TestingDataCreator;
 import com.msik404.karmaappmonolith.TestingImageDataCreator;
 import com.msik404.karmaappmonolith.position.ScrollPosition;
+import com.msik404.karmaappmonolith.post.cache.codec.PostDtoCodecConfiguration;
 import com.msik404.karmaappmonolith.post.Visibility;
 import com.msik404.karmaappmonolith.post.dto.PostDto;
+import com.msik404.karmaappmonolith.post.dto.PostWithImageDataDto;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
@@ -26,7 +29,12 @@ import org.testcontainers.utility.DockerImageName;
 import static org.junit.jupiter.api.Assertions.*;
 
 @Testcontainers
-@SpringBootTest(classes = {ObjectMapper.class, RedisConfiguration.class, PostRedisCache.class})
+@SpringBootTest(classes = {
+        ObjectMapper.class,
+        RedisConfiguration.class,
+        PostDtoCodecConfiguration.class,
+        PostRedisCache.class
+})
 class PostRedisCacheTest {
 
     private final RedisConnectionFactory redisConnectionFactory;
@@ -78,7 +86,8 @@ class PostRedisCacheTest {
     }
 
     /**
-     * This comparator is made so to mimic redis ordered set reversed range retrieval order.
+     * This comparator is made so to mimic redis ordered set reversed range retrieval order, which is the same as
+     * database key set pagination order.
      */
     static class CachedPostComparator implements Comparator<PostDto> {
 
@@ -86,9 +95,7 @@ class PostRedisCacheTest {
         public int compare(@NonNull PostDto postOne, @NonNull PostDto postTwo) {
 
             if (postOne.getKarmaScore().equals(postTwo.getKarmaScore())) {
-                String postKeyOne = getPostKey(postOne.getId());
-                String postKeyTwo = getPostKey(postTwo.getId());
-                return -postKeyOne.compareTo(postKeyTwo);
+                return postOne.getId().compareTo(postTwo.getId());
             }
             return -postOne.getKarmaScore().compareTo(postTwo.getKarmaScore());
         }
@@ -155,6 +162,83 @@ class PostRedisCacheTest {
         }
     }
 
+    @Test
+    void reinitializeCache_IncrementalModeAndTwoPostsOneWithChangedScore_CacheHasOnlyTheseTwoPostsInNewOrder() {
+
+        // given
+        PostDto firstPost = TEST_CACHED_POSTS.get(0);
+        PostDto secondPost = TEST_CACHED_POSTS.get(1);
+        PostDto secondPostWithChangedScore = getPostDtoForTesting(
+                secondPost.getUserId(),
+                secondPost.getId(),
+                firstPost.getKarmaScore() + 1
+        );
+        List<PostDto> posts = List.of(secondPostWithChangedScore, firstPost);
+
+        // when
+        redisCache.reinitializeCache(posts, CacheRebuildMode.INCREMENTAL);
+
+        // then
+        assertEquals(posts.size(), redisCache.getZSetSize());
+
+        Optional<List<PostDto>> optionalCachedPosts = redisCache.findTopNCached(posts.size());
+
+        assertTrue(optionalCachedPosts.isPresent());
+        assertEquals(posts, optionalCachedPosts.get());
+    }
+
+    @Test
+    void beginRebuild_SwapModeAndChunkIsAddedButRebuildIsNotCommitted_PreviousCacheContentIsVisible() {
+
+        // given
+        PostRedisCache.Rebuild rebuild = redisCache.beginRebuild(CacheRebuildMode.SWAP);
+
+        // when
+        rebuild.addChunk(TEST_CACHED_POSTS.subList(0, 2));
+
+        // then
+        assertEquals(TEST_CACHED_POSTS.size(), redisCache.getZSetSize());
+    }
+
+    @Test
+    void beginRebuild_SwapModeAndTwoChunksAreAddedAndCommitted_CacheHasPostsFromBothChunks() {
+
+        // given
+        int postsInCacheAmount = 4;
+        List<PostDto> posts = TEST_CACHED_POSTS.subList(0, postsInCacheAmount);
+
+        PostRedisCache.Rebuild rebuild = redisCache.beginRebuild(CacheRebuildMode.SWAP);
+        rebuild.addChunk(posts.subList(0, 2));
+        rebuild.addChunk(posts.subList(2, postsInCacheAmount));
+
+        // when
+        boolean isCommitted = rebuild.commit();
+
+        // then
+        assertTrue(isCommitted);
+        assertFalse(redisCache.isEmpty());
+        assertEquals(postsInCacheAmount, redisCache.getZSetSize());
+
+        Optional<List<PostDto>> optionalCachedPosts = redisCache.findTopNCached(postsInCacheAmount);
+
+        assertTrue(optionalCachedPosts.isPresent());
+        assertEquals(posts, optionalCachedPosts.get());
+    }
+
+    @Test
+    void beginRebuild_NoChunkIsAdded_CommitShouldNotChangeCache() {
+
+        // given
+        PostRedisCache.Rebuild rebuild = redisCache.beginRebuild(CacheRebuildMode.INCREMENTAL);
+
+        // when
+        boolean isCommitted = rebuild.commit();
+
+        // then
+        assertFalse(isCommitted);
+        assertEquals(TEST_CACHED_POSTS.size(), redisCache.getZSetSize());
+    }
+
     @Test
     void isEmpty_CacheIsNotEmpty_False() {
         assertFalse(redisCache.isEmpty());
@@ -222,6 +306,138 @@ class PostRedisCacheTest {
         }
     }
 
+    @Test
+    void findTopNCached_SizeIsGreaterThanCachedPostsAmount_EmptyOptional() {
+
+        // given
+        int size = TEST_CACHED_POSTS.size() + 1;
+
+        // when
+        Optional<List<PostDto>> optionalCachedPosts = redisCache.findTopNCached(size);
+
+        // then
+        assertTrue(optionalCachedPosts.isEmpty());
+    }
+
+    @Test
+    void findNextNCached_NextSizeIsGreaterThanPostsLeftAfterPosition_EmptyOptional() {
+
+        // given
+        int topSize = 2;
+        int nextSize = TEST_CACHED_POSTS.size() - topSize + 1;
+
+        PostDto lastPost = TEST_CACHED_POSTS.get(topSize - 1);
+        ScrollPosition position = new ScrollPosition(lastPost.getId(), lastPost.getKarmaScore());
+
+        // when
+        Optional<List<PostDto>> optionalNextCachedPosts = redisCache.findNextNCached(nextSize, position);
+
+        // then
+        assertTrue(optionalNextCachedPosts.isEmpty());
+    }
+
+    @Test
+    void findNextNCached_PositionPostIsNotCachedButHasTopKarmaScore_PostsAfterPositionFound() {
+
+        // given
+        int nextSize = 2;
+
+        // post with the highest id has karmaScore of the top post, so it would be right after the top post.
+        PostDto topPost = TEST_CACHED_POSTS.get(0);
+        long nonCachedPostId = 404;
+        ScrollPosition position = new ScrollPosition(nonCachedPostId, topPost.getKarmaScore());
+
+        // when
+        Optional<List<PostDto>> optionalNextCachedPosts = redisCache.findNextNCached(nextSize, position);
+
+        // then
+        assertTrue(optionalNextCachedPosts.isPresent());
+        assertEquals(TEST_CACHED_POSTS.subList(1, 1 + nextSize), optionalNextCachedPosts.get());
+    }
+
+    @Test
+    void findNextNCached_PositionKarmaScoreIsHigherThanAnyCachedOne_TopPostsFound() {
+
+        // given
+        int nextSize = 2;
+        PostDto topPost = TEST_CACHED_POSTS.get(0);
+        ScrollPosition position = new ScrollPosition(topPost.getId(), topPost.getKarmaScore() + 1);
+
+        // when
+        Optional<List<PostDto>> optionalNextCachedPosts = redisCache.findNextNCached(nextSize, position);
+
+        // then
+        assertTrue(optionalNextCachedPosts.isPresent());
+        assertEquals(TEST_CACHED_POSTS.subList(0, nextSize), optionalNextCachedPosts.get());
+    }
+
+    @Test
+    void findNextNCached_TenThousandPostsHaveTheSameKarmaScoreAndPositionIsInTheMiddleOfThem_ExactNextPageFound() {
+
+        // given
+        int duplicatesAmount = 10_000;
+        long userId = 1;
+        long sameKarmaScore = 0;
+
+        List<PostDto> posts = new ArrayList<>(duplicatesAmount + 2);
+        posts.add(getPostDtoForTesting(userId, duplicatesAmount + 1, 10));
+        for (long postId = 1; postId <= duplicatesAmount; postId++) {
+            posts.add(getPostDtoForTesting(userId, postId, sameKarmaScore));
+        }
+        posts.add(getPostDtoForTesting(userId, duplicatesAmount + 2, -1));
+        posts.sort(new CachedPostComparator());
+
+        redisCache.reinitializeCache(posts);
+
+        int size = 100;
+        int positionIdx = 7_777;
+        PostDto positionPost = posts.get(positionIdx);
+        ScrollPosition position = new ScrollPosition(positionPost.getId(), positionPost.getKarmaScore());
+
+        // when
+        Optional<List<PostDto>> optionalNextCachedPosts = redisCache.findNextNCached(size, position);
+
+        // then
+        assertTrue(optionalNextCachedPosts.isPresent());
+        assertEquals(posts.subList(positionIdx + 1, positionIdx + 1 + size), optionalNextCachedPosts.get());
+    }
+
+    @Test
+    void findNextNCached_TenThousandPostsHaveTheSameKarmaScoreAndAllPagesAreRequested_AllPostsFoundInOrder() {
+
+        // given
+        int duplicatesAmount = 10_000;
+        long userId = 1;
+        long sameKarmaScore = 0;
+
+        List<PostDto> posts = new ArrayList<>(duplicatesAmount);
+        for (long postId = 1; postId <= duplicatesAmount; postId++) {
+            posts.add(getPostDtoForTesting(userId, postId, sameKarmaScore));
+        }
+        posts.sort(new CachedPostComparator());
+
+        redisCache.reinitializeCache(posts);
+
+        int size = 1_000;
+
+        // when
+        List<PostDto> scrolledPosts = new ArrayList<>(duplicatesAmount);
+
+        Optional<List<PostDto>> optionalPage = redisCache.findTopNCached(size);
+        while (optionalPage.isPresent()) {
+            List<PostDto> page = optionalPage.get();
+            scrolledPosts.addAll(page);
+            PostDto lastPost = page.get(page.size() - 1);
+            optionalPage = redisCache.findNextNCached(
+                    size,
+                    new ScrollPosition(lastPost.getId(), lastPost.getKarmaScore())
+            );
+        }
+
+        // then
+        assertEquals(posts, scrolledPosts);
+    }
+
     @Test
     void cacheImage_PostIdIsTopAndDataIsTextAsBytes_GetCachedImage() {
 
@@ -313,6 +529,45 @@ class PostRedisCacheTest {
         assertTrue(newScore.isEmpty());
     }
 
+    @Test
+    void updateKarmaScoresIfPresent_TwoCachedPostsAndOneNonExistent_ScoresOfCachedPostsAreUpdated() {
+
+        // given
+        PostDto firstPost = TEST_CACHED_POSTS.get(0);
+        PostDto lastPost = TEST_CACHED_POSTS.get(TEST_CACHED_POSTS.size() - 1);
+        long nonExistentPostId = 404;
+
+        Map<Long, Long> deltas = Map.of(
+                firstPost.getId(), -3L,
+                lastPost.getId(), 2L,
+                nonExistentPostId, 1L
+        );
+
+        // when
+        Map<Long, Double> newScores = redisCache.updateKarmaScoresIfPresent(deltas);
+
+        // then
+        assertEquals(2, newScores.size());
+        assertEquals((double) (firstPost.getKarmaScore() - 3), newScores.get(firstPost.getId()));
+        assertEquals((double) (lastPost.getKarmaScore() + 2), newScores.get(lastPost.getId()));
+        assertFalse(newScores.containsKey(nonExistentPostId));
+    }
+
+    @Test
+    void updateKarmaScoresIfPresent_PostBodyIsMissing_GhostMemberIsRemovedAndScoreIsNotReturned() {
+
+        // given
+        PostDto post = TEST_CACHED_POSTS.get(0);
+        deleteCachedPostBody(post.getId());
+
+        // when
+        Map<Long, Double> newScores = redisCache.updateKarmaScoresIfPresent(Map.of(post.getId(), 1L));
+
+        // then
+        assertTrue(newScores.isEmpty());
+        assertEquals(TEST_CACHED_POSTS.size() - 1, redisCache.getZSetSize());
+    }
+
     @Test
     void deletePostFromCache_PostIdIsTop_PostGotDeletedAndNewOrderIsInPlace() {
 
@@ -342,6 +597,44 @@ class PostRedisCacheTest {
         }
     }
 
+    @Test
+    void trimToMaxCachedPosts_TwoPostsMoreThanMaxAreCached_TwoLowestRankedPostsAreRemoved() {
+
+        // given
+        int excess = 2;
+        int postsAmount = PostRedisCache.getMaxCachedPosts() + excess;
+        long userId = 1;
+
+        List<PostDto> posts = new ArrayList<>(postsAmount);
+        for (long postId = 1; postId <= postsAmount; postId++) {
+            posts.add(getPostDtoForTesting(userId, postId, postsAmount - postId));
+        }
+        redisCache.reinitializeCache(posts);
+
+        // when
+        long removed = redisCache.trimToMaxCachedPosts();
+
+        // then
+        assertEquals(excess, removed);
+        assertEquals(PostRedisCache.getMaxCachedPosts(), redisCache.getZSetSize());
+
+        Optional<List<PostDto>> optionalCachedPosts = redisCache.findTopNCached(PostRedisCache.getMaxCachedPosts());
+
+        assertTrue(optionalCachedPosts.isPresent());
+        assertEquals(posts.subList(0, PostRedisCache.getMaxCachedPosts()), optionalCachedPosts.get());
+    }
+
+    @Test
+    void trimToMaxCachedPosts_LessThanMaxPostsAreCached_NothingIsRemoved() {
+
+        // when
+        long removed = redisCache.trimToMaxCachedPosts();
+
+        // then
+        assertEquals(0, removed);
+        assertEquals(TEST_CACHED_POSTS.size(), redisCache.getZSetSize());
+    }
+
     @Test
     void isKarmaScoreGreaterThanLowestScoreInZSet_KarmaScoreIsGreater_True() {
 
@@ -455,4 +748,235 @@ class PostRedisCacheTest {
         final Optional<byte[]> optionalCachedImageData = redisCache.getCachedImage(postId);
         assertFalse(optionalCachedImageData.isPresent());
     }
-}
\ No newline at end of file
+
+    @NonNull
+    private List<PostDto> reinitializeCacheWithMaxCachedPosts() {
+
+        int postsAmount = PostRedisCache.getMaxCachedPosts();
+        long userId = 1;
+
+        List<PostDto> posts = new ArrayList<>(postsAmount);
+        for (long postId = 1; postId <= postsAmount; postId++) {
+            posts.add(getPostDtoForTesting(userId, postId, postsAmount - postId));
+        }
+        redisCache.reinitializeCache(posts);
+
+        return posts;
+    }
+
+    @Test
+    void insertPost_CacheIsFullAndPostHasHigherScoreThanLowestCachedPost_LowestPostAndItsImageShouldBeEvicted() {
+
+        // given
+        List<PostDto> posts = reinitializeCacheWithMaxCachedPosts();
+
+        PostDto lowestPost = posts.get(posts.size() - 1);
+        assertTrue(redisCache.cacheImage(lowestPost.getId(), TestingImageDataCreator.getTestingImage()));
+
+        long postId = posts.size() + 1;
+        PostDto postToBeInserted = getPostDtoForTesting(2, postId, posts.get(0).getKarmaScore() + 1);
+
+        // when
+        boolean isInserted = redisCache.insertPost(postToBeInserted, null);
+
+        // then
+        assertTrue(isInserted);
+        assertEquals(PostRedisCache.getMaxCachedPosts(), redisCache.getZSetSize());
+        assertTrue(redisCache.getCachedImage(lowestPost.getId()).isEmpty());
+
+        Optional<List<PostDto>> optionalCachedPosts = redisCache.findTopNCached(PostRedisCache.getMaxCachedPosts());
+        assertTrue(optionalCachedPosts.isPresent());
+        List<PostDto> cachedPosts = optionalCachedPosts.get();
+
+        assertEquals(postToBeInserted, cachedPosts.get(0));
+        assertFalse(cachedPosts.contains(lowestPost));
+    }
+
+    @Test
+    void insertPost_CacheIsFullAndPostHasLowestScore_PostShouldNotBeCached() {
+
+        // given
+        List<PostDto> posts = reinitializeCacheWithMaxCachedPosts();
+
+        long postId = posts.size() + 1;
+        PostDto lowestPost = posts.get(posts.size() - 1);
+        PostDto postToBeInserted = getPostDtoForTesting(2, postId, lowestPost.getKarmaScore() - 1);
+        byte[] imageData = TestingImageDataCreator.getTestingImage();
+
+        // when
+        boolean isInserted = redisCache.insertPost(postToBeInserted, imageData);
+
+        // then
+        assertFalse(isInserted);
+        assertEquals(PostRedisCache.getMaxCachedPosts(), redisCache.getZSetSize());
+        assertTrue(redisCache.getCachedImage(postId).isEmpty());
+
+        Optional<List<PostDto>> optionalCachedPosts = redisCache.findTopNCached(PostRedisCache.getMaxCachedPosts());
+        assertTrue(optionalCachedPosts.isPresent());
+        assertEquals(posts, optionalCachedPosts.get());
+    }
+
+    @Test
+    void admitPost_CacheIsNotFull_PostShouldBeAdmitted() {
+
+        // given
+        PostDto lowestPost = TEST_CACHED_POSTS.get(TEST_CACHED_POSTS.size() - 1);
+        PostDto postToBeAdmitted = getPostDtoForTesting(2, 404, lowestPost.getKarmaScore() - 1);
+
+        List<PostDto> groundTruthPosts = getPostsForTesting();
+        groundTruthPosts.add(postToBeAdmitted);
+
+        // when
+        boolean isAdmitted = redisCache.admitPost(postToBeAdmitted, null);
+
+        // then
+        assertTrue(isAdmitted);
+
+        Optional<List<PostDto>> optionalCachedPosts = redisCache.findTopNCached(groundTruthPosts.size());
+        assertTrue(optionalCachedPosts.isPresent());
+        assertEquals(groundTruthPosts, optionalCachedPosts.get());
+    }
+
+    @Test
+    void admitPost_CacheIsEmpty_PostShouldNotBeAdmittedAndCacheShouldStayEmpty() {
+
+        // given
+        redisConnectionFactory.getConnection().serverCommands().flushAll();
+        PostDto postToBeAdmitted = getPostDtoForTesting(2, 404, 0);
+
+        // when
+        boolean isAdmitted = redisCache.admitPost(postToBeAdmitted, TestingImageDataCreator.getTestingImage());
+
+        // then
+        assertFalse(isAdmitted);
+        assertTrue(redisCache.isEmpty());
+        assertTrue(redisCache.getCachedImage(postToBeAdmitted.getId()).isEmpty());
+    }
+
+    @Test
+    void admitPost_CacheIsFullAndPostHasHigherScoreThanLowestCachedPost_PostShouldBeAdmittedAndLowestPostEvicted() {
+
+        // given
+        List<PostDto> posts = reinitializeCacheWithMaxCachedPosts();
+        PostDto lowestPost = posts.get(posts.size() - 1);
+        assertTrue(redisCache.cacheImage(lowestPost.getId(), TestingImageDataCreator.getTestingImage()));
+
+        PostDto postToBeAdmitted = getPostDtoForTesting(2, posts.size() + 1, lowestPost.getKarmaScore() + 1);
+        byte[] imageData = TestingImageDataCreator.getTestingImage();
+
+        // when
+        boolean isAdmitted = redisCache.admitPost(postToBeAdmitted, imageData);
+
+        // then
+        assertTrue(isAdmitted);
+        assertEquals(PostRedisCache.getMaxCachedPosts(), redisCache.getZSetSize());
+        assertTrue(redisCache.getCachedImage(lowestPost.getId()).isEmpty());
+        assertTrue(redisCache.getCachedImage(postToBeAdmitted.getId()).isPresent());
+    }
+
+    @Test
+    void admitPosts_CacheIsFullAndOnlyOnePostHasHigherScoreThanLowestCachedPost_OnlyThisPostShouldBeAdmitted() {
+
+        // given
+        List<PostDto> posts = reinitializeCacheWithMaxCachedPosts();
+        PostDto lowestPost = posts.get(posts.size() - 1);
+
+        PostDto postToBeAdmitted = getPostDtoForTesting(2, posts.size() + 1, lowestPost.getKarmaScore() + 1);
+        PostDto postNotToBeAdmitted = getPostDtoForTesting(2, posts.size() + 2, lowestPost.getKarmaScore());
+        byte[] imageData = TestingImageDataCreator.getTestingImage();
+
+        // when
+        long admittedPosts = redisCache.admitPosts(List.of(
+                new PostWithImageDataDto(postToBeAdmitted, imageData),
+                new PostWithImageDataDto(postNotToBeAdmitted, imageData)
+        ));
+
+        // then
+        assertEquals(1L, admittedPosts);
+        assertEquals(PostRedisCache.getMaxCachedPosts(), redisCache.getZSetSize());
+        assertTrue(redisCache.getCachedImage(postToBeAdmitted.getId()).isPresent());
+        assertTrue(redisCache.getCachedImage(postNotToBeAdmitted.getId()).isEmpty());
+    }
+
+    @Test
+    void admitPost_CacheIsFullAndPostHasTheSameScoreAsLowestCachedPost_PostShouldNotBeAdmitted() {
+
+        // given
+        List<PostDto> posts = reinitializeCacheWithMaxCachedPosts();
+        PostDto lowestPost = posts.get(posts.size() - 1);
+
+        PostDto postToBeAdmitted = getPostDtoForTesting(2, posts.size() + 1, lowestPost.getKarmaScore());
+        byte[] imageData = TestingImageDataCreator.getTestingImage();
+
+        // when
+        boolean isAdmitted = redisCache.admitPost(postToBeAdmitted, imageData);
+
+        // then
+        assertFalse(isAdmitted);
+        assertEquals(PostRedisCache.getMaxCachedPosts(), redisCache.getZSetSize());
+        assertTrue(redisCache.getCachedImage(postToBeAdmitted.getId()).isEmpty());
+
+        Optional<List<PostDto>> optionalCachedPosts = redisCache.findTopNCached(PostRedisCache.getMaxCachedPosts());
+        assertTrue(optionalCachedPosts.isPresent());
+        assertEquals(posts, optionalCachedPosts.get());
+    }
+
+    private void deleteCachedPostBody(long postId) {
+
+        redisConnectionFactory.getConnection().hashCommands().hDel(
+                PostRedisCache.POST_HASH_KEY.getBytes(),
+                PostRedisCache.getPostKey(postId).getBytes()
+        );
+    }
+
+    @Test
+    void updateKarmaScoreIfPresent_PostIsInZSetButItsBodyIsMissing_EmptyOptionalAndPostIsRemovedFromZSet() {
+
+        // given
+        PostDto post = TEST_CACHED_POSTS.get(0);
+        deleteCachedPostBody(post.getId());
+
+        // when
+        OptionalDouble optionalNewScore = redisCache.updateKarmaScoreIfPresent(post.getId(), 1);
+
+        // then
+        assertTrue(optionalNewScore.isEmpty());
+        assertEquals(TEST_CACHED_POSTS.size() - 1, redisCache.getZSetSize());
+    }
+
+    @Test
+    void findTopNCached_BodyOfOnePostIsMissing_EmptyOptionalAndCacheHealsItself() {
+
+        // given
+        int size = 3;
+        PostDto ghostPost = TEST_CACHED_POSTS.get(1);
+        deleteCachedPostBody(ghostPost.getId());
+
+        // when
+        Optional<List<PostDto>> optionalCachedPosts = redisCache.findTopNCached(size);
+
+        // then
+        assertTrue(optionalCachedPosts.isEmpty());
+        assertEquals(TEST_CACHED_POSTS.size() - 1, redisCache.getZSetSize());
+
+        List<PostDto> groundTruthPosts = new ArrayList<>(TEST_CACHED_POSTS);
+        groundTruthPosts.remove(ghostPost);
+
+        Optional<List<PostDto>> optionalHealedCachedPosts = redisCache.findTopNCached(size);
+        assertTrue(optionalHealedCachedPosts.isPresent());
+        assertEquals(groundTruthPosts.subList(0, size), optionalHealedCachedPosts.get());
+    }
+
+    @Test
+    void keys_KeysUsedByScripts_AllKeysAreInTheSameClusterSlot() {
+
+        // when
+        int zSetSlot = ClusterSlotHashUtil.calculateSlot(PostRedisCache.KARMA_SCORE_ZSET_KEY);
+
+        // then
+        assertEquals(zSetSlot, ClusterSlotHashUtil.calculateSlot(PostRedisCache.POST_HASH_KEY));
+        assertEquals(zSetSlot, ClusterSlotHashUtil.calculateSlot(PostRedisCache.getPostImageKey(1)));
+        assertEquals(zSetSlot, ClusterSlotHashUtil.calculateSlot(PostRedisCache.getPostImageKey(Long.MAX_VALUE)));
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.msik404.karmaappmonolith.post.cache.codec;
+
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.msik404.karmaappmonolith.post.Visibility;
+import com.msik404.karmaappmonolith.post.dto.PostDto;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares json and binary PostDto codecs used by PostRedisCache. Decode cost is what matters on the feed, because
+ * every cached page of 100 posts is decoded on each request. Bytes stored per post are printed in setup.
+ * <p>
+ * Run with: ./mvnw test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath org.openjdk.jmh.Main PostDtoCodecBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostDtoCodecBenchmark {
+
+    private JsonPostDtoCodec jsonCodec;
+    private BinaryPostDtoCodec binaryCodec;
+
+    private PostDto post;
+    private byte[] jsonEncoded;
+    private byte[] binaryEncoded;
+
+    @Setup
+    public void setUp() {
+
+        jsonCodec = new JsonPostDtoCodec(new ObjectMapper());
+        binaryCodec = new BinaryPostDtoCodec();
+
+        post = new PostDto(
+                1_234_567L,
+                45_678L,
+                "username_45678",
+                "Example headline of a post which is on the front page",
+                "Example text of a post. ".repeat(10),
+                1_337L,
+                Visibility.ACTIVE
+        );
+
+        jsonEncoded = jsonCodec.encode(post);
+        binaryEncoded = binaryCodec.encode(post);
+
+        System.out.printf("%nBytes stored per post: json=%d, binary=%d%n", jsonEncoded.length, binaryEncoded.length);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() {
+        return jsonCodec.encode(post);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return binaryCodec.encode(post);
+    }
+
+    @Benchmark
+    public PostDto decodeJson() {
+        return jsonCodec.decode(jsonEncoded);
+    }
+
+    @Benchmark
+    public PostDto decodeBinary() {
+        return binaryCodec.decode(binaryEncoded);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        var options = new OptionsBuilder()
+                .include(PostDtoCodecBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+
+}
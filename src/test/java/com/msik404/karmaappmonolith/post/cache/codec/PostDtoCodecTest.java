@@ -0,0 +1,140 @@
+package com.msik404.karmaappmonolith.post.cache.codec;
+
+import java.util.Arrays;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.msik404.karmaappmonolith.post.Visibility;
+import com.msik404.karmaappmonolith.post.dto.PostDto;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostDtoCodecTest {
+
+    private final JsonPostDtoCodec jsonCodec = new JsonPostDtoCodec(new ObjectMapper());
+    private final BinaryPostDtoCodec binaryCodec = new BinaryPostDtoCodec();
+    private final MigratingPostDtoCodec binaryWritingCodec =
+            new MigratingPostDtoCodec(binaryCodec, binaryCodec, jsonCodec);
+    private final MigratingPostDtoCodec jsonWritingCodec =
+            new MigratingPostDtoCodec(jsonCodec, binaryCodec, jsonCodec);
+
+    private static PostDto getPostForTesting() {
+
+        return new PostDto(
+                404L,
+                405L,
+                "username_405",
+                "Zażółć gęślą jaźń",
+                "Some text",
+                -7L,
+                Visibility.HIDDEN
+        );
+    }
+
+    @Test
+    void binaryCodec_AllFieldsAreSet_DecodedPostEqualsOriginal() {
+
+        // given
+        PostDto post = getPostForTesting();
+
+        // when
+        PostDto decoded = binaryCodec.decode(binaryCodec.encode(post));
+
+        // then
+        assertEquals(post, decoded);
+    }
+
+    @Test
+    void binaryCodec_OptionalFieldsAreNullAndValuesAreExtreme_DecodedPostEqualsOriginal() {
+
+        // given
+        var post = new PostDto(Long.MAX_VALUE, Long.MIN_VALUE, "", null, null, 0L, null);
+
+        // when
+        PostDto decoded = binaryCodec.decode(binaryCodec.encode(post));
+
+        // then
+        assertEquals(post, decoded);
+    }
+
+    @Test
+    void binaryCodec_SamePost_EncodedValueIsSmallerThanJson() {
+
+        // given
+        PostDto post = getPostForTesting();
+
+        // when
+        int binarySize = binaryCodec.encode(post).length;
+        int jsonSize = jsonCodec.encode(post).length;
+
+        // then
+        assertTrue(binarySize < jsonSize);
+    }
+
+    @Test
+    void binaryCodec_ValueIsJson_PostDtoCodecExceptionShouldBeThrown() {
+
+        // given
+        byte[] json = jsonCodec.encode(getPostForTesting());
+
+        // then                                           // when
+        assertThrows(PostDtoCodecException.class, () -> binaryCodec.decode(json));
+    }
+
+    @Test
+    void binaryCodec_ValueIsTruncated_PostDtoCodecExceptionShouldBeThrown() {
+
+        // given
+        byte[] encoded = binaryCodec.encode(getPostForTesting());
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 3);
+
+        // then                                           // when
+        assertThrows(PostDtoCodecException.class, () -> binaryCodec.decode(truncated));
+    }
+
+    @Test
+    void migratingCodec_WritesBinaryAndValueIsJson_JsonIsDecoded() {
+
+        // given
+        PostDto post = getPostForTesting();
+        byte[] json = jsonCodec.encode(post);
+
+        // when
+        PostDto decoded = binaryWritingCodec.decode(json);
+
+        // then
+        assertEquals(post, decoded);
+    }
+
+    @Test
+    void migratingCodec_WritesJsonAndValueIsBinary_BinaryIsDecoded() {
+
+        // given
+        PostDto post = getPostForTesting();
+        byte[] binary = binaryCodec.encode(post);
+
+        // when
+        PostDto decoded = jsonWritingCodec.decode(binary);
+
+        // then
+        assertEquals(post, decoded);
+    }
+
+    @Test
+    void migratingCodec_Encode_FormatOfWriteCodecIsWritten() {
+
+        // given
+        PostDto post = getPostForTesting();
+
+        // when
+        byte[] binary = binaryWritingCodec.encode(post);
+        byte[] json = jsonWritingCodec.encode(post);
+
+        // then
+        assertTrue(BinaryPostDtoCodec.isBinaryEncoded(binary));
+        assertFalse(BinaryPostDtoCodec.isBinaryEncoded(json));
+        assertEquals(post, binaryWritingCodec.decode(binary));
+        assertEquals(post, jsonWritingCodec.decode(json));
+    }
+
+}
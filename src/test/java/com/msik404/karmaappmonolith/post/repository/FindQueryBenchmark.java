@@ -0,0 +1,263 @@
+package com.msik404.karmaappmonolith.post.repository;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.msik404.karmaappmonolith.karma.KarmaScore;
+import com.msik404.karmaappmonolith.karma.PostKarmaDelta;
+import com.msik404.karmaappmonolith.karma.PostKarmaShard;
+import com.msik404.karmaappmonolith.position.ScrollPosition;
+import com.msik404.karmaappmonolith.post.Post;
+import com.msik404.karmaappmonolith.post.Visibility;
+import com.msik404.karmaappmonolith.post.dto.PostDto;
+import com.msik404.karmaappmonolith.post.dto.PostRatingResponse;
+import com.msik404.karmaappmonolith.user.User;
+import jakarta.persistence.criteria.*;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.service.UnknownUnwrapTypeException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+/**
+ * Cost of a feed query per request: criteria query built from scratch on each call, as it was done before, is compared
+ * with HQL string of a finder taken from FindQueryCache. Queries are created, rendered to SQL, bound and executed by
+ * Hibernate, with the same settings as the application, against connections whose statements return no rows. Database
+ * round trip is therefore the only part of a request which is not measured.
+ * <p>
+ * Run with: ./mvnw test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath org.openjdk.jmh.Main FindQueryBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class FindQueryBenchmark {
+
+    private static final int SIZE = 100;
+    private static final List<Visibility> VISIBILITIES = List.of(Visibility.ACTIVE, Visibility.HIDDEN);
+    private static final ScrollPosition POSITION = new ScrollPosition(404, 10);
+    private static final String USERNAME = "username";
+    private static final long CLIENT_ID = 404;
+
+    /**
+     * Every statement of these connections returns an empty result set and every other call returns a default value.
+     */
+    private static class EmptyResultConnectionProvider implements ConnectionProvider {
+
+        @NonNull
+        private static <T> T stub(@NonNull Class<T> type) {
+            return type.cast(Proxy.newProxyInstance(
+                    type.getClassLoader(), new Class<?>[]{type}, EmptyResultConnectionProvider::invoke));
+        }
+
+        @Nullable
+        private static Object invoke(@NonNull Object proxy, @NonNull Method method, @Nullable Object[] args) {
+
+            Class<?> returnType = method.getReturnType();
+            return switch (method.getName()) {
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "toString" -> returnType.getSimpleName();
+                default -> {
+                    if (returnType.equals(PreparedStatement.class)
+                            || returnType.equals(Statement.class)
+                            || returnType.equals(ResultSet.class)) {
+                        yield stub(returnType);
+                    }
+                    if (returnType.equals(boolean.class)) {
+                        yield false;
+                    }
+                    if (returnType.equals(int.class)) {
+                        yield 0;
+                    }
+                    if (returnType.equals(long.class)) {
+                        yield 0L;
+                    }
+                    yield null;
+                }
+            };
+        }
+
+        @Override
+        public Connection getConnection() {
+            return stub(Connection.class);
+        }
+
+        @Override
+        public void closeConnection(Connection connection) {
+        }
+
+        @Override
+        public boolean supportsAggressiveRelease() {
+            return false;
+        }
+
+        @SuppressWarnings("rawtypes")
+        @Override
+        public boolean isUnwrappableAs(Class unwrapType) {
+            return false;
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> unwrapType) {
+            throw new UnknownUnwrapTypeException(unwrapType);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Queries {
+
+        private SessionFactory sessionFactory;
+        private FindQueryCache queryCache;
+
+        @Setup
+        public void setUp() {
+
+            var configuration = new Configuration()
+                    .addAnnotatedClass(User.class)
+                    .addAnnotatedClass(Post.class)
+                    .addAnnotatedClass(KarmaScore.class)
+                    .addAnnotatedClass(PostKarmaShard.class)
+                    .addAnnotatedClass(PostKarmaDelta.class)
+                    .setProperty(AvailableSettings.DIALECT, PostgreSQLDialect.class.getName())
+                    // There is no database to read metadata from.
+                    .setProperty("hibernate.temp.use_jdbc_metadata_defaults", "false");
+            configuration.getProperties().put(AvailableSettings.CONNECTION_PROVIDER, new EmptyResultConnectionProvider());
+
+            sessionFactory = configuration.buildSessionFactory();
+
+            queryCache = new FindQueryCache();
+        }
+
+        @TearDown
+        public void tearDown() {
+            sessionFactory.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Sessions {
+
+        private Session session;
+
+        @Setup
+        public void setUp(Queries queries) {
+            session = queries.sessionFactory.openSession();
+        }
+
+        @TearDown
+        public void tearDown() {
+            session.close();
+        }
+    }
+
+    @NonNull
+    private static Predicate nextPagePredicate(@NonNull CriteriaBuilder cb, @NonNull Root<Post> postRoot) {
+
+        return cb.or(
+                cb.lessThan(postRoot.get("karmaScore"), POSITION.karmaScore()),
+                cb.and(
+                        cb.equal(postRoot.get("karmaScore"), POSITION.karmaScore()),
+                        cb.greaterThan(postRoot.get("id"), POSITION.postId())));
+    }
+
+    @Benchmark
+    public List<PostDto> nextPostsWithUsernameCached(Queries queries, Sessions sessions) {
+
+        var parameters = new FindParameters(POSITION, USERNAME, null, null);
+
+        return queries.queryCache.getPostsFinder(VISIBILITIES, parameters)
+                .createQuery(sessions.session, parameters)
+                .setMaxResults(SIZE)
+                .getResultList();
+    }
+
+    @Benchmark
+    public List<PostDto> nextPostsWithUsernameBuiltPerCall(Queries queries, Sessions sessions) {
+
+        CriteriaBuilder cb = queries.sessionFactory.getCriteriaBuilder();
+        CriteriaQuery<PostDto> criteriaQuery = cb.createQuery(PostDto.class);
+        Root<Post> postRoot = criteriaQuery.from(Post.class);
+        Join<Post, User> userJoin = postRoot.join("user");
+
+        criteriaQuery.select(cb.construct(
+                PostDto.class,
+                postRoot.get("id"),
+                postRoot.get("user").get("id"),
+                userJoin.get("username"),
+                postRoot.get("headline"),
+                postRoot.get("text"),
+                postRoot.get("karmaScore"),
+                postRoot.get("visibility")));
+        criteriaQuery.where(
+                postRoot.get("visibility").in(VISIBILITIES),
+                nextPagePredicate(cb, postRoot),
+                cb.equal(userJoin.get("username"), USERNAME));
+        criteriaQuery.orderBy(cb.desc(postRoot.get("karmaScore")), cb.asc(postRoot.get("id")));
+
+        return sessions.session.createQuery(criteriaQuery)
+                .setMaxResults(SIZE)
+                .getResultList();
+    }
+
+    @Benchmark
+    public List<PostRatingResponse> nextRatingsCached(Queries queries, Sessions sessions) {
+
+        var parameters = new FindParameters(POSITION, null, null, CLIENT_ID);
+
+        return queries.queryCache.getRatingsFinder(VISIBILITIES, parameters)
+                .createQuery(sessions.session, parameters)
+                .setMaxResults(SIZE)
+                .getResultList();
+    }
+
+    @Benchmark
+    public List<PostRatingResponse> nextRatingsBuiltPerCall(Queries queries, Sessions sessions) {
+
+        CriteriaBuilder cb = queries.sessionFactory.getCriteriaBuilder();
+        CriteriaQuery<PostRatingResponse> criteriaQuery = cb.createQuery(PostRatingResponse.class);
+        Root<Post> postRoot = criteriaQuery.from(Post.class);
+        Join<Post, KarmaScore> karmaScoreJoin = postRoot.join("karmaScores", JoinType.LEFT);
+        karmaScoreJoin.on(cb.equal(karmaScoreJoin.get("user").get("id"), CLIENT_ID));
+
+        criteriaQuery.select(cb.construct(
+                PostRatingResponse.class,
+                postRoot.get("id"),
+                karmaScoreJoin.get("isPositive")));
+        criteriaQuery.where(
+                postRoot.get("visibility").in(VISIBILITIES),
+                nextPagePredicate(cb, postRoot));
+        criteriaQuery.orderBy(cb.desc(postRoot.get("karmaScore")), cb.asc(postRoot.get("id")));
+
+        return sessions.session.createQuery(criteriaQuery)
+                .setMaxResults(SIZE)
+                .getResultList();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        var options = new OptionsBuilder()
+                .include(FindQueryBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.msik404.karmaappmonolith.post.repository;
+
+import java.util.List;
+
+import com.msik404.karmaappmonolith.position.ScrollPosition;
+import com.msik404.karmaappmonolith.post.Visibility;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FindQueryShapeTest {
+
+    @Test
+    void of_SameVisibilitiesInDifferentOrderAndDifferentValues_ShapesAreEqual() {
+
+        // given
+        var parameters = new FindParameters(new ScrollPosition(1, 10), "one", null, 1L);
+        var otherParameters = new FindParameters(new ScrollPosition(2, 20), "two", null, 2L);
+
+        // when
+        var shape = FindQueryShape.of(
+                FindNRatings.class, List.of(Visibility.ACTIVE, Visibility.HIDDEN), parameters);
+        var otherShape = FindQueryShape.of(
+                FindNRatings.class, List.of(Visibility.HIDDEN, Visibility.ACTIVE), otherParameters);
+
+        // then
+        assertEquals(shape, otherShape);
+    }
+
+    @Test
+    void of_PaginatedAndNotPaginated_ShapesDiffer() {
+
+        // given
+        List<Visibility> visibilities = List.of(Visibility.ACTIVE);
+
+        // when
+        var topShape = FindQueryShape.of(
+                FindNPosts.class, visibilities, new FindParameters(null, null, 1L, null));
+        var nextShape = FindQueryShape.of(
+                FindNPosts.class, visibilities, new FindParameters(new ScrollPosition(1, 10), null, 1L, null));
+
+        // then
+        assertFalse(topShape.isPaginated());
+        assertTrue(nextShape.isPaginated());
+        assertNotEquals(topShape, nextShape);
+    }
+
+    @Test
+    void of_SameParametersOfDifferentFinders_ShapesDiffer() {
+
+        // given
+        List<Visibility> visibilities = List.of(Visibility.ACTIVE);
+        var parameters = new FindParameters(null, "one", null, 1L);
+
+        // when
+        var postsShape = FindQueryShape.of(FindNPosts.class, visibilities, parameters);
+        var ratingsShape = FindQueryShape.of(FindNRatings.class, visibilities, parameters);
+
+        // then
+        assertNotEquals(postsShape, ratingsShape);
+    }
+
+    @Test
+    void of_NoVisibilities_VisibilitiesAreEmpty() {
+
+        // when
+        var shape = FindQueryShape.of(FindNPosts.class, List.of(), new FindParameters(null, null, null, null));
+
+        // then
+        assertTrue(shape.visibilities().isEmpty());
+    }
+
+}
@@ -0,0 +1,202 @@
+package com.msik404.karmaappmonolith.post.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.msik404.karmaappmonolith.exception.constraint.ConstraintExceptionsHandler;
+import com.msik404.karmaappmonolith.exception.constraint.strategy.ConstraintViolationExceptionErrorMessageExtractionStrategy;
+import com.msik404.karmaappmonolith.exception.constraint.strategy.RoundBraceErrorMassageParseStrategy;
+import com.msik404.karmaappmonolith.post.Post;
+import com.msik404.karmaappmonolith.user.Role;
+import com.msik404.karmaappmonolith.user.User;
+import com.msik404.karmaappmonolith.user.repository.UserCriteriaUpdater;
+import com.msik404.karmaappmonolith.user.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.ClassOrderer;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestClassOrder;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.lang.NonNull;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.support.TestPropertySourceUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Loads posts with PostRepository saveAll in chunks, the same way DataInit does, once with JDBC batching disabled and
+ * once with batched, ordered and rewritten inserts. Rows per second of both runs are printed. Ids are allocated from
+ * pooled sequences in both runs.
+ * <p>
+ * It takes minutes, so it is skipped unless enabled with: ./mvnw test -Dtest=PostBulkInsertBenchmarkTest
+ * -Dbenchmark.bulk-insert=true (-Dbenchmark.bulk-insert.posts=N changes amount of posts, default one million)
+ */
+@Testcontainers
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(initializers = PostBulkInsertBenchmarkTest.DataSourceInitializer.class)
+@Import({
+        BCryptPasswordEncoder.class,
+        UserCriteriaUpdater.class,
+        ConstraintExceptionsHandler.class,
+        ConstraintViolationExceptionErrorMessageExtractionStrategy.class,
+        RoundBraceErrorMassageParseStrategy.class,
+})
+@TestPropertySource(properties = "spring.jpa.show-sql=false")
+@TestClassOrder(ClassOrderer.OrderAnnotation.class)
+@EnabledIfSystemProperty(named = "benchmark.bulk-insert", matches = "true")
+class PostBulkInsertBenchmarkTest {
+
+    private static final int POSTS_AMOUNT = Integer.getInteger("benchmark.bulk-insert.posts", 1_000_000);
+    private static final int USERS_AMOUNT = 1_000;
+    private static final int CHUNK_SIZE = 1_000;
+
+    private static final PostgreSQLContainer<?> POSTGRESQL_CONTAINER =
+            new PostgreSQLContainer<>("postgres:alpine");
+
+    static {
+        POSTGRESQL_CONTAINER.start();
+    }
+
+    public static class DataSourceInitializer
+            implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+        @Override
+        public void initialize(@NonNull ConfigurableApplicationContext applicationContext) {
+            TestPropertySourceUtils.addInlinedPropertiesToEnvironment(
+                    applicationContext,
+                    "spring.datasource.url=" + POSTGRESQL_CONTAINER.getJdbcUrl(),
+                    "spring.datasource.username=" + POSTGRESQL_CONTAINER.getUsername(),
+                    "spring.datasource.password=" + POSTGRESQL_CONTAINER.getPassword()
+            );
+        }
+    }
+
+    @NonNull
+    private static List<User> saveUsers(@NonNull UserRepository userRepository) {
+
+        List<User> users = new ArrayList<>(USERS_AMOUNT);
+        for (int i = 0; i < USERS_AMOUNT; i++) {
+            String username = String.format("benchmark_user_%d", i);
+            // Password is not hashed, BCrypt would dominate time of user inserts.
+            users.add(new User(null, username, username, username, username + "@mail.com", username, Role.USER,
+                    null, null));
+        }
+        return userRepository.saveAll(users);
+    }
+
+    /**
+     * @return Rows per second.
+     */
+    private static double savePostsInChunks(
+            @NonNull List<User> users,
+            @NonNull PostRepository postRepository) {
+
+        long start = System.nanoTime();
+
+        for (int low = 0; low < POSTS_AMOUNT; low += CHUNK_SIZE) {
+            int high = Math.min(low + CHUNK_SIZE, POSTS_AMOUNT);
+            List<Post> postsToSave = new ArrayList<>(high - low);
+            for (int i = low; i < high; i++) {
+                postsToSave.add(new Post(
+                        String.format("Benchmark headline: %d", i),
+                        String.format("Benchmark text: %d", i),
+                        users.get(i % users.size()),
+                        null
+                ));
+            }
+            // Each saveAll runs in its own transaction, so persistence context does not grow between chunks.
+            postRepository.saveAll(postsToSave);
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        return POSTS_AMOUNT / (elapsedNanos / 1e9);
+    }
+
+    private static void runBenchmark(
+            @NonNull String label,
+            @NonNull UserRepository userRepository,
+            @NonNull PostRepository postRepository) {
+
+        List<User> users = saveUsers(userRepository);
+
+        double rowsPerSecond = savePostsInChunks(users, postRepository);
+
+        assertEquals(POSTS_AMOUNT, postRepository.count());
+        System.out.printf("%n%s: inserted %d posts, %.0f rows/sec%n", label, POSTS_AMOUNT, rowsPerSecond);
+    }
+
+    @Nested
+    @Order(1)
+    @TestPropertySource(properties = {
+            "spring.jpa.properties.hibernate.jdbc.batch_size=1",
+            "spring.jpa.properties.hibernate.order_inserts=false",
+            "spring.datasource.hikari.data-source-properties.reWriteBatchedInserts=false",
+    })
+    class WithoutBatching {
+
+        @Autowired
+        private UserRepository userRepository;
+
+        @Autowired
+        private PostRepository postRepository;
+
+        @AfterEach
+        void tearDown() {
+
+            postRepository.deleteAllInBatch();
+            userRepository.deleteAllInBatch();
+        }
+
+        @Test
+        @Transactional(propagation = Propagation.NOT_SUPPORTED)
+        void saveAll_OneMillionPostsInChunks_RowsPerSecondArePrinted() {
+            runBenchmark("Without batching", userRepository, postRepository);
+        }
+
+    }
+
+    @Nested
+    @Order(2)
+    @TestPropertySource(properties = {
+            "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+            "spring.jpa.properties.hibernate.order_inserts=true",
+            "spring.datasource.hikari.data-source-properties.reWriteBatchedInserts=true",
+    })
+    class WithBatching {
+
+        @Autowired
+        private UserRepository userRepository;
+
+        @Autowired
+        private PostRepository postRepository;
+
+        @AfterEach
+        void tearDown() {
+
+            postRepository.deleteAllInBatch();
+            userRepository.deleteAllInBatch();
+        }
+
+        @Test
+        @Transactional(propagation = Propagation.NOT_SUPPORTED)
+        void saveAll_OneMillionPostsInChunks_RowsPerSecondArePrinted() {
+            runBenchmark("With batching", userRepository, postRepository);
+        }
+
+    }
+
+}
@@ -0,0 +1,187 @@
+package com.msik404.karmaappmonolith.post.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.msik404.karmaappmonolith.TestingDataCreator;
+import com.msik404.karmaappmonolith.exception.constraint.ConstraintExceptionsHandler;
+import com.msik404.karmaappmonolith.exception.constraint.strategy.ConstraintViolationExceptionErrorMessageExtractionStrategy;
+import com.msik404.karmaappmonolith.exception.constraint.strategy.RoundBraceErrorMassageParseStrategy;
+import com.msik404.karmaappmonolith.user.Role;
+import com.msik404.karmaappmonolith.user.User;
+import com.msik404.karmaappmonolith.user.repository.UserCriteriaUpdater;
+import com.msik404.karmaappmonolith.user.repository.UserRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.support.TestPropertySourceUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Guards query plans of keyset pagination on a dataset large enough for the planner to prefer indexes only if they
+ * really fit the query.
+ */
+@Testcontainers
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(initializers = PostKeysetIndexTest.DataSourceInitializer.class)
+@Import({
+        BCryptPasswordEncoder.class,
+        UserCriteriaUpdater.class,
+        ConstraintExceptionsHandler.class,
+        ConstraintViolationExceptionErrorMessageExtractionStrategy.class,
+        RoundBraceErrorMassageParseStrategy.class,
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PostKeysetIndexTest {
+
+    private static final int USERS_AMOUNT = 100;
+    private static final int POSTS_AMOUNT = 1_000_000;
+    private static final int PAGE_SIZE = 100;
+
+    private final UserRepository userRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    private static final PostgreSQLContainer<?> POSTGRESQL_CONTAINER =
+            new PostgreSQLContainer<>("postgres:alpine");
+
+    static {
+        POSTGRESQL_CONTAINER.start();
+    }
+
+    public static class DataSourceInitializer
+            implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+        @Override
+        public void initialize(@NonNull ConfigurableApplicationContext applicationContext) {
+            TestPropertySourceUtils.addInlinedPropertiesToEnvironment(
+                    applicationContext,
+                    "spring.datasource.url=" + POSTGRESQL_CONTAINER.getJdbcUrl(),
+                    "spring.datasource.username=" + POSTGRESQL_CONTAINER.getUsername(),
+                    "spring.datasource.password=" + POSTGRESQL_CONTAINER.getPassword()
+            );
+        }
+    }
+
+    @Autowired
+    PostKeysetIndexTest(UserRepository userRepository, JdbcTemplate jdbcTemplate) {
+
+        this.userRepository = userRepository;
+
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    @BeforeAll
+    void setUp() {
+
+        List<User> users = new ArrayList<>(USERS_AMOUNT);
+        for (int i = 0; i < USERS_AMOUNT; i++) {
+            users.add(TestingDataCreator.getUserForTesting(i, Role.USER));
+        }
+        userRepository.saveAll(users);
+
+        // Every tenth post is HIDDEN and every tenth is DELETED, karma scores are spread around zero.
+        jdbcTemplate.update("""
+                INSERT INTO posts (id, headline, text, karma_score, visibility, user_id)
+                SELECT g,
+                       'headline ' || g,
+                       'text ' || g,
+                       (random() * 2000)::bigint - 1000,
+                       CASE g % 10 WHEN 0 THEN 'HIDDEN' WHEN 1 THEN 'DELETED' ELSE 'ACTIVE' END,
+                       u.ids[1 + g % array_length(u.ids, 1)]
+                FROM generate_series(1, ?) AS g,
+                     (SELECT array_agg(id ORDER BY id) AS ids FROM users) AS u
+                """, POSTS_AMOUNT);
+
+        // Index-only scans are chosen only for pages marked all-visible in the visibility map.
+        jdbcTemplate.execute("VACUUM ANALYZE posts");
+    }
+
+    @AfterAll
+    void tearDown() {
+        jdbcTemplate.execute("TRUNCATE posts, users CASCADE");
+    }
+
+    @NonNull
+    private String explainActiveKeyset(long karmaScore, long postId) {
+
+        List<String> plan = namedJdbcTemplate.queryForList(
+                "EXPLAIN " + PostRepositoryCustomImpl.ACTIVE_KEYSET_SQL,
+                Map.of("karmaScore", karmaScore, "postId", postId, "size", PAGE_SIZE),
+                String.class
+        );
+        return String.join("\n", plan);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void activeKeyset_TopPosition_IndexOnlyScanOfPartialIndex() {
+
+        // when
+        String plan = explainActiveKeyset(Long.MAX_VALUE, Long.MIN_VALUE);
+
+        // then
+        assertTrue(plan.contains("Index Only Scan using posts_active_keyset"), plan);
+        // pending karma score deltas are summed from small tables, which may be scanned
+        assertFalse(plan.contains("Seq Scan on posts"), plan);
+        assertFalse(plan.contains("Seq Scan on users"), plan);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void activeKeyset_MiddlePosition_IndexOnlyScanOfPartialIndex() {
+
+        // when
+        String plan = explainActiveKeyset(0, POSTS_AMOUNT / 2);
+
+        // then
+        assertTrue(plan.contains("Index Only Scan using posts_active_keyset"), plan);
+        // pending karma score deltas are summed from small tables, which may be scanned
+        assertFalse(plan.contains("Seq Scan on posts"), plan);
+        assertFalse(plan.contains("Seq Scan on users"), plan);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void userKeyset_PostsOfSingleUser_ScanOfUserIndexWithoutSort() {
+
+        // given
+        Long userId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM users", Long.class);
+
+        // when
+        List<String> planRows = jdbcTemplate.queryForList("""
+                EXPLAIN SELECT id FROM posts
+                WHERE user_id = ? AND visibility IN ('ACTIVE', 'HIDDEN')
+                ORDER BY karma_score DESC, id
+                LIMIT ?
+                """, String.class, userId, PAGE_SIZE);
+        String plan = String.join("\n", planRows);
+
+        // then
+        assertTrue(plan.contains("posts_user_keyset"), plan);
+        assertFalse(plan.contains("Sort"), plan);
+    }
+
+}
@@ -4,6 +4,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import com.msik404.karmaappmonolith.TestingDataCreator;
 import com.msik404.karmaappmonolith.exception.constraint.ConstraintExceptionsHandler;
@@ -374,6 +375,54 @@ class PostRepositoryCustomImplTest {
         }
     }
 
+    @Test
+    void streamTopNPosts_FetchSizeIsSmallerThanSize_SamePostsAsFindTopNPosts() {
+
+        // given
+        int topSize = 10;
+        int fetchSize = 3;
+
+        for (List<Visibility> visibilities : List.of(
+                List.of(Visibility.ACTIVE),
+                List.of(Visibility.ACTIVE, Visibility.HIDDEN))) {
+
+            // when
+            List<PostDto> streamedResults;
+            try (Stream<PostDto> stream = postRepository.streamTopNPosts(topSize, visibilities, fetchSize)) {
+                streamedResults = stream.toList();
+            }
+
+            // then
+            assertEquals(postRepository.findTopNPosts(topSize, visibilities), streamedResults);
+        }
+    }
+
+    @Test
+    void findTopNPostsWithUsername_SameQueryShapeForTwoUsernames_PostsOfEachUserFound() {
+
+        // given
+        int topSize = 5;
+        List<Visibility> visibilities = List.of(Visibility.ACTIVE, Visibility.HIDDEN);
+        List<Post> allPosts = postRepository.findAll();
+
+        for (int userId : List.of(1, 2, 1)) {
+            String username = TestingDataCreator.getTestingUsername(userId);
+
+            // when
+            List<PostDto> topResults = postRepository.findTopNPostsWithUsername(topSize, visibilities, username);
+
+            // then
+            List<Post> groundTruthTopPosts = TestingDataCreator.getTopUsersPosts(
+                    allPosts, username, new HashSet<>(visibilities));
+
+            assertEquals(Math.min(topSize, groundTruthTopPosts.size()), topResults.size());
+            for (int i = 0; i < topResults.size(); i++) {
+                assertEquals(groundTruthTopPosts.get(i).getId(), topResults.get(i).getId());
+                assertEquals(username, topResults.get(i).getUsername());
+            }
+        }
+    }
+
     @Test
     void findTopNPostsWithUsername_SizeIsTwoAndVisibilityIsActiveAndUsernameIsNonExisting_ZeroActiveFound() {
 
@@ -0,0 +1,103 @@
+package com.msik404.karmaappmonolith.user.cache;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import com.msik404.karmaappmonolith.user.Role;
+import com.msik404.karmaappmonolith.user.dto.UserPrincipalDto;
+import com.msik404.karmaappmonolith.user.exception.UserNotFoundException;
+import com.msik404.karmaappmonolith.user.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserPrincipalCacheTest {
+
+    private static final long USER_ID = 404;
+    private static final UserPrincipalDto PRINCIPAL = new UserPrincipalDto(Role.MOD, true);
+
+    @Mock
+    private UserRepository userRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private UserPrincipalCache cache;
+
+    @BeforeEach
+    void setUp() {
+
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new UserPrincipalCache(userRepository, Duration.ofMinutes(1), 100, meterRegistry);
+    }
+
+    @Test
+    void get_SameUserTwice_RepositoryShouldBeUsedOnceAndHitRatioShouldBeHalf() {
+
+        // given
+        when(userRepository.findPrincipalById(USER_ID)).thenReturn(Optional.of(PRINCIPAL));
+
+        // when
+        UserPrincipalDto first = cache.get(USER_ID);
+        UserPrincipalDto second = cache.get(USER_ID);
+
+        // then
+        assertEquals(PRINCIPAL, first);
+        assertEquals(PRINCIPAL, second);
+        verify(userRepository, times(1)).findPrincipalById(USER_ID);
+        assertEquals(0.5, meterRegistry.get(UserPrincipalCache.HIT_RATIO_GAUGE_NAME).gauge().value());
+    }
+
+    @Test
+    void get_UserDoesNotExist_UserNotFoundExceptionShouldBeThrownAndNothingShouldBeCached() {
+
+        // given
+        when(userRepository.findPrincipalById(USER_ID)).thenReturn(Optional.empty());
+
+        // then                                          // when
+        assertThrows(UserNotFoundException.class, () -> cache.get(USER_ID));
+        assertThrows(UserNotFoundException.class, () -> cache.get(USER_ID));
+        verify(userRepository, times(2)).findPrincipalById(USER_ID);
+    }
+
+    @Test
+    void invalidate_RoleWasChanged_NewRoleShouldBeLoaded() {
+
+        // given
+        var changedPrincipal = new UserPrincipalDto(Role.USER, true);
+        when(userRepository.findPrincipalById(USER_ID))
+                .thenReturn(Optional.of(PRINCIPAL))
+                .thenReturn(Optional.of(changedPrincipal));
+
+        cache.get(USER_ID);
+
+        // when
+        cache.invalidate(USER_ID);
+
+        // then
+        assertEquals(changedPrincipal, cache.get(USER_ID));
+        verify(userRepository, times(2)).findPrincipalById(USER_ID);
+    }
+
+    @Test
+    void invalidateAfterCommit_NoTransaction_EntryShouldBeInvalidatedImmediately() {
+
+        // given
+        when(userRepository.findPrincipalById(USER_ID)).thenReturn(Optional.of(PRINCIPAL));
+        cache.get(USER_ID);
+
+        // when
+        cache.invalidateAfterCommit(USER_ID);
+        cache.get(USER_ID);
+
+        // then
+        verify(userRepository, times(2)).findPrincipalById(USER_ID);
+    }
+
+}